@@ -0,0 +1,55 @@
+package com.jellypudding.offlineStats.benchmarks;
+
+import com.jellypudding.offlineStats.utils.AntiFarmingManager;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Per-event cost of the kill and death farming checks with a realistic number of tracked players.
+ */
+@State(Scope.Benchmark)
+public class AntiFarmingBenchmark {
+
+    @Param({"100", "1000"})
+    public int onlinePlayers;
+
+    private AntiFarmingManager antiFarmingManager;
+    private UUID[] uuids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        YamlConfiguration config = BenchmarkSupport.defaultConfig();
+        antiFarmingManager = new AntiFarmingManager(BenchmarkSupport.quietLogger(), () -> config, null);
+
+        Random random = new Random(42);
+        uuids = new UUID[onlinePlayers];
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void cleanUp() {
+        antiFarmingManager.cleanupOldData();
+    }
+
+    @Benchmark
+    public boolean shouldCountKill() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return antiFarmingManager.shouldCountKill(uuids[random.nextInt(uuids.length)], uuids[random.nextInt(uuids.length)]);
+    }
+
+    @Benchmark
+    public boolean shouldCountDeath() {
+        return antiFarmingManager.shouldCountDeath(uuids[ThreadLocalRandom.current().nextInt(uuids.length)]);
+    }
+}
@@ -0,0 +1,139 @@
+package com.jellypudding.offlineStats.benchmarks;
+
+import com.jellypudding.offlineStats.database.DatabaseManager;
+import com.jellypudding.offlineStats.metrics.StatsMetrics;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Shared set-up for the benchmarks: the plugin's default config, a quiet logger and a seeded temporary database.
+ * Setting the offlinestats.jdbc-url system property runs them against that MySQL/MariaDB database instead,
+ * e.g. jdbc:mariadb://localhost/offlinestats_bench or jdbc:h2:mem:bench;MODE=MySQL;DB_CLOSE_DELAY=-1.
+ * Its tables are emptied before every trial.
+ */
+final class BenchmarkSupport {
+
+    private static final String JDBC_URL = System.getProperty("offlinestats.jdbc-url", "");
+    private static final String JDBC_USER = System.getProperty("offlinestats.jdbc-user", "offlinestats");
+    private static final String JDBC_PASSWORD = System.getProperty("offlinestats.jdbc-password", "");
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Load the config.yml bundled with the plugin so benchmarks run with the shipped defaults.
+     */
+    static YamlConfiguration defaultConfig() {
+        YamlConfiguration config;
+        try (Reader reader = new InputStreamReader(
+                BenchmarkSupport.class.getResourceAsStream("/config.yml"), StandardCharsets.UTF_8)) {
+            config = YamlConfiguration.loadConfiguration(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (!JDBC_URL.isEmpty()) {
+            config.set("database.type", "mysql");
+            config.set("database.mysql.jdbc-url", JDBC_URL);
+            config.set("database.mysql.username", JDBC_USER);
+            config.set("database.mysql.password", JDBC_PASSWORD);
+            if (JDBC_URL.startsWith("jdbc:h2:")) {
+                // H2 rejects driver properties it does not know.
+                config.set("database.mysql.properties", null);
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Logger that only prints warnings, so start-up and anti-farming messages do not skew results.
+     */
+    static Logger quietLogger() {
+        Logger logger = Logger.getLogger("OfflineStats-Benchmark");
+        logger.setLevel(Level.WARNING);
+        return logger;
+    }
+
+    /**
+     * Create a database in a new temporary folder holding the given number of players with random stats,
+     * then open it with a fresh {@link DatabaseManager} so the caches and leaderboards are seeded from the rows.
+     */
+    static DatabaseManager createDatabase(Path folder, YamlConfiguration config, UUID[] players, long seed) throws SQLException {
+        DatabaseManager schema = new DatabaseManager(quietLogger(), folder.toFile(), config, new StatsMetrics(() -> false));
+        schema.initialise();
+        schema.close();
+
+        Random random = new Random(seed);
+        String insert = """
+            INSERT INTO players (uuid, username, first_seen, last_seen, time_played, session_start,
+                                 kills, deaths, chat_messages, positive_rep, negative_rep)
+            VALUES (?, ?, 1704067200000, 1717200000000, ?, 0, ?, ?, ?, ?, ?)
+        """;
+        try (Connection connection = openConnection(folder);
+             PreparedStatement stmt = connection.prepareStatement(insert)) {
+            if (!JDBC_URL.isEmpty()) {
+                try (Statement clear = connection.createStatement()) {
+                    for (String table : List.of("players", "milestones", "reputation_cooldowns", "stats_history", "stats_history_baseline")) {
+                        clear.executeUpdate("DELETE FROM " + table);
+                    }
+                }
+            }
+            connection.setAutoCommit(false);
+            for (int i = 0; i < players.length; i++) {
+                players[i] = new UUID(random.nextLong(), random.nextLong());
+                stmt.setString(1, players[i].toString());
+                stmt.setString(2, "Player" + i);
+                stmt.setLong(3, random.nextInt(1_000_000) * 1000L);
+                stmt.setInt(4, random.nextInt(500));
+                stmt.setInt(5, random.nextInt(500));
+                stmt.setInt(6, random.nextInt(10_000));
+                stmt.setInt(7, random.nextInt(20));
+                stmt.setInt(8, random.nextInt(20));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            connection.commit();
+        }
+
+        DatabaseManager databaseManager = new DatabaseManager(quietLogger(), folder.toFile(), config, new StatsMetrics(() -> false));
+        databaseManager.initialise();
+        return databaseManager;
+    }
+
+    private static Connection openConnection(Path folder) throws SQLException {
+        if (JDBC_URL.isEmpty()) {
+            return DriverManager.getConnection("jdbc:sqlite:" + folder.resolve("offlinestats.db"));
+        }
+        return DriverManager.getConnection(JDBC_URL, JDBC_USER, JDBC_PASSWORD);
+    }
+
+    static void deleteRecursively(Path folder) {
+        if (folder == null || !Files.exists(folder)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(folder)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.jellypudding.offlineStats.benchmarks;
+
+import com.jellypudding.offlineStats.database.DatabaseManager;
+import com.jellypudding.offlineStats.database.PlayerStats;
+import com.jellypudding.offlineStats.leaderboard.LeaderboardCategory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stat increments, player lookups and leaderboard reads against a seeded SQLite file.
+ */
+@State(Scope.Benchmark)
+public class DatabaseBenchmark {
+
+    @Param({"1000", "50000"})
+    public int players;
+
+    private Path folder;
+    private DatabaseManager databaseManager;
+    private UUID[] uuids;
+    private UUID hotPlayer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        folder = Files.createTempDirectory("offlinestats-bench");
+        uuids = new UUID[players];
+        databaseManager = BenchmarkSupport.createDatabase(folder, BenchmarkSupport.defaultConfig(), uuids, 42);
+        hotPlayer = uuids[0];
+        databaseManager.getPlayerStats(hotPlayer);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        databaseManager.close();
+        BenchmarkSupport.deleteRecursively(folder);
+    }
+
+    @TearDown(Level.Iteration)
+    public void flush() {
+        // Keep the write-behind buffer from growing across iterations of the increment benchmarks.
+        databaseManager.flushPendingStats();
+    }
+
+    private UUID randomPlayer() {
+        return uuids[ThreadLocalRandom.current().nextInt(uuids.length)];
+    }
+
+    @Benchmark
+    public void incrementKills() {
+        databaseManager.incrementKills(randomPlayer());
+    }
+
+    @Benchmark
+    public void incrementChatMessages() {
+        databaseManager.incrementChatMessages(randomPlayer());
+    }
+
+    @Benchmark
+    public PlayerStats getPlayerStatsHot() {
+        return databaseManager.getPlayerStats(hotPlayer);
+    }
+
+    @Benchmark
+    public PlayerStats getPlayerStatsRandom() {
+        return databaseManager.getPlayerStats(randomPlayer());
+    }
+
+    @Benchmark
+    public List<PlayerStats> topKills() {
+        return databaseManager.getTopPlayers(LeaderboardCategory.KILLS, 10);
+    }
+
+    @Benchmark
+    public List<PlayerStats> topTimePlayed() {
+        return databaseManager.getTopPlayers(LeaderboardCategory.TIMEPLAYED, 10);
+    }
+
+    @Benchmark
+    public List<PlayerStats> middleLeaderboardPage() {
+        return databaseManager.getLeaderboardPage(LeaderboardCategory.KILLS, players / 2, 10);
+    }
+
+    @Benchmark
+    public int rankKills() {
+        return databaseManager.getRank(LeaderboardCategory.KILLS, randomPlayer());
+    }
+}
@@ -0,0 +1,57 @@
+package com.jellypudding.offlineStats.benchmarks;
+
+import com.jellypudding.offlineStats.database.DatabaseManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Cost of writing a batch of buffered increments in one transaction.
+ */
+@State(Scope.Benchmark)
+public class FlushBenchmark {
+
+    @Param({"10", "200"})
+    public int pendingPlayers;
+
+    private Path folder;
+    private DatabaseManager databaseManager;
+    private UUID[] uuids;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        folder = Files.createTempDirectory("offlinestats-bench");
+        uuids = new UUID[10_000];
+        databaseManager = BenchmarkSupport.createDatabase(folder, BenchmarkSupport.defaultConfig(), uuids, 7);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        databaseManager.close();
+        BenchmarkSupport.deleteRecursively(folder);
+    }
+
+    @Setup(Level.Invocation)
+    public void bufferIncrements() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < pendingPlayers; i++) {
+            UUID playerUuid = uuids[random.nextInt(uuids.length)];
+            databaseManager.incrementKills(playerUuid);
+            databaseManager.incrementChatMessages(playerUuid);
+        }
+    }
+
+    @Benchmark
+    public void flushPendingStats() {
+        databaseManager.flushPendingStats();
+    }
+}
@@ -0,0 +1,60 @@
+package com.jellypudding.offlineStats.benchmarks;
+
+import com.jellypudding.offlineStats.database.DatabaseManager;
+import com.jellypudding.offlineStats.database.PlayerStats;
+import com.jellypudding.offlineStats.milestones.MilestoneTracker;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * The milestone check that follows every counted kill, for a player who has not crossed anything new.
+ */
+@State(Scope.Benchmark)
+public class MilestoneBenchmark {
+
+    private Path folder;
+    private DatabaseManager databaseManager;
+    private MilestoneTracker tracker;
+    private UUID player;
+    private int[] killThresholds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        folder = Files.createTempDirectory("offlinestats-bench");
+        YamlConfiguration config = BenchmarkSupport.defaultConfig();
+        UUID[] uuids = new UUID[1000];
+        databaseManager = BenchmarkSupport.createDatabase(folder, config, uuids, 3);
+
+        tracker = new MilestoneTracker(BenchmarkSupport.quietLogger());
+        tracker.reload(config);
+        killThresholds = tracker.getThresholds("kills");
+        if (killThresholds == null) {
+            throw new IllegalStateException("The bundled config.yml has no kill milestone rewards to benchmark.");
+        }
+
+        player = uuids[0];
+        tracker.loadPlayer(databaseManager, player);
+        // Record whatever the seeded kill count has already crossed so the measured checks find nothing new.
+        tracker.findAndRecord(databaseManager, player, "kills", "kills_1000", killThresholds, PlayerStats::getKills);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        databaseManager.close();
+        BenchmarkSupport.deleteRecursively(folder);
+    }
+
+    @Benchmark
+    public MilestoneTracker.CrossedMilestones checkKillMilestones() {
+        return tracker.findAndRecord(databaseManager, player, "kills", "kills_1000", killThresholds, PlayerStats::getKills);
+    }
+}
@@ -3,38 +3,55 @@ package com.jellypudding.offlineStats;
 import com.jellypudding.offlineStats.api.OfflineStatsAPI;
 import com.jellypudding.offlineStats.commands.*;
 import com.jellypudding.offlineStats.listeners.CombatLogListener;
+import com.jellypudding.offlineStats.database.AsyncStatsStore;
 import com.jellypudding.offlineStats.database.DatabaseManager;
+import com.jellypudding.offlineStats.importer.LogImporter;
+import com.jellypudding.offlineStats.integrations.IntegrationRegistry;
 import com.jellypudding.offlineStats.listeners.PlayerStatsListener;
+import com.jellypudding.offlineStats.metrics.MetricsCsvWriter;
+import com.jellypudding.offlineStats.metrics.StatsMetrics;
 import com.jellypudding.offlineStats.milestones.MilestoneManager;
 import com.jellypudding.offlineStats.utils.AntiFarmingManager;
 import com.jellypudding.offlineStats.utils.DiscordUtil;
 import org.bukkit.Bukkit;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
-import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitTask;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+
 public final class OfflineStats extends JavaPlugin {
 
+    private StatsMetrics metrics;
     private DatabaseManager databaseManager;
+    private AsyncStatsStore statsStore;
     private MilestoneManager milestoneManager;
     private OfflineStatsAPI api;
     private AntiFarmingManager antiFarmingManager;
     private DiscordUtil discordUtil;
+    private LogImporter logImporter;
     private BukkitTask cleanupTask;
+    private BukkitTask flushTask;
+    private BukkitTask checkpointTask;
+    private BukkitTask historyTask;
+    private BukkitTask networkTask;
+    private BukkitTask metricsCsvTask;
 
     // Plugin integrations
-    private boolean simpleHomeEnabled = false;
-    private boolean simpleLifestealEnabled = false;
-    private boolean simpleVoteEnabled = false;
-    private boolean discordRelayEnabled = false;
-    private boolean chromaTagEnabled = false;
+    private IntegrationRegistry integrations;
 
     @Override
     public void onEnable() {
         // Save default config
         saveDefaultConfig();
 
+        // Initialise metrics before anything that records into them
+        metrics = new StatsMetrics(Bukkit::isPrimaryThread);
+
         // Initialise database
         databaseManager = new DatabaseManager(this);
         databaseManager.initialise();
@@ -45,8 +62,13 @@ public final class OfflineStats extends JavaPlugin {
             return;
         }
 
-        // Check for plugin integrations
-        checkPluginIntegrations();
+        statsStore = new AsyncStatsStore(this, databaseManager);
+        logImporter = new LogImporter(this);
+
+        // Resolve plugin integrations, and again whenever one of them is enabled or disabled
+        integrations = new IntegrationRegistry(getLogger());
+        integrations.resolveAll();
+        Bukkit.getPluginManager().registerEvents(integrations, this);
 
         // Initialise milestone manager
         milestoneManager = new MilestoneManager(this);
@@ -57,13 +79,64 @@ public final class OfflineStats extends JavaPlugin {
         // Initialise Discord utility
         discordUtil = new DiscordUtil(this);
 
-        // Start cleanup task for anti-farming data (runs every 5 minutes)
-        cleanupTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this, 
-            antiFarmingManager::cleanupOldData, 
-            20L * 60 * 5,
-            20L * 60 * 5
+        // Start cleanup task for anti-farming data (runs every second, only touching windows that have just aged out)
+        cleanupTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this,
+            antiFarmingManager::cleanupOldData,
+            20L,
+            20L
+        );
+
+        // Start write-behind task for buffered kills, deaths and chat messages
+        long flushIntervalTicks = 20L * Math.max(1, getConfig().getInt("database.flush-interval-seconds", 30));
+        flushTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this,
+            databaseManager::flushPendingStats,
+            flushIntervalTicks,
+            flushIntervalTicks
+        );
+
+        // Start periodic session checkpoints, so a crash loses at most one interval of time played
+        long checkpointIntervalTicks = 20L * getConfig().getInt("database.checkpoint-interval-seconds", 300);
+        if (checkpointIntervalTicks > 0) {
+            checkpointTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this,
+                databaseManager::checkpointSessions,
+                checkpointIntervalTicks,
+                checkpointIntervalTicks
+            );
+        }
+
+        // Once a minute, credit online time to the week and month leaderboards
+        // and check whether a day has ended and its stats history should be recorded
+        historyTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this, () -> {
+                databaseManager.tickRollingLeaderboards();
+                databaseManager.rollOverHistory();
+            },
+            1200L,
+            1200L
         );
 
+        // Start periodic network sync, if enabled: export this server's counters and merge the other servers' files
+        long networkSyncIntervalTicks = 20L * 60 * getConfig().getInt("network.sync-interval-minutes", 0);
+        if (networkSyncIntervalTicks > 0) {
+            networkTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this,
+                databaseManager::syncNetwork,
+                networkSyncIntervalTicks,
+                networkSyncIntervalTicks
+            );
+        }
+
+        // Start periodic metrics CSV dump, if enabled
+        long metricsCsvIntervalTicks = 20L * getConfig().getInt("metrics.csv-interval-seconds", 0);
+        if (metricsCsvIntervalTicks > 0) {
+            MetricsCsvWriter csvWriter = new MetricsCsvWriter(new File(getDataFolder(), "metrics.csv").toPath());
+            metricsCsvTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this, () -> {
+                try {
+                    csvWriter.append(metrics);
+                } catch (IOException e) {
+                    getLogger().log(Level.WARNING, "Failed to write metrics.csv", e);
+                }
+            }, metricsCsvIntervalTicks, metricsCsvIntervalTicks);
+        }
+
         // Initialise API
         api = new OfflineStatsAPI(this);
 
@@ -74,11 +147,11 @@ public final class OfflineStats extends JavaPlugin {
         registerCommands();
 
         getLogger().info("OfflineStats plugin has been enabled.");
-        getLogger().info("Plugin integrations: SimpleHome=" + simpleHomeEnabled + 
-                        ", SimpleLifesteal=" + simpleLifestealEnabled + 
-                        ", SimpleVote=" + simpleVoteEnabled + 
-                        ", DiscordRelay=" + discordRelayEnabled +
-                        ", ChromaTag=" + chromaTagEnabled);
+        getLogger().info("Plugin integrations: SimpleHome=" + isSimpleHomeEnabled() +
+                        ", SimpleLifesteal=" + isSimpleLifestealEnabled() +
+                        ", SimpleVote=" + isSimpleVoteEnabled() +
+                        ", DiscordRelay=" + isDiscordRelayEnabled() +
+                        ", ChromaTag=" + isChromaTagEnabled());
     }
 
     @Override
@@ -87,62 +160,51 @@ public final class OfflineStats extends JavaPlugin {
             cleanupTask.cancel();
         }
 
-        for (Player player : Bukkit.getOnlinePlayers()) {
-            try {
-                databaseManager.updatePlayerOnQuit(player);
-            } catch (Exception e) {
-                getLogger().warning("Failed to save data for " + player.getName() + " during shutdown: " + e.getMessage());
-            }
+        if (flushTask != null) {
+            flushTask.cancel();
         }
 
-        if (databaseManager != null) {
-            databaseManager.close();
+        if (checkpointTask != null) {
+            checkpointTask.cancel();
         }
 
-        getLogger().info("OfflineStats plugin has been disabled.");
-    }
+        if (historyTask != null) {
+            historyTask.cancel();
+        }
 
-    private void checkPluginIntegrations() {
-        // Check SimpleHome
-        if (Bukkit.getPluginManager().getPlugin("SimpleHome") != null) {
-            simpleHomeEnabled = true;
-            getLogger().info("SimpleHome integration enabled!");
-        } else {
-            getLogger().warning("SimpleHome not found - home slot rewards will be disabled");
+        if (networkTask != null) {
+            networkTask.cancel();
         }
 
-        // Check SimpleLifesteal
-        if (Bukkit.getPluginManager().getPlugin("SimpleLifesteal") != null) {
-            simpleLifestealEnabled = true;
-            getLogger().info("SimpleLifesteal integration enabled!");
-        } else {
-            getLogger().warning("SimpleLifesteal not found - heart rewards will be disabled");
+        if (metricsCsvTask != null) {
+            metricsCsvTask.cancel();
         }
 
-        // Check SimpleVote
-        if (Bukkit.getPluginManager().getPlugin("SimpleVote") != null) {
-            simpleVoteEnabled = true;
-            getLogger().info("SimpleVote integration enabled!");
-        } else {
-            getLogger().warning("SimpleVote not found - token rewards will be disabled");
+        if (statsStore != null) {
+            statsStore.shutdown();
         }
 
-        // Check DiscordRelay
-        if (Bukkit.getPluginManager().getPlugin("DiscordRelay") != null) {
-            discordRelayEnabled = true;
-            getLogger().info("DiscordRelay integration enabled!");
-        } else {
-            getLogger().warning("DiscordRelay not found - Discord announcements will be disabled");
+        if (antiFarmingManager != null) {
+            antiFarmingManager.saveSnapshot();
         }
 
-        // Check ChromaTag
-        Plugin chromaTagPlugin = Bukkit.getPluginManager().getPlugin("ChromaTag");
-        if (chromaTagPlugin != null && chromaTagPlugin.isEnabled()) {
-            chromaTagEnabled = true;
-            getLogger().info("ChromaTag integration enabled!");
-        } else {
-            getLogger().warning("ChromaTag not found - player name colours will use defaults");
+        if (discordUtil != null) {
+            discordUtil.shutdown();
         }
+
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            try {
+                databaseManager.updatePlayerOnQuit(player);
+            } catch (Exception e) {
+                getLogger().warning("Failed to save data for " + player.getName() + " during shutdown: " + e.getMessage());
+            }
+        }
+
+        if (databaseManager != null) {
+            databaseManager.close();
+        }
+
+        getLogger().info("OfflineStats plugin has been disabled.");
     }
 
     private void registerListeners() {
@@ -151,26 +213,37 @@ public final class OfflineStats extends JavaPlugin {
     }
 
     private void registerCommands() {
-        getCommand("firstseen").setExecutor(new FirstSeenCommand(this));
-        getCommand("lastseen").setExecutor(new LastSeenCommand(this));
-        getCommand("timeplayed").setExecutor(new TimePlayedCommand(this));
-        getCommand("kills").setExecutor(new KillsCommand(this));
-        getCommand("deaths").setExecutor(new DeathsCommand(this));
-        getCommand("chatter").setExecutor(new ChatterCommand(this));
+        registerCommand("firstseen", new FirstSeenCommand(this));
+        registerCommand("lastseen", new LastSeenCommand(this));
+        registerCommand("timeplayed", new TimePlayedCommand(this));
+        registerCommand("kills", new KillsCommand(this));
+        registerCommand("deaths", new DeathsCommand(this));
+        registerCommand("chatter", new ChatterCommand(this));
         getCommand("offlinestats").setExecutor(new OfflineStatsCommand(this));
-        getCommand("goodrep").setExecutor(new GoodRepCommand(this));
-        getCommand("badrep").setExecutor(new BadRepCommand(this));
-        getCommand("reputation").setExecutor(new ReputationCommand(this));
+        registerCommand("goodrep", new GoodRepCommand(this));
+        registerCommand("badrep", new BadRepCommand(this));
+        registerCommand("reputation", new ReputationCommand(this));
+        registerCommand("leaderboard", new LeaderboardCommand(this));
+        registerCommand("rank", new RankCommand(this));
+    }
 
-        LeaderboardCommand leaderboardCommand = new LeaderboardCommand(this);
-        getCommand("leaderboard").setExecutor(leaderboardCommand);
-        getCommand("leaderboard").setTabCompleter(leaderboardCommand);
+    private <T extends CommandExecutor & TabCompleter> void registerCommand(String name, T command) {
+        getCommand(name).setExecutor(command);
+        getCommand(name).setTabCompleter(command);
     }
 
     public DatabaseManager getDatabaseManager() {
         return databaseManager;
     }
 
+    public AsyncStatsStore getStatsStore() {
+        return statsStore;
+    }
+
+    public LogImporter getLogImporter() {
+        return logImporter;
+    }
+
     public MilestoneManager getMilestoneManager() {
         return milestoneManager;
     }
@@ -179,20 +252,28 @@ public final class OfflineStats extends JavaPlugin {
         return api;
     }
 
+    public IntegrationRegistry getIntegrations() {
+        return integrations;
+    }
+
     public boolean isSimpleHomeEnabled() {
-        return simpleHomeEnabled;
+        return integrations.getSimpleHome() != null;
     }
 
     public boolean isSimpleLifestealEnabled() {
-        return simpleLifestealEnabled;
+        return integrations.getSimpleLifesteal() != null;
     }
 
     public boolean isSimpleVoteEnabled() {
-        return simpleVoteEnabled;
+        return integrations.getSimpleVote() != null;
     }
 
     public boolean isDiscordRelayEnabled() {
-        return discordRelayEnabled;
+        return integrations.getDiscordRelay() != null;
+    }
+
+    public StatsMetrics getMetrics() {
+        return metrics;
     }
 
     public AntiFarmingManager getAntiFarmingManager() {
@@ -200,7 +281,7 @@ public final class OfflineStats extends JavaPlugin {
     }
 
     public boolean isChromaTagEnabled() {
-        return chromaTagEnabled;
+        return integrations.getChromaTag() != null;
     }
 
     public DiscordUtil getDiscordUtil() {
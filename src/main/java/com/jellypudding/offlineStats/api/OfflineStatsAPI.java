@@ -1,11 +1,20 @@
 package com.jellypudding.offlineStats.api;
 
 import com.jellypudding.offlineStats.OfflineStats;
+import com.jellypudding.offlineStats.database.NetworkLeaderboardEntry;
 import com.jellypudding.offlineStats.database.PlayerStats;
+import com.jellypudding.offlineStats.database.RollingLeaderboardEntry;
+import com.jellypudding.offlineStats.database.StatsHistoryEntry;
+import com.jellypudding.offlineStats.leaderboard.LeaderboardCategory;
+import com.jellypudding.offlineStats.leaderboard.LeaderboardWindow;
 import com.jellypudding.offlineStats.utils.PlayerUtil;
 import org.bukkit.Bukkit;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 public class OfflineStatsAPI {
 
@@ -53,6 +62,33 @@ public class OfflineStatsAPI {
         return plugin.getDatabaseManager().getPlayerStats(playerUuid);
     }
 
+    /**
+     * Get statistics for many players in one lookup, e.g. everyone on a tab list
+     * @param playerUuids The players' UUIDs
+     * @return Map of UUID to PlayerStats; players that have never joined are left out
+     */
+    public Map<UUID, PlayerStats> getPlayerStats(Collection<UUID> playerUuids) {
+        return plugin.getDatabaseManager().getPlayerStats(playerUuids);
+    }
+
+    /**
+     * Get player statistics by UUID without blocking the calling thread
+     * @param playerUuid The player's UUID
+     * @return Future completed with the PlayerStats or null if not found, on a database thread
+     */
+    public CompletableFuture<PlayerStats> getPlayerStatsAsync(UUID playerUuid) {
+        return plugin.getStatsStore().getPlayerStats(playerUuid);
+    }
+
+    /**
+     * Get statistics for many players without blocking the calling thread
+     * @param playerUuids The players' UUIDs
+     * @return Future completed with a map of UUID to PlayerStats, on a database thread
+     */
+    public CompletableFuture<Map<UUID, PlayerStats>> getPlayerStatsAsync(Collection<UUID> playerUuids) {
+        return plugin.getStatsStore().getPlayerStats(playerUuids);
+    }
+
     /**
      * Get a player's first seen date
      * @param playerName The player's name
@@ -156,14 +192,7 @@ public class OfflineStatsAPI {
      */
     public long getPlayerFirstSeen(UUID playerUuid) {
         PlayerStats stats = getPlayerStats(playerUuid);
-        if (stats == null) return 0;
-        try {
-            return java.time.LocalDateTime.parse(stats.getFirstSeen(), 
-                java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))
-                .atZone(java.time.ZoneOffset.UTC).toInstant().toEpochMilli();
-        } catch (Exception e) {
-            return 0;
-        }
+        return stats != null ? stats.getFirstSeen() : 0;
     }
 
     /**
@@ -173,14 +202,7 @@ public class OfflineStatsAPI {
      */
     public long getPlayerLastSeen(UUID playerUuid) {
         PlayerStats stats = getPlayerStats(playerUuid);
-        if (stats == null) return 0;
-        try {
-            return java.time.LocalDateTime.parse(stats.getLastSeen(), 
-                java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))
-                .atZone(java.time.ZoneOffset.UTC).toInstant().toEpochMilli();
-        } catch (Exception e) {
-            return 0;
-        }
+        return stats != null ? stats.getLastSeen() : 0;
     }
 
     /**
@@ -228,6 +250,116 @@ public class OfflineStatsAPI {
         return stats != null ? stats.getChatMessages() : 0;
     }
 
+    /**
+     * Get a player's position on a leaderboard
+     * @param playerUuid The player's UUID
+     * @param category The leaderboard category (timeplayed, kills, deaths, chatter, loved, hated)
+     * @return 1-based rank or -1 if the player or category is not found
+     */
+    public int getRank(UUID playerUuid, String category) {
+        LeaderboardCategory leaderboardCategory = LeaderboardCategory.fromId(category);
+        return leaderboardCategory != null ? getRank(playerUuid, leaderboardCategory) : -1;
+    }
+
+    /**
+     * Get a player's position on a leaderboard
+     * @param playerUuid The player's UUID
+     * @param category The leaderboard category
+     * @return 1-based rank or -1 if the player is not found
+     */
+    public int getRank(UUID playerUuid, LeaderboardCategory category) {
+        return plugin.getDatabaseManager().getRank(category, playerUuid);
+    }
+
+    /**
+     * Get a page of a leaderboard
+     * @param category The leaderboard category (timeplayed, kills, deaths, chatter, loved, hated)
+     * @param offset Number of players to skip
+     * @param limit Maximum number of players to return
+     * @return Player statistics in rank order, empty if the category is not found
+     */
+    public List<PlayerStats> getLeaderboardPage(String category, int offset, int limit) {
+        LeaderboardCategory leaderboardCategory = LeaderboardCategory.fromId(category);
+        return leaderboardCategory != null ? getLeaderboardPage(leaderboardCategory, offset, limit) : List.of();
+    }
+
+    /**
+     * Get a page of a leaderboard
+     * @param category The leaderboard category
+     * @param offset Number of players to skip
+     * @param limit Maximum number of players to return
+     * @return Player statistics in rank order
+     */
+    public List<PlayerStats> getLeaderboardPage(LeaderboardCategory category, int offset, int limit) {
+        return plugin.getDatabaseManager().getLeaderboardPage(category, offset, limit);
+    }
+
+    /**
+     * Get a page of a leaderboard limited to the last week or month
+     * @param category The leaderboard category (timeplayed, kills, deaths, chatter, loved, hated)
+     * @param window The window (week, month)
+     * @param offset Number of players to skip
+     * @param limit Maximum number of players to return
+     * @return Players with their score for the window in rank order, empty if the category or window is not found
+     */
+    public List<RollingLeaderboardEntry> getLeaderboardPage(String category, String window, int offset, int limit) {
+        LeaderboardCategory leaderboardCategory = LeaderboardCategory.fromId(category);
+        LeaderboardWindow leaderboardWindow = LeaderboardWindow.fromId(window);
+        if (leaderboardCategory == null || leaderboardWindow == null) {
+            return List.of();
+        }
+        return getLeaderboardPage(leaderboardCategory, leaderboardWindow, offset, limit);
+    }
+
+    /**
+     * Get a page of a leaderboard limited to the last week or month
+     * @param category The leaderboard category
+     * @param window The window
+     * @param offset Number of players to skip
+     * @param limit Maximum number of players to return
+     * @return Players with their score for the window in rank order
+     */
+    public List<RollingLeaderboardEntry> getLeaderboardPage(LeaderboardCategory category, LeaderboardWindow window, int offset, int limit) {
+        return plugin.getDatabaseManager().getRollingLeaderboardPage(category, window, offset, limit);
+    }
+
+    /**
+     * Get a page of a leaderboard combining every server of a network whose node file has been merged
+     * @param category The leaderboard category (timeplayed, kills, deaths, chatter)
+     * @param offset Number of players to skip
+     * @param limit Maximum number of players to return
+     * @return Players with their total over all servers in rank order, empty if the category is not found or is reputation
+     */
+    public List<NetworkLeaderboardEntry> getNetworkLeaderboardPage(String category, int offset, int limit) {
+        LeaderboardCategory leaderboardCategory = LeaderboardCategory.fromId(category);
+        if (leaderboardCategory == null) {
+            return List.of();
+        }
+        return getNetworkLeaderboardPage(leaderboardCategory, offset, limit);
+    }
+
+    /**
+     * Get a page of a leaderboard combining every server of a network whose node file has been merged
+     * @param category The leaderboard category; reputation is not kept per server, so its pages are empty
+     * @param offset Number of players to skip
+     * @param limit Maximum number of players to return
+     * @return Players with their total over all servers in rank order
+     */
+    public List<NetworkLeaderboardEntry> getNetworkLeaderboardPage(LeaderboardCategory category, int offset, int limit) {
+        return plugin.getDatabaseManager().getNetworkLeaderboardPage(category, offset, limit);
+    }
+
+    /**
+     * Get how a player's stats changed over time, e.g. kills per day this week
+     * @param playerUuid The player's UUID
+     * @param from Start of the range in epoch milliseconds, inclusive
+     * @param to End of the range in epoch milliseconds, exclusive
+     * @return Daily changes, or monthly ones further back than the retention period, oldest first; today is not included
+     */
+    public List<StatsHistoryEntry> getStatsHistory(UUID playerUuid, long from, long to) {
+        return plugin.getDatabaseManager().getStatsHistory(playerUuid, from, to);
+    }
+
     /**
      * Get formatted statistics for Discord commands
      * @param playerName The player's name
@@ -2,6 +2,7 @@ package com.jellypudding.offlineStats.commands;
 
 import com.jellypudding.offlineStats.OfflineStats;
 import com.jellypudding.offlineStats.database.PlayerStats;
+import com.jellypudding.offlineStats.database.ReputationResult;
 import com.jellypudding.offlineStats.utils.PlayerUtil;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
@@ -9,13 +10,15 @@ import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
 import java.awt.Color;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
-public class BadRepCommand implements CommandExecutor {
+public class BadRepCommand implements CommandExecutor, TabCompleter {
 
     private final OfflineStats plugin;
 
@@ -52,31 +55,49 @@ public class BadRepCommand implements CommandExecutor {
             return true;
         }
 
-        PlayerStats targetStats = plugin.getDatabaseManager().getPlayerStats(targetUuid);
-        if (targetStats == null) {
-            sender.sendMessage(Component.text("Player '", NamedTextColor.RED)
+        UUID giverUuid = giver.getUniqueId();
+        plugin.getStatsStore().acceptOnMainThread(
+            plugin.getStatsStore().write(db -> db.giveReputation(giverUuid, targetUuid, false)),
+            result -> handleResult(giver, targetName, targetUuid, result));
+
+        return true;
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        if (args.length == 1) {
+            return PlayerUtil.completePlayerName(args[0]);
+        }
+        return List.of();
+    }
+
+    private void handleResult(Player giver, String targetName, UUID targetUuid, ReputationResult result) {
+        PlayerStats targetStats = result.getReceiverStats();
+        if (result.getStatus() == ReputationResult.Status.UNKNOWN_PLAYER) {
+            giver.sendMessage(Component.text("Player '", NamedTextColor.RED)
                 .append(Component.text(targetName, NamedTextColor.YELLOW))
                 .append(Component.text("' has never joined the server.", NamedTextColor.RED)));
-            return true;
+            return;
         }
 
-        String existingRepType = plugin.getDatabaseManager().getExistingRepType(giver.getUniqueId(), targetUuid);
-        if ("negative".equals(existingRepType)) {
-            sender.sendMessage(Component.text("You have already given negative reputation to this player.", NamedTextColor.RED));
-            return true;
+        if (result.getStatus() == ReputationResult.Status.DUPLICATE) {
+            giver.sendMessage(Component.text("You have already given negative reputation to this player.", NamedTextColor.RED));
+            return;
+        }
+
+        if (result.getStatus() == ReputationResult.Status.FAILED) {
+            giver.sendMessage(Component.text("Something went wrong saving your reputation. Please try again later.", NamedTextColor.RED));
+            return;
         }
 
-        if (!plugin.getDatabaseManager().canGiveReputation(giver.getUniqueId(), targetUuid)) {
-            long remaining = plugin.getDatabaseManager().getRepCooldownRemaining(giver.getUniqueId(), targetUuid);
-            String timeRemaining = formatDuration(remaining);
-            sender.sendMessage(Component.text("You must wait ", NamedTextColor.RED)
+        if (result.getStatus() == ReputationResult.Status.COOLDOWN) {
+            String timeRemaining = formatDuration(result.getCooldownRemaining());
+            giver.sendMessage(Component.text("You must wait ", NamedTextColor.RED)
                 .append(Component.text(timeRemaining, NamedTextColor.YELLOW))
                 .append(Component.text(" before changing your reputation for this player.", NamedTextColor.RED)));
-            return true;
+            return;
         }
 
-        plugin.getDatabaseManager().giveReputation(giver.getUniqueId(), targetUuid, false);
-
         Player targetPlayer = Bukkit.getPlayer(targetUuid);
         Component targetDisplayName = targetPlayer != null 
             ? targetPlayer.displayName() 
@@ -94,8 +115,6 @@ public class BadRepCommand implements CommandExecutor {
         plugin.getDiscordUtil().sendMessage("Reputation", discordMessage, Color.RED);
 
         plugin.getMilestoneManager().checkReputationMilestones(targetUuid);
-
-        return true;
     }
 
     private String formatDuration(long milliseconds) {
@@ -1,6 +1,7 @@
 package com.jellypudding.offlineStats.commands;
 
 import com.jellypudding.offlineStats.OfflineStats;
+import com.jellypudding.offlineStats.database.PlayerNameIndex;
 import com.jellypudding.offlineStats.database.PlayerStats;
 import com.jellypudding.offlineStats.utils.PlayerUtil;
 import net.kyori.adventure.text.Component;
@@ -8,11 +9,13 @@ import net.kyori.adventure.text.format.NamedTextColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
+import java.util.List;
 import java.util.UUID;
 
-public abstract class BaseStatsCommand implements CommandExecutor {
+public abstract class BaseStatsCommand implements CommandExecutor, TabCompleter {
 
     protected final OfflineStats plugin;
 
@@ -36,35 +39,46 @@ public abstract class BaseStatsCommand implements CommandExecutor {
             targetPlayerName = senderPlayer.getName();
             isSelf = true;
         } else {
-            targetPlayerName = args[0];
-            targetPlayerUuid = PlayerUtil.getPlayerUUID(targetPlayerName);
+            PlayerNameIndex.Entry target = PlayerUtil.findPlayer(args[0]);
 
-            if (targetPlayerUuid == null) {
+            if (target == null) {
                 sender.sendMessage(Component.text("Player '", NamedTextColor.RED)
-                    .append(Component.text(targetPlayerName, NamedTextColor.YELLOW))
+                    .append(Component.text(args[0], NamedTextColor.YELLOW))
                     .append(Component.text("' not found.", NamedTextColor.RED)));
                 return true;
             }
 
-            targetPlayerName = PlayerUtil.getExactPlayerName(targetPlayerName);
+            targetPlayerUuid = target.uuid();
+            targetPlayerName = target.name();
 
             if (sender instanceof Player senderPlayer) {
                 isSelf = senderPlayer.getUniqueId().equals(targetPlayerUuid);
             }
         }
 
-        PlayerStats stats = plugin.getDatabaseManager().getPlayerStats(targetPlayerUuid);
-        if (stats == null) {
-            sender.sendMessage(Component.text("Player '", NamedTextColor.RED)
-                .append(Component.text(targetPlayerName, NamedTextColor.YELLOW))
-                .append(Component.text("' has never joined the server.", NamedTextColor.RED)));
-            return true;
-        }
+        String displayedName = targetPlayerName;
+        boolean self = isSelf;
+        plugin.getStatsStore().acceptOnMainThread(plugin.getStatsStore().getPlayerStats(targetPlayerUuid), stats -> {
+            if (stats == null) {
+                sender.sendMessage(Component.text("Player '", NamedTextColor.RED)
+                    .append(Component.text(displayedName, NamedTextColor.YELLOW))
+                    .append(Component.text("' has never joined the server.", NamedTextColor.RED)));
+                return;
+            }
 
-        executeCommand(sender, stats, isSelf);
+            executeCommand(sender, stats, self);
+        });
         return true;
     }
 
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        if (args.length == 1) {
+            return PlayerUtil.completePlayerName(args[0]);
+        }
+        return List.of();
+    }
+
     protected Component getPlayerDisplayName(PlayerStats stats) {
         return PlayerUtil.getPlayerDisplayName(stats.getUsername(), stats.getUuid());
     }
@@ -1,7 +1,12 @@
 package com.jellypudding.offlineStats.commands;
 
 import com.jellypudding.offlineStats.OfflineStats;
+import com.jellypudding.offlineStats.database.DatabaseManager;
+import com.jellypudding.offlineStats.database.NetworkLeaderboardEntry;
 import com.jellypudding.offlineStats.database.PlayerStats;
+import com.jellypudding.offlineStats.database.RollingLeaderboardEntry;
+import com.jellypudding.offlineStats.leaderboard.LeaderboardCategory;
+import com.jellypudding.offlineStats.leaderboard.LeaderboardWindow;
 import com.jellypudding.offlineStats.utils.PlayerUtil;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
@@ -10,14 +15,17 @@ import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
 public class LeaderboardCommand implements CommandExecutor, TabCompleter {
 
     private final OfflineStats plugin;
-    private static final int TOP_PLAYERS = 10;
+    private static final int PAGE_SIZE = 10;
+    // Highest page whose offset and rank labels still fit in an int.
+    private static final int MAX_PAGE = Integer.MAX_VALUE / PAGE_SIZE;
+    private static final String NETWORK = "network";
 
     public LeaderboardCommand(OfflineStats plugin) {
         this.plugin = plugin;
@@ -30,109 +38,194 @@ public class LeaderboardCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
-        String category = args.length >= 1 ? args[0].toLowerCase() : "timeplayed";
+        LeaderboardCategory category = args.length >= 1 ? LeaderboardCategory.fromId(args[0]) : LeaderboardCategory.TIMEPLAYED;
 
-        if (!isValidCategory(category)) {
-            sender.sendMessage(Component.text("Invalid category! Valid categories: timeplayed, kills, deaths, chatter, loved, hated", NamedTextColor.RED));
+        if (category == null) {
+            sender.sendMessage(Component.text("Invalid category! Valid categories: " + String.join(", ", LeaderboardCategory.ids()), NamedTextColor.RED));
             return true;
         }
 
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            List<PlayerStats> topPlayers = getLeaderboardData(category);
-            plugin.getServer().getScheduler().runTask(plugin, () -> {
-                if (topPlayers.isEmpty()) {
-                    sender.sendMessage(Component.text("No players found for this category.", NamedTextColor.YELLOW));
-                    return;
-                }
-                displayLeaderboard(sender, category, topPlayers);
-            });
+        // An optional window or "network" comes before the page, e.g. /leaderboard kills week 2
+        LeaderboardWindow window = args.length >= 2 ? LeaderboardWindow.fromId(args[1]) : null;
+        boolean network = args.length >= 2 && args[1].equalsIgnoreCase(NETWORK);
+        int pageArg = window != null || network ? 2 : 1;
+
+        int page = 1;
+        if (args.length > pageArg) {
+            try {
+                page = Integer.parseInt(args[pageArg]);
+            } catch (NumberFormatException e) {
+                page = 0;
+            }
+            if (page < 1) {
+                sender.sendMessage(Component.text("Page must be a positive number.", NamedTextColor.RED));
+                return true;
+            }
+            if (page > MAX_PAGE) {
+                sender.sendMessage(Component.text("Page must be at most " + MAX_PAGE + ".", NamedTextColor.RED));
+                return true;
+            }
+        }
+
+        int offset = (page - 1) * PAGE_SIZE;
+        int requestedPage = page;
+        if (window != null) {
+            showRollingLeaderboard(sender, category, window, requestedPage);
+            return true;
+        }
+        if (network) {
+            if (!DatabaseManager.hasNetworkLeaderboard(category)) {
+                sender.sendMessage(Component.text("Reputation is only ranked per server.", NamedTextColor.RED));
+                return true;
+            }
+            showNetworkLeaderboard(sender, category, requestedPage);
+            return true;
+        }
+
+        plugin.getStatsStore().acceptOnMainThread(plugin.getStatsStore().read(db -> new LeaderboardPage(
+            db.getLeaderboardPage(category, offset, PAGE_SIZE),
+            db.getLeaderboardSize(category)
+        )), result -> {
+            if (result.players().isEmpty()) {
+                sendEmptyPage(sender, result.totalPlayers());
+                return;
+            }
+            List<Component> entries = new ArrayList<>(result.players().size());
+            for (PlayerStats stats : result.players()) {
+                entries.add(getEntryComponent(stats, getValueComponent(category, stats)));
+            }
+            displayLeaderboard(sender, "TOP " + category.getDisplayName().toUpperCase(), entries, requestedPage, result.totalPlayers());
         });
 
         return true;
     }
 
-    private boolean isValidCategory(String category) {
-        return Arrays.asList("timeplayed", "kills", "deaths", "chatter", "loved", "hated").contains(category);
+    private void showRollingLeaderboard(CommandSender sender, LeaderboardCategory category, LeaderboardWindow window, int page) {
+        int offset = (page - 1) * PAGE_SIZE;
+        plugin.getStatsStore().acceptOnMainThread(plugin.getStatsStore().read(db -> new RollingLeaderboardPage(
+            db.getRollingLeaderboardPage(category, window, offset, PAGE_SIZE),
+            db.getRollingLeaderboardSize(category, window)
+        )), result -> {
+            if (result.entries().isEmpty()) {
+                sendEmptyPage(sender, result.totalPlayers());
+                return;
+            }
+            List<Component> entries = new ArrayList<>(result.entries().size());
+            for (RollingLeaderboardEntry entry : result.entries()) {
+                entries.add(getEntryComponent(entry.stats(), getScoreComponent(category, entry.score())));
+            }
+            String headerText = "TOP " + category.getDisplayName().toUpperCase() + " " + window.getDisplayName().toUpperCase();
+            displayLeaderboard(sender, headerText, entries, page, result.totalPlayers());
+        });
     }
 
-    private List<PlayerStats> getLeaderboardData(String category) {
-        switch (category) {
-            case "timeplayed":
-                return plugin.getDatabaseManager().getTopPlayersByTimePlayed(TOP_PLAYERS);
-            case "kills":
-                return plugin.getDatabaseManager().getTopPlayersByKills(TOP_PLAYERS);
-            case "deaths":
-                return plugin.getDatabaseManager().getTopPlayersByDeaths(TOP_PLAYERS);
-            case "chatter":
-                return plugin.getDatabaseManager().getTopPlayersByChatMessages(TOP_PLAYERS);
-            case "loved":
-                return plugin.getDatabaseManager().getTopPlayersByPositiveRep(TOP_PLAYERS);
-            case "hated":
-                return plugin.getDatabaseManager().getTopPlayersByNegativeRep(TOP_PLAYERS);
-            default:
-                return List.of();
+    private void showNetworkLeaderboard(CommandSender sender, LeaderboardCategory category, int page) {
+        int offset = (page - 1) * PAGE_SIZE;
+        plugin.getStatsStore().acceptOnMainThread(plugin.getStatsStore().read(db -> new NetworkLeaderboardPage(
+            db.getNetworkLeaderboardPage(category, offset, PAGE_SIZE),
+            db.getNetworkLeaderboardSize(category)
+        )), result -> {
+            if (result.entries().isEmpty()) {
+                sendEmptyPage(sender, result.totalPlayers());
+                return;
+            }
+            List<Component> entries = new ArrayList<>(result.entries().size());
+            for (NetworkLeaderboardEntry entry : result.entries()) {
+                entries.add(PlayerUtil.getPlayerDisplayName(entry.username(), entry.uuid())
+                    .append(Component.text(" - ", NamedTextColor.GRAY))
+                    .append(getScoreComponent(category, entry.score())));
+            }
+            displayLeaderboard(sender, "TOP " + category.getDisplayName().toUpperCase() + " NETWORK", entries, page, result.totalPlayers());
+        });
+    }
+
+    private static void sendEmptyPage(CommandSender sender, int totalPlayers) {
+        if (totalPlayers > 0) {
+            sender.sendMessage(Component.text("There are only " + totalPages(totalPlayers) + " pages for this category.", NamedTextColor.YELLOW));
+        } else {
+            sender.sendMessage(Component.text("No players found for this category.", NamedTextColor.YELLOW));
         }
     }
 
-    private void displayLeaderboard(CommandSender sender, String category, List<PlayerStats> players) {
-        String categoryDisplay = getCategoryDisplayName(category);
+    private static int totalPages(int totalPlayers) {
+        return Math.max(1, (totalPlayers + PAGE_SIZE - 1) / PAGE_SIZE);
+    }
 
-        String headerText = "TOP " + categoryDisplay.toUpperCase();
+    private void displayLeaderboard(CommandSender sender, String headerText, List<Component> entries,
+                                    int page, int totalPlayers) {
         String dashes = "-".repeat(40);
 
         Component header = Component.text(dashes.substring(0, 8) + " ", NamedTextColor.GRAY)
             .append(Component.text(headerText, NamedTextColor.GOLD))
-            .append(Component.text(" " + dashes.substring(0, 40 - headerText.length() - 9), NamedTextColor.GRAY));
+            .append(Component.text(" " + dashes.substring(0, Math.max(1, 40 - headerText.length() - 9)), NamedTextColor.GRAY));
 
         sender.sendMessage(header);
 
         // Player entries
-        for (int i = 0; i < players.size(); i++) {
-            PlayerStats stats = players.get(i);
-            int rank = i + 1;
+        for (int i = 0; i < entries.size(); i++) {
+            int rank = (page - 1) * PAGE_SIZE + i + 1;
 
             String rankStr = String.format("%2d. ", rank);
-            
-            Component entry = Component.text(rankStr, NamedTextColor.WHITE)
-                .append(PlayerUtil.getPlayerDisplayName(stats.getUsername(), stats.getUuid()))
-                .append(Component.text(" - ", NamedTextColor.GRAY))
-                .append(getValueComponent(category, stats));
 
-            sender.sendMessage(entry);
+            sender.sendMessage(Component.text(rankStr, NamedTextColor.WHITE).append(entries.get(i)));
         }
 
         // Footer
-        Component footer = Component.text(dashes, NamedTextColor.GRAY);
-        sender.sendMessage(footer);
+        int totalPages = totalPages(totalPlayers);
+        if (totalPages > 1) {
+            String pageText = "Page " + page + "/" + totalPages;
+            Component footer = Component.text(dashes.substring(0, 8) + " ", NamedTextColor.GRAY)
+                .append(Component.text(pageText, NamedTextColor.GOLD))
+                .append(Component.text(" " + dashes.substring(0, 40 - pageText.length() - 9), NamedTextColor.GRAY));
+            sender.sendMessage(footer);
+        } else {
+            sender.sendMessage(Component.text(dashes, NamedTextColor.GRAY));
+        }
     }
 
-    private String getCategoryDisplayName(String category) {
+    private Component getEntryComponent(PlayerStats stats, Component value) {
+        return PlayerUtil.getPlayerDisplayName(stats.getUsername(), stats.getUuid())
+            .append(Component.text(" - ", NamedTextColor.GRAY))
+            .append(value);
+    }
+
+    /**
+     * Show what a player achieved within a window; reputation is the net change only.
+     */
+    private Component getScoreComponent(LeaderboardCategory category, long score) {
         switch (category) {
-            case "timeplayed": return "Time Played";
-            case "kills": return "Kills";
-            case "deaths": return "Deaths";
-            case "chatter": return "Chat Messages";
-            case "loved": return "Highest Reputation";
-            case "hated": return "Lowest Reputation";
-            default: return category;
+            case TIMEPLAYED:
+                return Component.text(PlayerStats.formatDuration(score), NamedTextColor.GREEN);
+            case KILLS:
+                return Component.text(score + " " + (score == 1 ? "kill" : "kills"), NamedTextColor.RED);
+            case DEATHS:
+                return Component.text(score + " " + (score == 1 ? "death" : "deaths"), NamedTextColor.DARK_RED);
+            case CHATTER:
+                return Component.text(score + " " + (score == 1 ? "message" : "messages"), NamedTextColor.AQUA);
+            case LOVED:
+            case HATED:
+                NamedTextColor netColor = score > 0 ? NamedTextColor.GREEN : (score < 0 ? NamedTextColor.RED : NamedTextColor.WHITE);
+                return Component.text(score > 0 ? "+" + score : String.valueOf(score), netColor);
+            default:
+                return Component.text("Unknown", NamedTextColor.GRAY);
         }
     }
 
-    private Component getValueComponent(String category, PlayerStats stats) {
+    private Component getValueComponent(LeaderboardCategory category, PlayerStats stats) {
         switch (category) {
-            case "timeplayed":
+            case TIMEPLAYED:
                 return Component.text(stats.getFormattedTimePlayed(), NamedTextColor.GREEN);
-            case "kills":
+            case KILLS:
                 String killText = stats.getKills() == 1 ? "kill" : "kills";
                 return Component.text(stats.getKills() + " " + killText, NamedTextColor.RED);
-            case "deaths":
+            case DEATHS:
                 String deathText = stats.getDeaths() == 1 ? "death" : "deaths";
                 return Component.text(stats.getDeaths() + " " + deathText, NamedTextColor.DARK_RED);
-            case "chatter":
+            case CHATTER:
                 String messageText = stats.getChatMessages() == 1 ? "message" : "messages";
                 return Component.text(stats.getChatMessages() + " " + messageText, NamedTextColor.AQUA);
-            case "loved":
-            case "hated":
+            case LOVED:
+            case HATED:
                 int netRep = stats.getNetRep();
                 NamedTextColor netColor = netRep > 0 ? NamedTextColor.GREEN : (netRep < 0 ? NamedTextColor.RED : NamedTextColor.WHITE);
                 String netDisplay = netRep > 0 ? "+" + netRep : (netRep < 0 ? "-" + Math.abs(netRep) : "0");
@@ -150,11 +243,25 @@ public class LeaderboardCommand implements CommandExecutor, TabCompleter {
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         if (args.length == 1) {
-            return Arrays.asList("timeplayed", "kills", "deaths", "chatter", "loved", "hated")
+            return LeaderboardCategory.ids()
                 .stream()
                 .filter(category -> category.toLowerCase().startsWith(args[0].toLowerCase()))
                 .collect(Collectors.toList());
         }
+        if (args.length == 2) {
+            List<String> options = new ArrayList<>(LeaderboardWindow.ids());
+            options.add(NETWORK);
+            return options
+                .stream()
+                .filter(option -> option.startsWith(args[1].toLowerCase()))
+                .collect(Collectors.toList());
+        }
         return List.of();
     }
+
+    private record LeaderboardPage(List<PlayerStats> players, int totalPlayers) {}
+
+    private record RollingLeaderboardPage(List<RollingLeaderboardEntry> entries, int totalPlayers) {}
+
+    private record NetworkLeaderboardPage(List<NetworkLeaderboardEntry> entries, int totalPlayers) {}
 }
@@ -1,12 +1,27 @@
 package com.jellypudding.offlineStats.commands;
 
 import com.jellypudding.offlineStats.OfflineStats;
+import com.jellypudding.offlineStats.database.DatabaseManager;
+import com.jellypudding.offlineStats.database.NetworkMergeResult;
+import com.jellypudding.offlineStats.database.PlayerStatsCache;
+import com.jellypudding.offlineStats.metrics.LatencyHistogram;
+import com.jellypudding.offlineStats.metrics.OperationTimer;
+import com.jellypudding.offlineStats.metrics.StatsMetrics;
+import com.jellypudding.offlineStats.utils.AntiFarmingManager;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
 public class OfflineStatsCommand implements CommandExecutor {
 
     private final OfflineStats plugin;
@@ -23,7 +38,7 @@ public class OfflineStatsCommand implements CommandExecutor {
         }
 
         if (args.length == 0) {
-            sender.sendMessage(Component.text("Usage: /offlinestats reload", NamedTextColor.RED));
+            sender.sendMessage(Component.text("Usage: /offlinestats <reload|cache|antifarming|metrics|network|import>", NamedTextColor.RED));
             return true;
         }
 
@@ -31,6 +46,7 @@ public class OfflineStatsCommand implements CommandExecutor {
             try {
                 plugin.reloadConfig();
                 plugin.getAntiFarmingManager().reload();
+                plugin.getMilestoneManager().reload();
                 sender.sendMessage(Component.text("OfflineStats configuration reloaded successfully.", NamedTextColor.GREEN));
                 plugin.getLogger().info(sender.getName() + " reloaded the OfflineStats configuration.");
             } catch (Exception e) {
@@ -40,7 +56,150 @@ public class OfflineStatsCommand implements CommandExecutor {
             return true;
         }
 
-        sender.sendMessage(Component.text("Unknown subcommand. Usage: /offlinestats reload", NamedTextColor.RED));
+        if (args[0].equalsIgnoreCase("cache")) {
+            PlayerStatsCache cache = plugin.getDatabaseManager().getStatsCache();
+            long hits = cache.getHits();
+            long misses = cache.getMisses();
+            long lookups = hits + misses;
+            String hitRate = lookups > 0 ? String.format("%.1f%%", hits * 100.0 / lookups) : "n/a";
+
+            sender.sendMessage(Component.text("Stats cache: ", NamedTextColor.GOLD)
+                .append(Component.text(cache.getOnlineSize() + " online, " + cache.getOfflineSize() + " offline", NamedTextColor.YELLOW)));
+            sender.sendMessage(Component.text("Lookups: ", NamedTextColor.GOLD)
+                .append(Component.text(hits + " hits, " + misses + " misses (" + hitRate + " hit rate)", NamedTextColor.YELLOW)));
+            return true;
+        }
+
+        if (args[0].equalsIgnoreCase("antifarming")) {
+            AntiFarmingManager antiFarming = plugin.getAntiFarmingManager();
+
+            sender.sendMessage(Component.text("Anti-farming: ", NamedTextColor.GOLD)
+                .append(Component.text(antiFarming.getTrackedWindows() + " windows across " + antiFarming.getTrackedPlayers() + " players", NamedTextColor.YELLOW)));
+            sender.sendMessage(Component.text("Expired: ", NamedTextColor.GOLD)
+                .append(Component.text(antiFarming.getExpiredWindowsLastMinute() + " in the last minute, " + antiFarming.getExpiredWindows() + " in total", NamedTextColor.YELLOW)));
+            return true;
+        }
+
+        if (args[0].equalsIgnoreCase("metrics")) {
+            StatsMetrics metrics = plugin.getMetrics();
+            if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+                metrics.reset();
+                sender.sendMessage(Component.text("OfflineStats metrics reset.", NamedTextColor.GREEN));
+                return true;
+            }
+            showMetrics(sender, metrics);
+            return true;
+        }
+
+        if (args[0].equalsIgnoreCase("network")) {
+            handleNetwork(sender, args);
+            return true;
+        }
+
+        if (args[0].equalsIgnoreCase("import")) {
+            handleImport(sender, args);
+            return true;
+        }
+
+        sender.sendMessage(Component.text("Unknown subcommand. Usage: /offlinestats <reload|cache|antifarming|metrics|network|import>", NamedTextColor.RED));
         return true;
     }
+
+    private void handleNetwork(CommandSender sender, String[] args) {
+        DatabaseManager databaseManager = plugin.getDatabaseManager();
+        String action = args.length > 1 ? args[1] : "";
+
+        if (action.equalsIgnoreCase("export")) {
+            plugin.getStatsStore().acceptOnMainThread(plugin.getStatsStore().write(DatabaseManager::exportNodeCounters), entries -> {
+                if (entries < 0) {
+                    sender.sendMessage(Component.text("Exporting node counters failed. See the console for details.", NamedTextColor.RED));
+                    return;
+                }
+                sender.sendMessage(Component.text("Exported " + entries + " entries to node-" + databaseManager.getNodeId() + ".db.", NamedTextColor.GREEN));
+            });
+            return;
+        }
+
+        if (action.equalsIgnoreCase("merge")) {
+            plugin.getStatsStore().acceptOnMainThread(plugin.getStatsStore().write(DatabaseManager::mergeNodeCounters),
+                result -> sendMergeResult(sender, result));
+            return;
+        }
+
+        if (action.equalsIgnoreCase("sync")) {
+            plugin.getStatsStore().acceptOnMainThread(plugin.getStatsStore().write(DatabaseManager::syncNetwork), result -> {
+                if (result == null) {
+                    sender.sendMessage(Component.text("Exporting node counters failed. See the console for details.", NamedTextColor.RED));
+                    return;
+                }
+                sendMergeResult(sender, result);
+            });
+            return;
+        }
+
+        sender.sendMessage(Component.text("Node id: ", NamedTextColor.GOLD)
+            .append(Component.text(databaseManager.getNodeId(), NamedTextColor.YELLOW)));
+        sender.sendMessage(Component.text("Network folder: ", NamedTextColor.GOLD)
+            .append(Component.text(databaseManager.getNetworkFolder().toString(), NamedTextColor.YELLOW)));
+        sender.sendMessage(Component.text("Usage: /offlinestats network <export|merge|sync>", NamedTextColor.GRAY));
+    }
+
+    private void handleImport(CommandSender sender, String[] args) {
+        if (args.length < 3 || !args[1].equalsIgnoreCase("logs")) {
+            sender.sendMessage(Component.text("Usage: /offlinestats import logs <folder>", NamedTextColor.RED));
+            return;
+        }
+
+        // Relative to the server folder, and may contain spaces.
+        Path directory = Path.of(String.join(" ", Arrays.copyOfRange(args, 2, args.length)));
+        if (!Files.isDirectory(directory)) {
+            sender.sendMessage(Component.text(directory + " is not a folder.", NamedTextColor.RED));
+            return;
+        }
+
+        Executor mainThread = plugin.getStatsStore().mainThread();
+        boolean started = plugin.getLogImporter().start(directory, message ->
+            mainThread.execute(() -> sender.sendMessage(Component.text(message, NamedTextColor.YELLOW))));
+        if (!started) {
+            sender.sendMessage(Component.text("A log import is already running.", NamedTextColor.RED));
+            return;
+        }
+        sender.sendMessage(Component.text("Importing logs from " + directory.toAbsolutePath().normalize() + "...", NamedTextColor.GREEN));
+        plugin.getLogger().info(sender.getName() + " started a log import from " + directory + ".");
+    }
+
+    private void sendMergeResult(CommandSender sender, NetworkMergeResult result) {
+        sender.sendMessage(Component.text("Merged " + result.entries() + " entries from " + result.files() + " node files.", NamedTextColor.GREEN));
+        if (result.failedFiles() > 0) {
+            sender.sendMessage(Component.text(result.failedFiles() + " node files could not be read. See the console for details.", NamedTextColor.RED));
+        }
+    }
+
+    private void showMetrics(CommandSender sender, StatsMetrics metrics) {
+        long minutes = (System.currentTimeMillis() - metrics.getSince()) / 60000;
+        sender.sendMessage(Component.text("OfflineStats metrics for the last " + minutes + " minutes:", NamedTextColor.GOLD));
+
+        for (OperationTimer timer : metrics.getTimers().values()) {
+            LatencyHistogram histogram = timer.getHistogram();
+            if (histogram.getCount() == 0) continue;
+
+            sender.sendMessage(Component.text(timer.getName() + ": ", NamedTextColor.GOLD)
+                .append(Component.text(histogram.getCount() + " calls (" + timer.getMainThreadCalls() + " on main thread), p50 " +
+                    formatMillis(histogram.getPercentileNanos(50)) + ", p99 " + formatMillis(histogram.getPercentileNanos(99)) +
+                    ", max " + formatMillis(histogram.getMaxNanos()), NamedTextColor.YELLOW)));
+        }
+
+        StringJoiner events = new StringJoiner(", ");
+        for (Map.Entry<String, LongAdder> counter : metrics.getCounters().entrySet()) {
+            events.add(counter.getKey() + "=" + counter.getValue().sum());
+        }
+        sender.sendMessage(Component.text("Events: ", NamedTextColor.GOLD)
+            .append(Component.text(events.length() > 0 ? events.toString() : "none", NamedTextColor.YELLOW)));
+        sender.sendMessage(Component.text("Main thread blocked: ", NamedTextColor.GOLD)
+            .append(Component.text(formatMillis(metrics.getMainThreadBlockingNanos()) + " in total", NamedTextColor.YELLOW)));
+    }
+
+    private String formatMillis(long nanos) {
+        return String.format("%.3fms", nanos / 1_000_000.0);
+    }
 }
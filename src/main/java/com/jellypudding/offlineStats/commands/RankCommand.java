@@ -0,0 +1,107 @@
+package com.jellypudding.offlineStats.commands;
+
+import com.jellypudding.offlineStats.OfflineStats;
+import com.jellypudding.offlineStats.database.PlayerNameIndex;
+import com.jellypudding.offlineStats.database.PlayerStats;
+import com.jellypudding.offlineStats.leaderboard.LeaderboardCategory;
+import com.jellypudding.offlineStats.utils.PlayerUtil;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+import org.bukkit.entity.Player;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+public class RankCommand implements CommandExecutor, TabCompleter {
+
+    private final OfflineStats plugin;
+
+    public RankCommand(OfflineStats plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (!sender.hasPermission("offlinestats.rank")) {
+            sender.sendMessage(Component.text("You don't have permission to use this command.", NamedTextColor.RED));
+            return true;
+        }
+
+        if (args.length < 1) {
+            sender.sendMessage(Component.text("Usage: /rank <category> [player]", NamedTextColor.RED));
+            return true;
+        }
+
+        LeaderboardCategory category = LeaderboardCategory.fromId(args[0]);
+        if (category == null) {
+            sender.sendMessage(Component.text("Invalid category! Valid categories: " + String.join(", ", LeaderboardCategory.ids()), NamedTextColor.RED));
+            return true;
+        }
+
+        UUID targetPlayerUuid;
+        String targetPlayerName;
+        if (args.length < 2) {
+            if (!(sender instanceof Player senderPlayer)) {
+                sender.sendMessage(Component.text("Console must specify a player name!", NamedTextColor.RED));
+                return true;
+            }
+            targetPlayerUuid = senderPlayer.getUniqueId();
+            targetPlayerName = senderPlayer.getName();
+        } else {
+            PlayerNameIndex.Entry target = PlayerUtil.findPlayer(args[1]);
+            if (target == null) {
+                sender.sendMessage(Component.text("Player '", NamedTextColor.RED)
+                    .append(Component.text(args[1], NamedTextColor.YELLOW))
+                    .append(Component.text("' not found.", NamedTextColor.RED)));
+                return true;
+            }
+            targetPlayerUuid = target.uuid();
+            targetPlayerName = target.name();
+        }
+
+        plugin.getStatsStore().acceptOnMainThread(plugin.getStatsStore().read(db -> new RankResult(
+            db.getPlayerStats(targetPlayerUuid),
+            db.getRank(category, targetPlayerUuid),
+            db.getLeaderboardSize(category)
+        )), result -> {
+            if (result.stats() == null || result.rank() < 1) {
+                sender.sendMessage(Component.text("Player '", NamedTextColor.RED)
+                    .append(Component.text(targetPlayerName, NamedTextColor.YELLOW))
+                    .append(Component.text("' has never joined the server.", NamedTextColor.RED)));
+                return;
+            }
+
+            PlayerStats stats = result.stats();
+            Component message = PlayerUtil.getPlayerDisplayName(stats.getUsername(), stats.getUuid())
+                .append(Component.text(" is ranked ", NamedTextColor.YELLOW))
+                .append(Component.text("#" + result.rank(), NamedTextColor.GOLD))
+                .append(Component.text(" of " + result.totalPlayers() + " for ", NamedTextColor.YELLOW))
+                .append(Component.text(category.getDisplayName(), NamedTextColor.GOLD))
+                .append(Component.text(".", NamedTextColor.YELLOW));
+            sender.sendMessage(message);
+        });
+
+        return true;
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        if (args.length == 1) {
+            return LeaderboardCategory.ids()
+                .stream()
+                .filter(category -> category.startsWith(args[0].toLowerCase()))
+                .collect(Collectors.toList());
+        }
+        if (args.length == 2) {
+            return PlayerUtil.completePlayerName(args[1]);
+        }
+        return List.of();
+    }
+
+    private record RankResult(PlayerStats stats, int rank, int totalPlayers) {}
+}
@@ -0,0 +1,196 @@
+package com.jellypudding.offlineStats.database;
+
+import com.jellypudding.offlineStats.OfflineStats;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+/**
+ * Asynchronous facade over {@link DatabaseManager} so that no SQL runs on the server thread.
+ * Writes are queued on a single writer thread (so they apply in submission order) and reads run on a small pool.
+ * Use {@link #mainThread()} to hop back to the server thread for Bukkit/Adventure calls.
+ */
+public class AsyncStatsStore {
+
+    private final OfflineStats plugin;
+    private final DatabaseManager databaseManager;
+    private final ExecutorService writeExecutor;
+    private final ExecutorService readExecutor;
+    private final Executor mainThreadExecutor;
+    private final Queue<Runnable> mainThreadTasks = new ConcurrentLinkedQueue<>();
+
+    public AsyncStatsStore(OfflineStats plugin, DatabaseManager databaseManager) {
+        this.plugin = plugin;
+        this.databaseManager = databaseManager;
+
+        int readThreads = Math.max(1, plugin.getConfig().getInt("database.read-threads", 2));
+        this.writeExecutor = Executors.newSingleThreadExecutor(namedThreadFactory("OfflineStats-DB-Writer"));
+        this.readExecutor = Executors.newFixedThreadPool(readThreads, namedThreadFactory("OfflineStats-DB-Reader"));
+        this.mainThreadExecutor = task -> {
+            if (!plugin.isEnabled() && Bukkit.isPrimaryThread()) {
+                // Already on the server thread while shutting down, e.g. a write run inline after the writer stopped.
+                runSafely(task);
+                return;
+            }
+            mainThreadTasks.add(task);
+            if (plugin.isEnabled()) {
+                Bukkit.getScheduler().runTask(plugin, this::runMainThreadTasks);
+            }
+        };
+    }
+
+    /**
+     * Executor that runs tasks on the server thread, in the order they were submitted.
+     * Tasks submitted while shutting down, or scheduled but not yet run when the plugin was disabled, are run by
+     * {@link #shutdown()} once queued writes have finished, so results such as milestone rewards are not lost.
+     */
+    public Executor mainThread() {
+        return mainThreadExecutor;
+    }
+
+    /**
+     * Run an action with a future's result on the server thread once it is ready.
+     * Exceptions thrown by the action are logged here; left in the returned future, which callers rarely keep,
+     * they would never be seen. Failures of the future itself were already logged when it failed.
+     * @return Future completed once the action has run
+     */
+    public <T> CompletableFuture<Void> acceptOnMainThread(CompletableFuture<T> future, Consumer<T> action) {
+        return future.thenAcceptAsync(result -> {
+            try {
+                action.accept(result);
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.SEVERE, "Error handling a database result on the server thread", e);
+                throw e;
+            }
+        }, mainThreadExecutor);
+    }
+
+    /**
+     * Run a query on the read pool
+     * @param query The query to run against the database
+     * @return Future completed with the query result
+     */
+    public <T> CompletableFuture<T> read(Function<DatabaseManager, T> query) {
+        return submit(query, readExecutor);
+    }
+
+    /**
+     * Queue an operation on the writer thread. Operations are applied in the order they were submitted.
+     * @param operation The operation to run against the database
+     * @return Future completed with the operation result
+     */
+    public <T> CompletableFuture<T> write(Function<DatabaseManager, T> operation) {
+        return submit(operation, writeExecutor);
+    }
+
+    /**
+     * Queue an operation without a result on the writer thread.
+     */
+    public CompletableFuture<Void> execute(Consumer<DatabaseManager> operation) {
+        return submit(db -> {
+            operation.accept(db);
+            return null;
+        }, writeExecutor);
+    }
+
+    public CompletableFuture<PlayerStats> getPlayerStats(UUID playerUuid) {
+        return read(db -> db.getPlayerStats(playerUuid));
+    }
+
+    public CompletableFuture<Map<UUID, PlayerStats>> getPlayerStats(Collection<UUID> playerUuids) {
+        List<UUID> snapshot = List.copyOf(playerUuids);
+        return read(db -> db.getPlayerStats(snapshot));
+    }
+
+    public CompletableFuture<Void> createOrUpdatePlayer(Player player) {
+        return execute(db -> db.createOrUpdatePlayer(player));
+    }
+
+    public CompletableFuture<Void> updatePlayerOnQuit(Player player) {
+        return execute(db -> db.updatePlayerOnQuit(player));
+    }
+
+    /**
+     * Stop accepting work, wait for queued writes to finish, then run the server thread tasks they left behind.
+     * Must be called on the server thread.
+     */
+    public void shutdown() {
+        readExecutor.shutdown();
+        writeExecutor.shutdown();
+        try {
+            if (!writeExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Timed out waiting for queued database writes to finish.");
+                writeExecutor.shutdownNow();
+            }
+            if (!readExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                readExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writeExecutor.shutdownNow();
+            readExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        runMainThreadTasks();
+    }
+
+    private void runMainThreadTasks() {
+        Runnable task;
+        while ((task = mainThreadTasks.poll()) != null) {
+            runSafely(task);
+        }
+    }
+
+    private void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error running a database result on the server thread", e);
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Function<DatabaseManager, T> task, ExecutorService executor) {
+        CompletableFuture<T> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> task.apply(databaseManager), executor);
+        } catch (RejectedExecutionException e) {
+            // Shutting down, so run inline rather than lose the work. Failures still go to the future.
+            try {
+                future = CompletableFuture.completedFuture(task.apply(databaseManager));
+            } catch (RuntimeException taskError) {
+                future = CompletableFuture.failedFuture(taskError);
+            }
+        }
+        future.whenComplete((result, error) -> {
+            if (error != null) {
+                plugin.getLogger().log(Level.SEVERE, "Asynchronous database task failed", error);
+            }
+        });
+        return future;
+    }
+
+    private static ThreadFactory namedThreadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package com.jellypudding.offlineStats.database;
+
+import java.util.UUID;
+
+/**
+ * Mutable in-memory copy of a player's committed database row.
+ * Increments that are still buffered in {@link PendingStatsBuffer} are merged in when a snapshot is taken.
+ * Fields are only mutated by {@link DatabaseManager} while it holds its cache write lock.
+ */
+public class CachedPlayerStats {
+
+    private final UUID uuid;
+    private String username;
+    private long firstSeen;
+    private long lastSeen;
+    private long timePlayed;
+    private long sessionStart;
+    private int kills;
+    private int deaths;
+    private int chatMessages;
+    private int positiveRep;
+    private int negativeRep;
+    private final long loadedAt;
+
+    public CachedPlayerStats(UUID uuid, String username, long firstSeen, long lastSeen,
+                             long timePlayed, long sessionStart, int kills, int deaths, int chatMessages,
+                             int positiveRep, int negativeRep) {
+        this.uuid = uuid;
+        this.username = username;
+        this.firstSeen = firstSeen;
+        this.lastSeen = lastSeen;
+        this.timePlayed = timePlayed;
+        this.sessionStart = sessionStart;
+        this.kills = kills;
+        this.deaths = deaths;
+        this.chatMessages = chatMessages;
+        this.positiveRep = positiveRep;
+        this.negativeRep = negativeRep;
+        this.loadedAt = System.currentTimeMillis();
+    }
+
+    public UUID getUuid() { return uuid; }
+    public long getLoadedAt() { return loadedAt; }
+
+    void applyDelta(PendingStatsBuffer.Delta delta, int sign) {
+        kills += sign * delta.getKills();
+        deaths += sign * delta.getDeaths();
+        chatMessages += sign * delta.getChatMessages();
+    }
+
+    /**
+     * Add imported stats, as an import does to the row.
+     */
+    void applyImport(ImportedPlayer imported) {
+        firstSeen = Math.min(firstSeen, imported.firstSeen());
+        lastSeen = Math.max(lastSeen, imported.lastSeen());
+        timePlayed += imported.timePlayed();
+        kills += imported.kills();
+        deaths += imported.deaths();
+        chatMessages += imported.chatMessages();
+    }
+
+    /**
+     * Fold the session so far into time played, as a session checkpoint does to the row.
+     */
+    void checkpointSession(long now) {
+        if (sessionStart > 0) {
+            timePlayed += now - sessionStart;
+            sessionStart = now;
+        }
+    }
+
+    void changeRep(String previousType, boolean positive) {
+        if ("positive".equals(previousType)) {
+            positiveRep = Math.max(0, positiveRep - 1);
+        } else if ("negative".equals(previousType)) {
+            negativeRep = Math.max(0, negativeRep - 1);
+        }
+
+        if (positive) {
+            positiveRep++;
+        } else {
+            negativeRep++;
+        }
+    }
+
+    PlayerStats toPlayerStats(PendingStatsBuffer.Delta pending) {
+        int pendingKills = pending != null ? pending.getKills() : 0;
+        int pendingDeaths = pending != null ? pending.getDeaths() : 0;
+        int pendingChatMessages = pending != null ? pending.getChatMessages() : 0;
+
+        return new PlayerStats(uuid, username, firstSeen, lastSeen, timePlayed, sessionStart,
+            kills + pendingKills, deaths + pendingDeaths, chatMessages + pendingChatMessages,
+            positiveRep, negativeRep);
+    }
+}
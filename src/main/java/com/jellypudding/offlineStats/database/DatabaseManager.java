@@ -1,425 +1,989 @@
 package com.jellypudding.offlineStats.database;
 
 import com.jellypudding.offlineStats.OfflineStats;
+import com.jellypudding.offlineStats.leaderboard.LeaderboardCategory;
+import com.jellypudding.offlineStats.leaderboard.LeaderboardIndex;
+import com.jellypudding.offlineStats.leaderboard.LeaderboardWindow;
+import com.jellypudding.offlineStats.leaderboard.RollingLeaderboards;
+import com.jellypudding.offlineStats.metrics.OperationTimer;
+import com.jellypudding.offlineStats.metrics.StatsMetrics;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 
 import java.io.File;
-import java.sql.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
 import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * Keeps player stats in memory (caches, leaderboards, buffered increments) in front of a {@link StatsStorage}.
+ * Operations that change rows or in-memory state hold this manager's lock so they apply in order.
+ * Lookups go straight to the storage, so with a connection pool they run in parallel with each other and with writes.
+ */
 public class DatabaseManager {
 
-    private final OfflineStats plugin;
-    private Connection connection;
-    private final String databasePath;
+    private static final long REP_COOLDOWN_MS = 24 * 60 * 60 * 1000L;
+
+    private final Logger logger;
+    private final StatsStorage storage;
+    private final PendingStatsBuffer pendingStats = new PendingStatsBuffer();
+    private final PlayerStatsCache statsCache;
+    // Guards cached rows against being read half-way through a flush or in-place update.
+    private final StampedLock cacheLock = new StampedLock();
+    // Odd while a write that changes player rows is in progress. Changed under cacheLock; see cacheLoaded().
+    private volatile long rowWriteVersion;
+    private final LeaderboardIndex leaderboards = new LeaderboardIndex();
+    private final RollingLeaderboards rollingLeaderboards = new RollingLeaderboards();
+    private final PlayerNameIndex nameIndex = new PlayerNameIndex();
+    // Reputation given by each player, keyed by receiver. Loaded on a giver's first /goodrep or /badrep.
+    private final Map<UUID, Map<UUID, StatsStorage.RepRecord>> repRecordsByGiver = new HashMap<>();
+    private final boolean historyEnabled;
+    private final int historyRetentionDays;
+    private final ZoneId historyZone = ZoneId.systemDefault();
+    // Start of the day stats history was last rolled over at.
+    private long lastHistoryRollover;
+    // Folder node files are exported to and merged from, and the random id this database exports as.
+    private final Path networkFolder;
+    private volatile long nodeId;
+
+    // Timers for /offlinestats metrics. Synchronized operations are timed outside the lock so waiting for it counts too.
+    private final OperationTimer joinTimer;
+    private final OperationTimer quitTimer;
+    private final OperationTimer incrementTimer;
+    private final OperationTimer flushTimer;
+    private final OperationTimer checkpointTimer;
+    private final OperationTimer lookupTimer;
+    private final OperationTimer bulkLookupTimer;
+    private final OperationTimer reputationTimer;
+    private final OperationTimer milestoneTimer;
+    private final OperationTimer leaderboardTimer;
+    private final OperationTimer historyTimer;
+    private final OperationTimer networkTimer;
+    private final OperationTimer importTimer;
 
     public DatabaseManager(OfflineStats plugin) {
-        this.plugin = plugin;
-        this.databasePath = plugin.getDataFolder() + File.separator + "offlinestats.db";
+        this(plugin.getLogger(), plugin.getDataFolder(), plugin.getConfig(), plugin.getMetrics());
+    }
+
+    /**
+     * Create a database manager outside of a running server, e.g. for benchmarks.
+     * @param logger Logger for errors and start-up information
+     * @param dataFolder Folder holding offlinestats.db when SQLite is used
+     * @param config Root configuration; database.type selects where stats are stored
+     * @param metrics Where operation timings are recorded
+     */
+    public DatabaseManager(Logger logger, File dataFolder, ConfigurationSection config, StatsMetrics metrics) {
+        this.logger = logger;
+        this.storage = StatsStorage.create(logger, dataFolder, config, historyZone);
+        this.statsCache = new PlayerStatsCache(
+            Math.max(0, config.getInt("database.cache.offline-max-size", 1000)),
+            config.getLong("database.cache.offline-ttl-seconds", 300) * 1000L
+        );
+
+        this.joinTimer = metrics.timer("db.createOrUpdatePlayer");
+        this.quitTimer = metrics.timer("db.updatePlayerOnQuit");
+        this.incrementTimer = metrics.timer("db.incrementStat");
+        this.flushTimer = metrics.timer("db.flushPendingStats");
+        this.checkpointTimer = metrics.timer("db.checkpointSessions");
+        this.lookupTimer = metrics.timer("db.getPlayerStats");
+        this.bulkLookupTimer = metrics.timer("db.getPlayerStatsBulk");
+        this.reputationTimer = metrics.timer("db.giveReputation");
+        this.milestoneTimer = metrics.timer("db.milestones");
+        this.leaderboardTimer = metrics.timer("db.leaderboard");
+        this.historyTimer = metrics.timer("db.history");
+        this.networkTimer = metrics.timer("db.network");
+        this.importTimer = metrics.timer("db.importPlayers");
+
+        this.historyEnabled = config.getBoolean("database.history.enabled", true);
+        this.historyRetentionDays = Math.max(1, config.getInt("database.history.daily-retention-days", 90));
+
+        Path folder = Path.of(config.getString("network.folder", "network"));
+        this.networkFolder = folder.isAbsolute() ? folder : dataFolder.toPath().resolve(folder);
     }
 
     public synchronized void initialise() {
         try {
-            if (!plugin.getDataFolder().exists()) {
-                plugin.getDataFolder().mkdirs();
-            }
+            storage.open();
 
-            connection = DriverManager.getConnection("jdbc:sqlite:" + databasePath);
+            lastHistoryRollover = storage.getLastHistoryRollover();
+            nodeId = storage.getNodeId();
 
-            createTables();
+            loadLeaderboards();
 
-            plugin.getLogger().info("Database initialised successfully.");
+            logger.info("Database initialised successfully: " + storage.getDescription() + ".");
 
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to initialise database!", e);
-        }
-    }
-
-    private synchronized void createTables() throws SQLException {
-        String createPlayersTable = """
-            CREATE TABLE IF NOT EXISTS players (
-                uuid TEXT PRIMARY KEY,
-                username TEXT NOT NULL,
-                first_seen DATETIME NOT NULL,
-                last_seen DATETIME NOT NULL,
-                time_played BIGINT DEFAULT 0,
-                session_start BIGINT DEFAULT 0,
-                kills INTEGER DEFAULT 0,
-                deaths INTEGER DEFAULT 0,
-                chat_messages INTEGER DEFAULT 0,
-                positive_rep INTEGER DEFAULT 0,
-                negative_rep INTEGER DEFAULT 0
-            );
-        """;
-
-        String createMilestonesTable = """
-            CREATE TABLE IF NOT EXISTS milestones (
-                uuid TEXT NOT NULL,
-                milestone_type TEXT NOT NULL,
-                milestone_value INTEGER NOT NULL,
-                achieved_at DATETIME NOT NULL,
-                PRIMARY KEY (uuid, milestone_type, milestone_value)
-            );
-        """;
-
-        String createRepCooldownsTable = """
-            CREATE TABLE IF NOT EXISTS reputation_cooldowns (
-                giver_uuid TEXT NOT NULL,
-                receiver_uuid TEXT NOT NULL,
-                rep_type TEXT NOT NULL,
-                last_rep_time BIGINT NOT NULL,
-                PRIMARY KEY (giver_uuid, receiver_uuid)
+            logger.log(Level.SEVERE, "Failed to initialise database!", e);
+            storage.close();
+        }
+    }
+
+    /**
+     * Seed the in-memory leaderboards and name index with one pass over the players table.
+     * Rows are read oldest first so a name used by more than one player maps to whoever used it last.
+     */
+    private synchronized void loadLeaderboards() throws SQLException {
+        long started = System.nanoTime();
+        leaderboards.clear();
+        List<PlayerNameIndex.Entry> names = new ArrayList<>();
+
+        storage.forEachPlayer(row -> {
+            PlayerStats player = row.toPlayerStats(null);
+            names.add(PlayerNameIndex.Entry.of(player.getUsername(), player.getUuid()));
+            leaderboards.seed(
+                player.getUuid(),
+                player.getTimePlayed(),
+                player.getSessionStart(),
+                player.getKills(),
+                player.getDeaths(),
+                player.getChatMessages(),
+                player.getPositiveRep(),
+                player.getNegativeRep()
             );
-        """;
+        });
+
+        nameIndex.load(names);
+        seedRollingLeaderboards();
+
+        logger.info("Loaded leaderboards for " + leaderboards.size() + " players in " +
+                                (System.nanoTime() - started) / 1_000_000 + "ms.");
+    }
+
+    /**
+     * Rebuild the week and month leaderboards from the last month of stats history and the current day so far.
+     * Without history they start empty and fill up as events arrive.
+     */
+    private void seedRollingLeaderboards() throws SQLException {
+        rollingLeaderboards.clear();
+        if (!historyEnabled) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        storage.replayHistory(now - 31L * 24 * 60 * 60 * 1000, true, now, (playerUuid, at, deltas) -> {
+            rollingLeaderboards.add(LeaderboardCategory.KILLS, playerUuid, deltas[0], at);
+            rollingLeaderboards.add(LeaderboardCategory.DEATHS, playerUuid, deltas[1], at);
+            rollingLeaderboards.add(LeaderboardCategory.CHATTER, playerUuid, deltas[2], at);
+            rollingLeaderboards.add(LeaderboardCategory.TIMEPLAYED, playerUuid, deltas[3], at);
+            rollingLeaderboards.add(LeaderboardCategory.LOVED, playerUuid, deltas[4] - deltas[5], at);
+        });
+    }
 
-        try (PreparedStatement stmt1 = connection.prepareStatement(createPlayersTable);
-             PreparedStatement stmt2 = connection.prepareStatement(createMilestonesTable);
-             PreparedStatement stmt3 = connection.prepareStatement(createRepCooldownsTable)) {
+    public boolean isInitialised() {
+        return storage.isOpen();
+    }
 
-            stmt1.executeUpdate();
-            stmt2.executeUpdate();
-            stmt3.executeUpdate();
+    public synchronized void close() {
+        if (storage.isOpen()) {
+            flushPendingStats();
+            storage.close();
+            logger.info("Database connection closed.");
         }
+    }
 
-        // New feature so need to add if it's not present in db...
-        addColumnIfNotExists("players", "positive_rep", "INTEGER DEFAULT 0");
-        addColumnIfNotExists("players", "negative_rep", "INTEGER DEFAULT 0");
+    public void createOrUpdatePlayer(Player player) {
+        long start = joinTimer.start();
+        try {
+            writePlayerJoin(player);
+        } finally {
+            joinTimer.stop(start);
+        }
     }
 
-    private synchronized void addColumnIfNotExists(String table, String column, String type) {
+    private synchronized void writePlayerJoin(Player player) {
+        String username = player.getName();
+        long sessionStart = System.currentTimeMillis();
+
         try {
-            String checkQuery = "SELECT " + column + " FROM " + table + " LIMIT 1";
-            try (PreparedStatement stmt = connection.prepareStatement(checkQuery)) {
-                stmt.executeQuery();
+            String previousUsername = storage.findUsername(player.getUniqueId());
+            if (previousUsername != null) {
+                storage.updatePlayerJoin(player.getUniqueId(), username, sessionStart);
+            } else {
+                storage.insertPlayer(player.getUniqueId(), username, sessionStart);
+                leaderboards.seed(player.getUniqueId(), 0, sessionStart, 0, 0, 0, 0, 0);
             }
-        } catch (SQLException e) {
-            try {
-                String alterQuery = "ALTER TABLE " + table + " ADD COLUMN " + column + " " + type;
-                try (PreparedStatement stmt = connection.prepareStatement(alterQuery)) {
-                    stmt.executeUpdate();
-                    plugin.getLogger().info("Added column " + column + " to " + table + " table");
-                }
-            } catch (SQLException ex) {
-                plugin.getLogger().warning("Failed to add column " + column + " to " + table + ": " + ex.getMessage());
+            leaderboards.startSession(player.getUniqueId(), sessionStart);
+            rollingLeaderboards.startSession(player.getUniqueId(), sessionStart);
+            if (previousUsername != null && !previousUsername.equals(username)) {
+                nameIndex.remove(previousUsername, player.getUniqueId());
             }
+            nameIndex.put(username, player.getUniqueId());
+
+            CachedPlayerStats cached = storage.loadPlayer(player.getUniqueId());
+            if (cached != null) {
+                statsCache.putOnline(cached);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error creating/updating player data for " + username, e);
         }
     }
 
-    public synchronized boolean isInitialised() {
+    public void updatePlayerOnQuit(Player player) {
+        long start = quitTimer.start();
         try {
-            return connection != null && !connection.isClosed();
-        } catch (SQLException e) {
-            return false;
+            writePlayerQuit(player);
+        } finally {
+            quitTimer.stop(start);
         }
     }
 
-    public synchronized void close() {
+    private synchronized void writePlayerQuit(Player player) {
+        long sessionEnd = System.currentTimeMillis();
+
+        beginRowWrite();
         try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                plugin.getLogger().info("Database connection closed.");
-            }
+            storage.updatePlayerQuit(player.getUniqueId(), sessionEnd);
+            leaderboards.endSession(player.getUniqueId(), sessionEnd);
+            rollingLeaderboards.endSession(player.getUniqueId(), sessionEnd);
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error closing database connection!", e);
+            logger.log(Level.SEVERE, "Error updating player quit data for " + player.getName(), e);
+        } finally {
+            // The row is persisted, so the player no longer needs to be pinned in memory.
+            statsCache.evict(player.getUniqueId());
+            endRowWrite();
         }
+        repRecordsByGiver.remove(player.getUniqueId());
     }
 
-    public synchronized void createOrUpdatePlayer(Player player) {
-        String uuid = player.getUniqueId().toString();
-        String username = player.getName();
-        String now = getCurrentTimestamp();
-
-        String selectQuery = "SELECT uuid FROM players WHERE uuid = ?";
-        String insertQuery = """
-            INSERT INTO players (uuid, username, first_seen, last_seen, session_start) 
-            VALUES (?, ?, ?, ?, ?)
-        """;
-        String updateQuery = "UPDATE players SET username = ?, last_seen = ?, session_start = ? WHERE uuid = ?";
-
-        try (PreparedStatement selectStmt = connection.prepareStatement(selectQuery)) {
-            selectStmt.setString(1, uuid);
-            ResultSet rs = selectStmt.executeQuery();
-
-            if (rs.next()) {
-                try (PreparedStatement updateStmt = connection.prepareStatement(updateQuery)) {
-                    updateStmt.setString(1, username);
-                    updateStmt.setString(2, now);
-                    updateStmt.setLong(3, System.currentTimeMillis());
-                    updateStmt.setString(4, uuid);
-                    updateStmt.executeUpdate();
-                }
-            } else {
-                try (PreparedStatement insertStmt = connection.prepareStatement(insertQuery)) {
-                    insertStmt.setString(1, uuid);
-                    insertStmt.setString(2, username);
-                    insertStmt.setString(3, now);
-                    insertStmt.setString(4, now);
-                    insertStmt.setLong(5, System.currentTimeMillis());
-                    insertStmt.executeUpdate();
-                }
-            }
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error creating/updating player data for " + username, e);
+    public void incrementKills(UUID playerUuid) {
+        long start = incrementTimer.start();
+        try {
+            pendingStats.addKill(playerUuid);
+            leaderboards.addKill(playerUuid);
+            rollingLeaderboards.add(LeaderboardCategory.KILLS, playerUuid, 1, System.currentTimeMillis());
+        } finally {
+            incrementTimer.stop(start);
         }
     }
 
-    public synchronized void updatePlayerOnQuit(Player player) {
-        String uuid = player.getUniqueId().toString();
-        String now = getCurrentTimestamp();
+    public void incrementDeaths(UUID playerUuid) {
+        long start = incrementTimer.start();
+        try {
+            pendingStats.addDeath(playerUuid);
+            leaderboards.addDeath(playerUuid);
+            rollingLeaderboards.add(LeaderboardCategory.DEATHS, playerUuid, 1, System.currentTimeMillis());
+        } finally {
+            incrementTimer.stop(start);
+        }
+    }
 
-        String query = """
-            UPDATE players 
-            SET last_seen = ?, 
-                time_played = time_played + (? - session_start),
-                session_start = 0
-            WHERE uuid = ?
-        """;
+    public void incrementChatMessages(UUID playerUuid) {
+        long start = incrementTimer.start();
+        try {
+            pendingStats.addChatMessage(playerUuid);
+            leaderboards.addChatMessage(playerUuid);
+            rollingLeaderboards.add(LeaderboardCategory.CHATTER, playerUuid, 1, System.currentTimeMillis());
+        } finally {
+            incrementTimer.stop(start);
+        }
+    }
 
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setString(1, now);
-            stmt.setLong(2, System.currentTimeMillis());
-            stmt.setString(3, uuid);
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error updating player quit data for " + player.getName(), e);
+    /**
+     * Write all buffered kill, death and chat message increments in a single transaction.
+     */
+    public void flushPendingStats() {
+        long start = flushTimer.start();
+        try {
+            writePendingStats();
+        } finally {
+            flushTimer.stop(start);
         }
     }
 
-    public synchronized void incrementKills(UUID playerUuid) {
-        String query = "UPDATE players SET kills = kills + 1 WHERE uuid = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setString(1, playerUuid.toString());
-            stmt.executeUpdate();
+    private synchronized void writePendingStats() {
+        if (pendingStats.isEmpty() || !isInitialised()) {
+            return;
+        }
+
+        Map<UUID, PendingStatsBuffer.Delta> drained;
+        long stamp = cacheLock.writeLock();
+        try {
+            rowWriteVersion++;
+            drained = pendingStats.drain();
+            applyToCache(drained, 1);
+        } finally {
+            cacheLock.unlockWrite(stamp);
+        }
+
+        try {
+            storage.addStats(drained);
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error incrementing kills for " + playerUuid, e);
+            restorePending(drained);
+            logger.log(Level.SEVERE, "Error flushing pending stats for " + drained.size() + " players", e);
+        } finally {
+            endRowWrite();
         }
     }
 
-    public synchronized void incrementDeaths(UUID playerUuid) {
-        String query = "UPDATE players SET deaths = deaths + 1 WHERE uuid = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setString(1, playerUuid.toString());
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error incrementing deaths for " + playerUuid, e);
+    /**
+     * Fold the time online players have played so far into time_played, so a crash loses at most one interval.
+     * Every online player is updated in one transaction, a hundred rows per UPDATE.
+     * The leaderboards keep their own session starts and already count live time, so they are left alone.
+     */
+    public void checkpointSessions() {
+        long start = checkpointTimer.start();
+        try {
+            writeSessionCheckpoint();
+        } finally {
+            checkpointTimer.stop(start);
         }
     }
 
-    public synchronized void incrementChatMessages(UUID playerUuid) {
-        String query = "UPDATE players SET chat_messages = chat_messages + 1 WHERE uuid = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setString(1, playerUuid.toString());
-            stmt.executeUpdate();
+    private synchronized void writeSessionCheckpoint() {
+        List<CachedPlayerStats> online = new ArrayList<>(statsCache.getOnline());
+        if (online.isEmpty() || !isInitialised()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<UUID> playerUuids = new ArrayList<>(online.size());
+        for (CachedPlayerStats cached : online) {
+            playerUuids.add(cached.getUuid());
+        }
+        try {
+            storage.checkpointSessions(playerUuids, now);
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error incrementing chat messages for " + playerUuid, e);
+            logger.log(Level.SEVERE, "Error checkpointing sessions for " + online.size() + " players", e);
+            return;
+        }
+
+        long stamp = cacheLock.writeLock();
+        try {
+            for (CachedPlayerStats cached : online) {
+                cached.checkpointSession(now);
+            }
+        } finally {
+            cacheLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Mark the start of a write to player rows. Rows read from storage while it is in progress may miss it,
+     * so they are returned but not cached.
+     */
+    private void beginRowWrite() {
+        long stamp = cacheLock.writeLock();
+        try {
+            rowWriteVersion++;
+        } finally {
+            cacheLock.unlockWrite(stamp);
+        }
+    }
+
+    private void endRowWrite() {
+        long stamp = cacheLock.writeLock();
+        try {
+            rowWriteVersion++;
+        } finally {
+            cacheLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Cache rows read from storage without holding the manager's lock, unless a write to player rows
+     * was in progress or has started since the read began.
+     * @param version The value of rowWriteVersion before the rows were read
+     */
+    private void cacheLoaded(List<CachedPlayerStats> rows, long version) {
+        if ((version & 1) != 0) {
+            return;
+        }
+        long stamp = cacheLock.writeLock();
+        try {
+            if (rowWriteVersion == version) {
+                for (CachedPlayerStats row : rows) {
+                    statsCache.putOffline(row);
+                }
+            }
+        } finally {
+            cacheLock.unlockWrite(stamp);
+        }
+    }
+
+    private void restorePending(Map<UUID, PendingStatsBuffer.Delta> drained) {
+        long stamp = cacheLock.writeLock();
+        try {
+            applyToCache(drained, -1);
+            pendingStats.restore(drained);
+        } finally {
+            cacheLock.unlockWrite(stamp);
+        }
+    }
+
+    private void applyToCache(Map<UUID, PendingStatsBuffer.Delta> deltas, int sign) {
+        for (Map.Entry<UUID, PendingStatsBuffer.Delta> entry : deltas.entrySet()) {
+            CachedPlayerStats cached = statsCache.peek(entry.getKey());
+            if (cached != null) {
+                cached.applyDelta(entry.getValue(), sign);
+            }
         }
     }
 
-    public synchronized PlayerStats getPlayerStats(String playerName) {
-        UUID playerUuid = com.jellypudding.offlineStats.utils.PlayerUtil.getPlayerUUID(playerName);
-        if (playerUuid == null) {
+    public PlayerStats getPlayerStats(String playerName) {
+        PlayerNameIndex.Entry known = nameIndex.get(playerName);
+        if (known == null) {
             return null;
         }
 
-        return getPlayerStats(playerUuid);
-    }
-
-    public synchronized PlayerStats getPlayerStats(UUID playerUuid) {
-        String query = "SELECT * FROM players WHERE uuid = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setString(1, playerUuid.toString());
-            ResultSet rs = stmt.executeQuery();
-
-            if (rs.next()) {
-                return new PlayerStats(
-                    UUID.fromString(rs.getString("uuid")),
-                    rs.getString("username"),
-                    rs.getString("first_seen"),
-                    rs.getString("last_seen"),
-                    rs.getLong("time_played"),
-                    rs.getLong("session_start"),
-                    rs.getInt("kills"),
-                    rs.getInt("deaths"),
-                    rs.getInt("chat_messages"),
-                    rs.getInt("positive_rep"),
-                    rs.getInt("negative_rep")
-                );
+        return getPlayerStats(known.uuid());
+    }
+
+    public PlayerStats getPlayerStats(UUID playerUuid) {
+        long start = lookupTimer.start();
+        try {
+            CachedPlayerStats cached = statsCache.get(playerUuid);
+            if (cached != null) {
+                return snapshot(cached);
+            }
+            return loadPlayerStats(playerUuid);
+        } finally {
+            lookupTimer.stop(start);
+        }
+    }
+
+    private PlayerStats loadPlayerStats(UUID playerUuid) {
+        try {
+            long version = rowWriteVersion;
+            CachedPlayerStats cached = storage.loadPlayer(playerUuid);
+            if (cached != null) {
+                cacheLoaded(List.of(cached), version);
+                return snapshot(cached);
             }
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error getting player stats for " + playerUuid, e);
+            logger.log(Level.SEVERE, "Error getting player stats for " + playerUuid, e);
         }
         return null;
     }
 
-    public synchronized String getExistingRepType(UUID giverUuid, UUID receiverUuid) {
-        String query = "SELECT rep_type FROM reputation_cooldowns WHERE giver_uuid = ? AND receiver_uuid = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setString(1, giverUuid.toString());
-            stmt.setString(2, receiverUuid.toString());
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getString("rep_type");
+    /**
+     * Get statistics for many players at once. Cached players are served from memory and the rest are
+     * loaded with as few {@code WHERE uuid IN (...)} queries as possible.
+     * @param playerUuids The players to look up
+     * @return Stats keyed by UUID; players that have never joined are left out
+     */
+    public Map<UUID, PlayerStats> getPlayerStats(Collection<UUID> playerUuids) {
+        long start = bulkLookupTimer.start();
+        try {
+            Map<UUID, PlayerStats> results = new HashMap<>(playerUuids.size() * 2);
+            List<UUID> missing = new ArrayList<>();
+            for (UUID playerUuid : playerUuids) {
+                if (results.containsKey(playerUuid)) {
+                    continue;
+                }
+                CachedPlayerStats cached = statsCache.get(playerUuid);
+                if (cached != null) {
+                    results.put(playerUuid, snapshot(cached));
+                } else {
+                    missing.add(playerUuid);
+                }
+            }
+
+            if (!missing.isEmpty()) {
+                loadPlayerStats(missing, results);
+            }
+            return results;
+        } finally {
+            bulkLookupTimer.stop(start);
+        }
+    }
+
+    private void loadPlayerStats(List<UUID> playerUuids, Map<UUID, PlayerStats> results) {
+        try {
+            long version = rowWriteVersion;
+            List<CachedPlayerStats> loaded = storage.loadPlayers(playerUuids);
+            cacheLoaded(loaded, version);
+            for (CachedPlayerStats cached : loaded) {
+                results.put(cached.getUuid(), snapshot(cached));
             }
-            return null;
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error getting existing rep type", e);
-            return null;
+            logger.log(Level.SEVERE, "Error getting player stats for " + playerUuids.size() + " players", e);
         }
     }
 
-    public synchronized void giveReputation(UUID giverUuid, UUID receiverUuid, boolean positive) {
-        String existingType = getExistingRepType(giverUuid, receiverUuid);
+    private PlayerStats snapshot(CachedPlayerStats cached) {
+        long stamp = cacheLock.tryOptimisticRead();
+        PlayerStats stats = cached.toPlayerStats(pendingStats.get(cached.getUuid()));
+        if (!cacheLock.validate(stamp)) {
+            stamp = cacheLock.readLock();
+            try {
+                stats = cached.toPlayerStats(pendingStats.get(cached.getUuid()));
+            } finally {
+                cacheLock.unlockRead(stamp);
+            }
+        }
+        return stats;
+    }
 
-        if (existingType != null) {
-            if (existingType.equals("positive")) {
-                decrementPositiveRep(receiverUuid);
-            } else {
-                decrementNegativeRep(receiverUuid);
+    /**
+     * Index of every known player name, safe to read from any thread.
+     */
+    public PlayerNameIndex getNameIndex() {
+        return nameIndex;
+    }
+
+    public PlayerStatsCache getStatsCache() {
+        return statsCache;
+    }
+
+    /**
+     * Give reputation if the giver is allowed to, recording it in a single transaction.
+     * Duplicate and cooldown checks are answered from memory, so rejected attempts do not touch the database.
+     * @param giverUuid The player giving reputation
+     * @param receiverUuid The player receiving reputation
+     * @param positive true for positive reputation, false for negative
+     * @return What happened and, for cooldowns, how long is left
+     */
+    public ReputationResult giveReputation(UUID giverUuid, UUID receiverUuid, boolean positive) {
+        long start = reputationTimer.start();
+        try {
+            return recordReputation(giverUuid, receiverUuid, positive);
+        } finally {
+            reputationTimer.stop(start);
+        }
+    }
+
+    private synchronized ReputationResult recordReputation(UUID giverUuid, UUID receiverUuid, boolean positive) {
+        String repType = positive ? "positive" : "negative";
+        PlayerStats receiverStats = getPlayerStats(receiverUuid);
+        if (receiverStats == null) {
+            return ReputationResult.unknownPlayer();
+        }
+
+        Map<UUID, StatsStorage.RepRecord> given;
+        try {
+            given = getRepRecords(giverUuid);
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error loading reputation records for " + giverUuid, e);
+            return ReputationResult.failed(receiverStats, null);
+        }
+
+        StatsStorage.RepRecord existing = given.get(receiverUuid);
+        String existingType = existing != null ? existing.repType() : null;
+        long now = System.currentTimeMillis();
+        if (existing != null) {
+            if (existing.repType().equals(repType)) {
+                return ReputationResult.duplicate(receiverStats, existingType);
             }
+            long remaining = REP_COOLDOWN_MS - (now - existing.lastRepTime());
+            if (remaining > 0) {
+                return ReputationResult.cooldown(receiverStats, existingType, remaining);
+            }
+        }
+
+        int positiveDelta = (positive ? 1 : 0) - ("positive".equals(existingType) ? 1 : 0);
+        int negativeDelta = (positive ? 0 : 1) - ("negative".equals(existingType) ? 1 : 0);
+
+        beginRowWrite();
+        try {
+            storage.recordReputation(giverUuid, receiverUuid, repType, positiveDelta, negativeDelta, now);
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error giving reputation to " + receiverUuid, e);
+            return ReputationResult.failed(receiverStats, existingType);
+        } finally {
+            endRowWrite();
         }
 
-        if (positive) {
-            incrementPositiveRep(receiverUuid);
+        given.put(receiverUuid, new StatsStorage.RepRecord(repType, now));
+        leaderboards.addNetRep(receiverUuid, positiveDelta - negativeDelta);
+        rollingLeaderboards.add(LeaderboardCategory.LOVED, receiverUuid, positiveDelta - negativeDelta, now);
+
+        CachedPlayerStats cached = statsCache.peek(receiverUuid);
+        if (cached != null) {
+            long stamp = cacheLock.writeLock();
+            try {
+                cached.changeRep(existingType, positive);
+            } finally {
+                cacheLock.unlockWrite(stamp);
+            }
+            receiverStats = snapshot(cached);
         } else {
-            incrementNegativeRep(receiverUuid);
+            receiverStats = getPlayerStats(receiverUuid);
+        }
+        return ReputationResult.accepted(receiverStats, existingType);
+    }
+
+    private Map<UUID, StatsStorage.RepRecord> getRepRecords(UUID giverUuid) throws SQLException {
+        Map<UUID, StatsStorage.RepRecord> given = repRecordsByGiver.get(giverUuid);
+        if (given == null) {
+            given = storage.loadRepRecords(giverUuid);
+            repRecordsByGiver.put(giverUuid, given);
+        }
+        return given;
+    }
+
+    public boolean hasMilestone(UUID playerUuid, String milestoneType, int milestoneValue) {
+        long start = milestoneTimer.start();
+        try {
+            return findMilestone(playerUuid, milestoneType, milestoneValue);
+        } finally {
+            milestoneTimer.stop(start);
+        }
+    }
+
+    private boolean findMilestone(UUID playerUuid, String milestoneType, int milestoneValue) {
+        try {
+            return storage.hasMilestone(playerUuid, milestoneType, milestoneValue);
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error checking milestone for " + playerUuid, e);
+            return false;
+        }
+    }
+
+    /**
+     * Get every milestone a player has achieved
+     * @return Achieved milestone values keyed by milestone type
+     */
+    public Map<String, List<Integer>> getMilestones(UUID playerUuid) {
+        long start = milestoneTimer.start();
+        try {
+            return loadMilestones(playerUuid);
+        } finally {
+            milestoneTimer.stop(start);
         }
-        updateRepRecord(giverUuid, receiverUuid, positive ? "positive" : "negative");
     }
 
-    private synchronized void incrementPositiveRep(UUID playerUuid) {
-        String query = "UPDATE players SET positive_rep = positive_rep + 1 WHERE uuid = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setString(1, playerUuid.toString());
-            stmt.executeUpdate();
+    private Map<String, List<Integer>> loadMilestones(UUID playerUuid) {
+        try {
+            return storage.loadMilestones(playerUuid);
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error incrementing positive rep for " + playerUuid, e);
+            logger.log(Level.SEVERE, "Error loading milestones for " + playerUuid, e);
+            return new HashMap<>();
+        }
+    }
+
+    public void addMilestone(UUID playerUuid, String milestoneType, int milestoneValue) {
+        long start = milestoneTimer.start();
+        try {
+            insertMilestone(playerUuid, milestoneType, milestoneValue);
+        } finally {
+            milestoneTimer.stop(start);
         }
     }
 
-    private synchronized void decrementPositiveRep(UUID playerUuid) {
-        String query = "UPDATE players SET positive_rep = MAX(0, positive_rep - 1) WHERE uuid = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setString(1, playerUuid.toString());
-            stmt.executeUpdate();
+    private synchronized void insertMilestone(UUID playerUuid, String milestoneType, int milestoneValue) {
+        try {
+            storage.addMilestone(playerUuid, milestoneType, milestoneValue, System.currentTimeMillis());
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error decrementing positive rep for " + playerUuid, e);
+            logger.log(Level.SEVERE, "Error adding milestone for " + playerUuid, e);
+        }
+    }
+
+    /**
+     * Close the previous day of stats history if a new day has started, then combine daily rows past the retention
+     * period into months. Cheap to call often; it does nothing until the date changes.
+     */
+    public void rollOverHistory() {
+        long start = historyTimer.start();
+        try {
+            writeHistoryRollover();
+        } finally {
+            historyTimer.stop(start);
         }
     }
 
-    private synchronized void incrementNegativeRep(UUID playerUuid) {
-        String query = "UPDATE players SET negative_rep = negative_rep + 1 WHERE uuid = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setString(1, playerUuid.toString());
-            stmt.executeUpdate();
+    private synchronized void writeHistoryRollover() {
+        if (!historyEnabled || !isInitialised()) {
+            return;
+        }
+
+        LocalDate today = LocalDate.now(historyZone);
+        long todayStart = today.atStartOfDay(historyZone).toInstant().toEpochMilli();
+        if (todayStart <= lastHistoryRollover) {
+            return;
+        }
+
+        // Bring the rows up to date so the day's change includes buffered increments and the current sessions.
+        writePendingStats();
+        writeSessionCheckpoint();
+
+        long started = System.nanoTime();
+        LocalDate lastDay = Instant.ofEpochMilli(lastHistoryRollover).atZone(historyZone).toLocalDate();
+        int days = (int) Math.max(1, ChronoUnit.DAYS.between(lastDay, today));
+        try {
+            int players = storage.rollOverHistory(lastHistoryRollover, todayStart, days);
+            lastHistoryRollover = todayStart;
+            LocalDate cutoff = today.minusDays(historyRetentionDays).withDayOfMonth(1);
+            int combined = storage.downsampleHistory(cutoff.atStartOfDay(historyZone).toInstant().toEpochMilli());
+            logger.info("Recorded stats history for " + players + " players" +
+                        (combined > 0 ? " and combined " + combined + " daily rows into months" : "") +
+                        " in " + (System.nanoTime() - started) / 1_000_000 + "ms.");
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error incrementing negative rep for " + playerUuid, e);
+            logger.log(Level.SEVERE, "Error recording stats history", e);
         }
     }
 
-    private synchronized void decrementNegativeRep(UUID playerUuid) {
-        String query = "UPDATE players SET negative_rep = MAX(0, negative_rep - 1) WHERE uuid = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setString(1, playerUuid.toString());
-            stmt.executeUpdate();
+    /**
+     * Get how a player's stats changed over each day (or, further back, each month) in a time range.
+     * The current day is not included until it ends.
+     * @param from Start of the range in epoch milliseconds, inclusive
+     * @param to End of the range in epoch milliseconds, exclusive
+     * @return Periods starting in the range, oldest first
+     */
+    public List<StatsHistoryEntry> getStatsHistory(UUID playerUuid, long from, long to) {
+        long start = historyTimer.start();
+        try {
+            return loadStatsHistory(playerUuid, from, to);
+        } finally {
+            historyTimer.stop(start);
+        }
+    }
+
+    private List<StatsHistoryEntry> loadStatsHistory(UUID playerUuid, long from, long to) {
+        try {
+            return storage.loadHistory(playerUuid, from, to);
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error decrementing negative rep for " + playerUuid, e);
+            logger.log(Level.SEVERE, "Error getting stats history for " + playerUuid, e);
+            return new ArrayList<>();
         }
     }
 
-    public synchronized boolean canGiveReputation(UUID giverUuid, UUID receiverUuid) {
-        String query = "SELECT last_rep_time FROM reputation_cooldowns WHERE giver_uuid = ? AND receiver_uuid = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setString(1, giverUuid.toString());
-            stmt.setString(2, receiverUuid.toString());
-            ResultSet rs = stmt.executeQuery();
+    /**
+     * Get the time from which the database already has stats, so imports can leave out anything after it.
+     * @return The earliest first seen time of any player in epoch milliseconds, or Long.MAX_VALUE if there are none
+     */
+    public long getImportCutoff() {
+        try {
+            long earliest = storage.getEarliestFirstSeen();
+            return earliest > 0 ? earliest : Long.MAX_VALUE;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error reading the earliest first seen time", e);
+            return -1;
+        }
+    }
 
-            if (rs.next()) {
-                long lastRepTime = rs.getLong("last_rep_time");
-                long twentyFourHoursMs = 24 * 60 * 60 * 1000L;
-                return (System.currentTimeMillis() - lastRepTime) >= twentyFourHoursMs;
+    /**
+     * Add imported stats to the database, one transaction per batch so other writes get a turn in between.
+     * Cached rows, leaderboards and the name index are updated to match.
+     * @param batchSize Players written per transaction
+     * @return Number of players written; less than all of them if a batch failed
+     */
+    public int importPlayers(List<ImportedPlayer> players, int batchSize) {
+        int written = 0;
+        for (int start = 0; start < players.size(); start += batchSize) {
+            List<ImportedPlayer> batch = players.subList(start, Math.min(start + batchSize, players.size()));
+            long started = importTimer.start();
+            try {
+                if (!writeImportBatch(batch)) {
+                    break;
+                }
+            } finally {
+                importTimer.stop(started);
+            }
+            written += batch.size();
+        }
+        return written;
+    }
+
+    private synchronized boolean writeImportBatch(List<ImportedPlayer> batch) {
+        if (!isInitialised()) {
+            return false;
+        }
+
+        beginRowWrite();
+        try {
+            storage.importPlayers(batch);
+            // Rows loaded while the write is in progress are not cached, so only rows cached before it need the import.
+            long stamp = cacheLock.writeLock();
+            try {
+                for (ImportedPlayer imported : batch) {
+                    CachedPlayerStats cached = statsCache.peek(imported.uuid());
+                    if (cached != null) {
+                        cached.applyImport(imported);
+                    }
+                }
+            } finally {
+                cacheLock.unlockWrite(stamp);
             }
-            return true;
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error checking reputation cooldown", e);
+            logger.log(Level.SEVERE, "Error importing stats for " + batch.size() + " players", e);
             return false;
+        } finally {
+            endRowWrite();
+        }
+
+        for (ImportedPlayer imported : batch) {
+            // Players already known keep their current name; the imported one is older.
+            if (!leaderboards.contains(imported.uuid())) {
+                nameIndex.put(imported.username(), imported.uuid());
+            }
+            leaderboards.addImported(imported.uuid(), imported.timePlayed(), imported.kills(), imported.deaths(), imported.chatMessages());
         }
+        return true;
     }
 
-    public synchronized long getRepCooldownRemaining(UUID giverUuid, UUID receiverUuid) {
-        String query = "SELECT last_rep_time FROM reputation_cooldowns WHERE giver_uuid = ? AND receiver_uuid = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setString(1, giverUuid.toString());
-            stmt.setString(2, receiverUuid.toString());
-            ResultSet rs = stmt.executeQuery();
+    /**
+     * The id this server's counters are exported under, as 16 hex digits.
+     */
+    public String getNodeId() {
+        return String.format("%016x", nodeId);
+    }
+
+    public Path getNetworkFolder() {
+        return networkFolder;
+    }
 
-            if (rs.next()) {
-                long lastRepTime = rs.getLong("last_rep_time");
-                long twentyFourHoursMs = 24 * 60 * 60 * 1000L;
-                long remaining = twentyFourHoursMs - (System.currentTimeMillis() - lastRepTime);
-                return Math.max(0, remaining);
+    /**
+     * Export this server's counters to its node file in the network folder, then merge every other node file there.
+     * Run on a schedule by each server pointed at a shared folder, this keeps the network leaderboards up to date.
+     * @return The merge result, or null if the export failed
+     */
+    public NetworkMergeResult syncNetwork() {
+        long start = networkTimer.start();
+        try {
+            if (writeNodeFile() < 0) {
+                return null;
             }
-            return 0;
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error getting reputation cooldown remaining", e);
-            return 0;
+            return mergeNodeFiles();
+        } finally {
+            networkTimer.stop(start);
+        }
+    }
+
+    /**
+     * Write this server's counters, and every entry it has merged from other servers, to its node file.
+     * Buffered stats and the sessions of online players are written first so the file is current.
+     * @return Number of entries written, or -1 if the export failed
+     */
+    public int exportNodeCounters() {
+        long start = networkTimer.start();
+        try {
+            return writeNodeFile();
+        } finally {
+            networkTimer.stop(start);
         }
     }
 
-    private synchronized void updateRepRecord(UUID giverUuid, UUID receiverUuid, String repType) {
-        String query = """
-            INSERT INTO reputation_cooldowns (giver_uuid, receiver_uuid, rep_type, last_rep_time) 
-            VALUES (?, ?, ?, ?)
-            ON CONFLICT(giver_uuid, receiver_uuid) DO UPDATE SET rep_type = ?, last_rep_time = ?
-        """;
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            long now = System.currentTimeMillis();
-            stmt.setString(1, giverUuid.toString());
-            stmt.setString(2, receiverUuid.toString());
-            stmt.setString(3, repType);
-            stmt.setLong(4, now);
-            stmt.setString(5, repType);
-            stmt.setLong(6, now);
-            stmt.executeUpdate();
+    private synchronized int writeNodeFile() {
+        if (!isInitialised()) {
+            return -1;
+        }
+
+        writePendingStats();
+        writeSessionCheckpoint();
+
+        long started = System.nanoTime();
+        Path file = networkFolder.resolve("node-" + getNodeId() + ".db");
+        try {
+            int entries = storage.exportNodeCounters(nodeId, file);
+            logger.info("Exported " + entries + " node counter entries to " + file + " in " +
+                        (System.nanoTime() - started) / 1_000_000 + "ms.");
+            return entries;
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error updating reputation record", e);
+            logger.log(Level.SEVERE, "Error exporting node counters to " + file, e);
+            return -1;
+        }
+    }
+
+    /**
+     * Merge every other server's node file in the network folder. Merging is idempotent, so files that have not
+     * changed since the last merge are harmless; files that cannot be read are logged and skipped.
+     */
+    public NetworkMergeResult mergeNodeCounters() {
+        long start = networkTimer.start();
+        try {
+            return mergeNodeFiles();
+        } finally {
+            networkTimer.stop(start);
         }
     }
 
-    public synchronized boolean hasMilestone(UUID playerUuid, String milestoneType, int milestoneValue) {
-        String query = "SELECT 1 FROM milestones WHERE uuid = ? AND milestone_type = ? AND milestone_value = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setString(1, playerUuid.toString());
-            stmt.setString(2, milestoneType);
-            stmt.setInt(3, milestoneValue);
-            ResultSet rs = stmt.executeQuery();
-            return rs.next();
+    private synchronized NetworkMergeResult mergeNodeFiles() {
+        if (!isInitialised() || !Files.isDirectory(networkFolder)) {
+            return new NetworkMergeResult(0, 0, 0);
+        }
+
+        long started = System.nanoTime();
+        String ownFile = "node-" + getNodeId() + ".db";
+        int files = 0;
+        int entries = 0;
+        int failed = 0;
+        try (DirectoryStream<Path> nodeFiles = Files.newDirectoryStream(networkFolder, "node-*.db")) {
+            for (Path file : nodeFiles) {
+                if (file.getFileName().toString().equals(ownFile)) {
+                    continue;
+                }
+                try {
+                    entries += storage.mergeNodeCounters(nodeId, file);
+                    files++;
+                } catch (SQLException e) {
+                    logger.log(Level.WARNING, "Error merging node counters from " + file, e);
+                    failed++;
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error listing node files in " + networkFolder, e);
+        }
+
+        logger.info("Merged " + entries + " node counter entries from " + files + " node files in " +
+                    (System.nanoTime() - started) / 1_000_000 + "ms.");
+        return new NetworkMergeResult(files, entries, failed);
+    }
+
+    /**
+     * Get a slice of a leaderboard combining every server whose node file has been merged.
+     * This server counts with what has been written to its database, so buffered stats show up after the next flush.
+     * @param category The leaderboard category; reputation is not kept per server, so its pages are empty
+     * @param offset Number of players to skip
+     * @param limit Maximum number of players to return
+     * @return Players with their network total, in rank order
+     */
+    public List<NetworkLeaderboardEntry> getNetworkLeaderboardPage(LeaderboardCategory category, int offset, int limit) {
+        String column = NodeCounters.column(category);
+        if (column == null) {
+            return new ArrayList<>();
+        }
+
+        long start = networkTimer.start();
+        try {
+            return storage.loadNetworkLeaderboard(nodeId, column, offset, limit);
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error checking milestone for " + playerUuid, e);
-            return false;
+            logger.log(Level.SEVERE, "Error loading the network " + category.getId() + " leaderboard", e);
+            return new ArrayList<>();
+        } finally {
+            networkTimer.stop(start);
         }
     }
 
-    public synchronized void addMilestone(UUID playerUuid, String milestoneType, int milestoneValue) {
-        String query = "INSERT INTO milestones (uuid, milestone_type, milestone_value, achieved_at) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setString(1, playerUuid.toString());
-            stmt.setString(2, milestoneType);
-            stmt.setInt(3, milestoneValue);
-            stmt.setString(4, getCurrentTimestamp());
-            stmt.executeUpdate();
+    /**
+     * Get the number of players ranked in a leaderboard category across the network.
+     */
+    public int getNetworkLeaderboardSize(LeaderboardCategory category) {
+        String column = NodeCounters.column(category);
+        if (column == null) {
+            return 0;
+        }
+
+        try {
+            return storage.countNetworkLeaderboard(nodeId, column);
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error adding milestone for " + playerUuid, e);
+            logger.log(Level.SEVERE, "Error counting the network " + category.getId() + " leaderboard", e);
+            return 0;
         }
     }
 
-    private String getCurrentTimestamp() {
-        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    /**
+     * Whether a leaderboard category can be shown across the network.
+     */
+    public static boolean hasNetworkLeaderboard(LeaderboardCategory category) {
+        return NodeCounters.column(category) != null;
     }
 
-    public synchronized long getCurrentTimePlayed(UUID playerUuid) {
+    public long getCurrentTimePlayed(UUID playerUuid) {
         PlayerStats stats = getPlayerStats(playerUuid);
         if (stats == null) return 0;
 
@@ -430,94 +994,103 @@ public class DatabaseManager {
         return totalTime;
     }
 
-    public synchronized java.util.List<PlayerStats> getTopPlayersByTimePlayed(int limit) {
-        String query = """
-            SELECT *,
-                   CASE WHEN session_start > 0
-                        THEN time_played + (? - session_start)
-                        ELSE time_played
-                   END as total_time_played
-            FROM players
-            ORDER BY total_time_played DESC
-            LIMIT ?
-        """;
-
-        java.util.List<PlayerStats> results = new java.util.ArrayList<>();
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setLong(1, System.currentTimeMillis());
-            stmt.setInt(2, limit);
-            ResultSet rs = stmt.executeQuery();
-
-            while (rs.next()) {
-                results.add(new PlayerStats(
-                    UUID.fromString(rs.getString("uuid")),
-                    rs.getString("username"),
-                    rs.getString("first_seen"),
-                    rs.getString("last_seen"),
-                    rs.getLong("time_played"),
-                    rs.getLong("session_start"),
-                    rs.getInt("kills"),
-                    rs.getInt("deaths"),
-                    rs.getInt("chat_messages"),
-                    rs.getInt("positive_rep"),
-                    rs.getInt("negative_rep")
-                ));
-            }
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error getting top players by time played", e);
-        }
-        return results;
+    /**
+     * Get the top players for a leaderboard category from the in-memory index
+     * @param category The leaderboard category
+     * @param limit Maximum number of players to return
+     * @return Player stats in rank order
+     */
+    public List<PlayerStats> getTopPlayers(LeaderboardCategory category, int limit) {
+        return getLeaderboardPage(category, 0, limit);
     }
 
-    public synchronized java.util.List<PlayerStats> getTopPlayersByKills(int limit) {
-        String query = "SELECT * FROM players ORDER BY kills DESC LIMIT ?";
-        return executeLeaderboardQuery(query, limit);
+    /**
+     * Get a slice of a leaderboard category from the in-memory index
+     * @param category The leaderboard category
+     * @param offset Number of players to skip
+     * @param limit Maximum number of players to return
+     * @return Player stats in rank order
+     */
+    public List<PlayerStats> getLeaderboardPage(LeaderboardCategory category, int offset, int limit) {
+        long start = leaderboardTimer.start();
+        try {
+            List<UUID> page = leaderboards.getPage(category, offset, limit);
+            Map<UUID, PlayerStats> stats = getPlayerStats(page);
+            List<PlayerStats> results = new ArrayList<>(page.size());
+            for (UUID playerUuid : page) {
+                PlayerStats playerStats = stats.get(playerUuid);
+                if (playerStats != null) {
+                    results.add(playerStats);
+                }
+            }
+            return results;
+        } finally {
+            leaderboardTimer.stop(start);
+        }
     }
 
-    public synchronized java.util.List<PlayerStats> getTopPlayersByDeaths(int limit) {
-        String query = "SELECT * FROM players ORDER BY deaths DESC LIMIT ?";
-        return executeLeaderboardQuery(query, limit);
+    /**
+     * Get the number of players ranked in a leaderboard category.
+     */
+    public int getLeaderboardSize(LeaderboardCategory category) {
+        return leaderboards.size(category);
     }
 
-    public synchronized java.util.List<PlayerStats> getTopPlayersByChatMessages(int limit) {
-        String query = "SELECT * FROM players ORDER BY chat_messages DESC LIMIT ?";
-        return executeLeaderboardQuery(query, limit);
+    /**
+     * Get a player's position in a leaderboard category
+     * @return The 1-based rank or -1 if the player has never joined
+     */
+    public int getRank(LeaderboardCategory category, UUID playerUuid) {
+        long start = leaderboardTimer.start();
+        try {
+            return leaderboards.getRank(category, playerUuid);
+        } finally {
+            leaderboardTimer.stop(start);
+        }
     }
 
-    public synchronized java.util.List<PlayerStats> getTopPlayersByPositiveRep(int limit) {
-        String query = "SELECT * FROM players ORDER BY (positive_rep - negative_rep) DESC LIMIT ?";
-        return executeLeaderboardQuery(query, limit);
+    /**
+     * Get a slice of a leaderboard category limited to the last week or month
+     * @param category The leaderboard category
+     * @param window The rolling window
+     * @param offset Number of players to skip
+     * @param limit Maximum number of players to return
+     * @return Players with their score for the window, in rank order
+     */
+    public List<RollingLeaderboardEntry> getRollingLeaderboardPage(LeaderboardCategory category, LeaderboardWindow window,
+                                                                   int offset, int limit) {
+        long start = leaderboardTimer.start();
+        try {
+            List<RollingLeaderboards.Score> page = rollingLeaderboards.getPage(category, window, offset, limit, System.currentTimeMillis());
+            List<UUID> playerUuids = new ArrayList<>(page.size());
+            for (RollingLeaderboards.Score score : page) {
+                playerUuids.add(score.uuid());
+            }
+            Map<UUID, PlayerStats> stats = getPlayerStats(playerUuids);
+            List<RollingLeaderboardEntry> results = new ArrayList<>(page.size());
+            for (RollingLeaderboards.Score score : page) {
+                PlayerStats playerStats = stats.get(score.uuid());
+                if (playerStats != null) {
+                    results.add(new RollingLeaderboardEntry(playerStats, score.score()));
+                }
+            }
+            return results;
+        } finally {
+            leaderboardTimer.stop(start);
+        }
     }
 
-    public synchronized java.util.List<PlayerStats> getTopPlayersByNegativeRep(int limit) {
-        String query = "SELECT * FROM players ORDER BY (positive_rep - negative_rep) ASC LIMIT ?";
-        return executeLeaderboardQuery(query, limit);
+    /**
+     * Get the number of players with a score in a leaderboard category over the last week or month.
+     */
+    public int getRollingLeaderboardSize(LeaderboardCategory category, LeaderboardWindow window) {
+        return rollingLeaderboards.size(category, window, System.currentTimeMillis());
     }
 
-    private synchronized java.util.List<PlayerStats> executeLeaderboardQuery(String query, int limit) {
-        java.util.List<PlayerStats> results = new java.util.ArrayList<>();
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setInt(1, limit);
-            ResultSet rs = stmt.executeQuery();
-
-            while (rs.next()) {
-                results.add(new PlayerStats(
-                    UUID.fromString(rs.getString("uuid")),
-                    rs.getString("username"),
-                    rs.getString("first_seen"),
-                    rs.getString("last_seen"),
-                    rs.getLong("time_played"),
-                    rs.getLong("session_start"),
-                    rs.getInt("kills"),
-                    rs.getInt("deaths"),
-                    rs.getInt("chat_messages"),
-                    rs.getInt("positive_rep"),
-                    rs.getInt("negative_rep")
-                ));
-            }
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error executing leaderboard query", e);
-        }
-        return results;
+    /**
+     * Credit online players' time to the week and month leaderboards. Called once a minute.
+     */
+    public void tickRollingLeaderboards() {
+        rollingLeaderboards.tick(System.currentTimeMillis());
     }
 }
@@ -0,0 +1,66 @@
+package com.jellypudding.offlineStats.database;
+
+import java.util.Arrays;
+
+/**
+ * Packs the stat deltas of a stats_history row into a small BLOB: a format byte followed by one zigzag varint
+ * per stat. Most daily deltas are zero or small, so a row is typically a handful of bytes.
+ * Reputation can go down, hence zigzag rather than plain varints.
+ */
+final class HistoryCodec {
+
+    static final int STAT_COUNT = 6;
+    private static final byte FORMAT = 1;
+
+    private HistoryCodec() {}
+
+    /**
+     * @param deltas Kills, deaths, chat messages, time played, positive rep and negative rep, in that order
+     */
+    static byte[] encode(long[] deltas) {
+        byte[] buffer = new byte[1 + STAT_COUNT * 10];
+        int position = 0;
+        buffer[position++] = FORMAT;
+        for (int i = 0; i < STAT_COUNT; i++) {
+            long value = (deltas[i] << 1) ^ (deltas[i] >> 63);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+        return Arrays.copyOf(buffer, position);
+    }
+
+    static long[] decode(byte[] data) {
+        if (data.length == 0 || data[0] != FORMAT) {
+            throw new IllegalArgumentException("Unknown stats history format");
+        }
+        long[] deltas = new long[STAT_COUNT];
+        int position = 1;
+        for (int i = 0; i < STAT_COUNT; i++) {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            deltas[i] = (value >>> 1) ^ -(value & 1);
+        }
+        return deltas;
+    }
+
+    static void add(long[] total, long[] deltas) {
+        for (int i = 0; i < STAT_COUNT; i++) {
+            total[i] += deltas[i];
+        }
+    }
+
+    static StatsHistoryEntry toEntry(long periodStart, int days, boolean monthly, byte[] data) {
+        long[] deltas = decode(data);
+        return new StatsHistoryEntry(periodStart, days, monthly,
+            deltas[0], deltas[1], deltas[2], deltas[3], deltas[4], deltas[5]);
+    }
+}
@@ -0,0 +1,12 @@
+package com.jellypudding.offlineStats.database;
+
+import java.util.UUID;
+
+/**
+ * Stats for one player worked out from something other than the plugin's own events, e.g. old server logs.
+ * Imported counters are added to whatever is already stored.
+ * @param firstSeen Earliest sighting in epoch milliseconds; the stored first_seen is kept if earlier
+ * @param lastSeen Latest sighting in epoch milliseconds; the stored last_seen is kept if later
+ */
+public record ImportedPlayer(UUID uuid, String username, long firstSeen, long lastSeen, long timePlayed,
+                             int kills, int deaths, int chatMessages) {}
@@ -0,0 +1,515 @@
+package com.jellypudding.offlineStats.database;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * The SQL shared by every JDBC storage. Subclasses decide how a connection is obtained for each operation
+ * and whether prepared statements outlive it.
+ */
+abstract class JdbcStatsStorage implements StatsStorage {
+
+    static final String SELECT_PLAYER_EXISTS = "SELECT username FROM players WHERE uuid = ?";
+    static final String INSERT_PLAYER = """
+        INSERT INTO players (uuid, username, first_seen, last_seen, session_start)
+        VALUES (?, ?, ?, ?, ?)
+    """;
+    static final String UPDATE_PLAYER_JOIN = "UPDATE players SET username = ?, last_seen = ?, session_start = ? WHERE uuid = ?";
+    static final String UPDATE_PLAYER_QUIT = """
+        UPDATE players
+        SET last_seen = ?,
+            time_played = time_played + (? - session_start),
+            session_start = 0
+        WHERE uuid = ?
+    """;
+    static final String UPDATE_PENDING_STATS = """
+        UPDATE players
+        SET kills = kills + ?,
+            deaths = deaths + ?,
+            chat_messages = chat_messages + ?
+        WHERE uuid = ?
+    """;
+    static final String SELECT_PLAYER = "SELECT * FROM players WHERE uuid = ?";
+    static final String SELECT_ALL_PLAYERS = "SELECT * FROM players ORDER BY last_seen";
+    // Bulk statements bind a fixed number of parameters so the one prepared statement can be reused.
+    static final int BULK_SELECT_SIZE = 100;
+    static final String SELECT_PLAYERS_BULK = "SELECT * FROM players WHERE uuid IN (" +
+        String.join(", ", Collections.nCopies(BULK_SELECT_SIZE, "?")) + ")";
+    static final String CHECKPOINT_SESSIONS = """
+        UPDATE players
+        SET time_played = time_played + (? - session_start),
+            session_start = ?
+        WHERE session_start > 0 AND uuid IN (""" + String.join(", ", Collections.nCopies(BULK_SELECT_SIZE, "?")) + ")";
+    static final String SELECT_REP_RECORDS_BY_GIVER = "SELECT receiver_uuid, rep_type, last_rep_time FROM reputation_cooldowns WHERE giver_uuid = ?";
+    static final String SELECT_MILESTONE = "SELECT 1 FROM milestones WHERE uuid = ? AND milestone_type = ? AND milestone_value = ?";
+    static final String SELECT_MILESTONES_FOR_PLAYER = "SELECT milestone_type, milestone_value FROM milestones WHERE uuid = ?";
+    static final String INSERT_MILESTONE = "INSERT INTO milestones (uuid, milestone_type, milestone_value, achieved_at) VALUES (?, ?, ?, ?)";
+    static final String SELECT_EARLIEST_FIRST_SEEN = "SELECT MIN(first_seen) FROM players";
+    static final String SELECT_HISTORY = """
+        SELECT period_start, days, resolution, data FROM stats_history
+        WHERE uuid = ? AND period_start >= ? AND period_start < ?
+        ORDER BY period_start
+    """;
+
+    protected final SqlDialect dialect;
+    protected final StatsHistory history;
+    protected final NodeCounters nodeCounters;
+    private final String updateRep;
+    private final String upsertRepRecord;
+    private final String upsertImportedPlayer;
+    private final String upsertImportedBaseline;
+
+    protected JdbcStatsStorage(SqlDialect dialect, ZoneId zone) {
+        this.dialect = dialect;
+        this.history = new StatsHistory(zone, dialect);
+        this.nodeCounters = new NodeCounters(dialect);
+        this.updateRep = """
+            UPDATE players
+            SET positive_rep = %1$s(0, positive_rep + ?),
+                negative_rep = %1$s(0, negative_rep + ?)
+            WHERE uuid = ?
+        """.formatted(dialect.greatest());
+        this.upsertRepRecord = dialect.upsert("reputation_cooldowns",
+            List.of("giver_uuid", "receiver_uuid"), List.of("rep_type", "last_rep_time"));
+        this.upsertImportedPlayer = """
+            INSERT INTO players (uuid, username, first_seen, last_seen, time_played, kills, deaths, chat_messages)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)""" + dialect.onConflict(List.of("uuid")) + """
+            first_seen = %1$s(first_seen, %3$s),
+            last_seen = %2$s(last_seen, %4$s),
+            time_played = time_played + %5$s,
+            kills = kills + %6$s,
+            deaths = deaths + %7$s,
+            chat_messages = chat_messages + %8$s
+        """.formatted(dialect.least(), dialect.greatest(), dialect.inserted("first_seen"), dialect.inserted("last_seen"),
+                      dialect.inserted("time_played"), dialect.inserted("kills"), dialect.inserted("deaths"),
+                      dialect.inserted("chat_messages"));
+        this.upsertImportedBaseline = """
+            INSERT INTO stats_history_baseline (uuid, kills, deaths, chat_messages, time_played, positive_rep, negative_rep)
+            VALUES (?, ?, ?, ?, ?, 0, 0)""" + dialect.onConflict(List.of("uuid")) + """
+            kills = kills + %1$s,
+            deaths = deaths + %2$s,
+            chat_messages = chat_messages + %3$s,
+            time_played = time_played + %4$s
+        """.formatted(dialect.inserted("kills"), dialect.inserted("deaths"), dialect.inserted("chat_messages"),
+                      dialect.inserted("time_played"));
+    }
+
+    /**
+     * Get a connection for one operation. Closing the session releases it.
+     */
+    protected abstract Session openSession() throws SQLException;
+
+    /**
+     * Every statement run after start-up, so implementations that keep one connection can prepare them up front.
+     */
+    protected List<String> getPreparedQueries() {
+        return List.of(
+            SELECT_PLAYER_EXISTS, INSERT_PLAYER, UPDATE_PLAYER_JOIN, UPDATE_PLAYER_QUIT, UPDATE_PENDING_STATS,
+            SELECT_PLAYER, SELECT_PLAYERS_BULK, CHECKPOINT_SESSIONS, SELECT_REP_RECORDS_BY_GIVER, updateRep, upsertRepRecord,
+            SELECT_MILESTONE, SELECT_MILESTONES_FOR_PLAYER, INSERT_MILESTONE, SELECT_HISTORY
+        );
+    }
+
+    @Override
+    public void forEachPlayer(Consumer<CachedPlayerStats> consumer) throws SQLException {
+        try (Session session = openSession();
+             Statement stmt = session.connection().createStatement();
+             ResultSet rs = stmt.executeQuery(SELECT_ALL_PLAYERS)) {
+            while (rs.next()) {
+                consumer.accept(readPlayer(rs, UUID.fromString(rs.getString("uuid"))));
+            }
+        }
+    }
+
+    @Override
+    public String findUsername(UUID playerUuid) throws SQLException {
+        try (Session session = openSession()) {
+            PreparedStatement stmt = session.statement(SELECT_PLAYER_EXISTS);
+            stmt.setString(1, playerUuid.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString("username") : null;
+            }
+        }
+    }
+
+    @Override
+    public void insertPlayer(UUID playerUuid, String username, long now) throws SQLException {
+        try (Session session = openSession()) {
+            PreparedStatement stmt = session.statement(INSERT_PLAYER);
+            stmt.setString(1, playerUuid.toString());
+            stmt.setString(2, username);
+            stmt.setLong(3, now);
+            stmt.setLong(4, now);
+            stmt.setLong(5, now);
+            stmt.executeUpdate();
+        }
+    }
+
+    @Override
+    public void updatePlayerJoin(UUID playerUuid, String username, long now) throws SQLException {
+        try (Session session = openSession()) {
+            PreparedStatement stmt = session.statement(UPDATE_PLAYER_JOIN);
+            stmt.setString(1, username);
+            stmt.setLong(2, now);
+            stmt.setLong(3, now);
+            stmt.setString(4, playerUuid.toString());
+            stmt.executeUpdate();
+        }
+    }
+
+    @Override
+    public void updatePlayerQuit(UUID playerUuid, long now) throws SQLException {
+        try (Session session = openSession()) {
+            PreparedStatement stmt = session.statement(UPDATE_PLAYER_QUIT);
+            stmt.setLong(1, now);
+            stmt.setLong(2, now);
+            stmt.setString(3, playerUuid.toString());
+            stmt.executeUpdate();
+        }
+    }
+
+    @Override
+    public void addStats(Map<UUID, PendingStatsBuffer.Delta> deltas) throws SQLException {
+        try (Session session = openSession()) {
+            Connection connection = session.connection();
+            connection.setAutoCommit(false);
+            try {
+                PreparedStatement stmt = session.statement(UPDATE_PENDING_STATS);
+                for (Map.Entry<UUID, PendingStatsBuffer.Delta> entry : deltas.entrySet()) {
+                    PendingStatsBuffer.Delta delta = entry.getValue();
+                    stmt.setInt(1, delta.getKills());
+                    stmt.setInt(2, delta.getDeaths());
+                    stmt.setInt(3, delta.getChatMessages());
+                    stmt.setString(4, entry.getKey().toString());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    @Override
+    public void checkpointSessions(List<UUID> playerUuids, long now) throws SQLException {
+        try (Session session = openSession()) {
+            Connection connection = session.connection();
+            connection.setAutoCommit(false);
+            try {
+                PreparedStatement stmt = session.statement(CHECKPOINT_SESSIONS);
+                stmt.setLong(1, now);
+                stmt.setLong(2, now);
+                for (int start = 0; start < playerUuids.size(); start += BULK_SELECT_SIZE) {
+                    int end = Math.min(start + BULK_SELECT_SIZE, playerUuids.size());
+                    for (int i = 0; i < BULK_SELECT_SIZE; i++) {
+                        // Pad a short final chunk by repeating its first UUID.
+                        UUID playerUuid = playerUuids.get(start + i < end ? start + i : start);
+                        stmt.setString(i + 3, playerUuid.toString());
+                    }
+                    stmt.executeUpdate();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    @Override
+    public CachedPlayerStats loadPlayer(UUID playerUuid) throws SQLException {
+        try (Session session = openSession()) {
+            PreparedStatement stmt = session.statement(SELECT_PLAYER);
+            stmt.setString(1, playerUuid.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? readPlayer(rs, playerUuid) : null;
+            }
+        }
+    }
+
+    @Override
+    public List<CachedPlayerStats> loadPlayers(List<UUID> playerUuids) throws SQLException {
+        List<CachedPlayerStats> players = new ArrayList<>(playerUuids.size());
+        try (Session session = openSession()) {
+            PreparedStatement stmt = session.statement(SELECT_PLAYERS_BULK);
+            for (int start = 0; start < playerUuids.size(); start += BULK_SELECT_SIZE) {
+                int end = Math.min(start + BULK_SELECT_SIZE, playerUuids.size());
+                for (int i = 0; i < BULK_SELECT_SIZE; i++) {
+                    // Pad a short final chunk by repeating its first UUID.
+                    UUID playerUuid = playerUuids.get(start + i < end ? start + i : start);
+                    stmt.setString(i + 1, playerUuid.toString());
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        players.add(readPlayer(rs, UUID.fromString(rs.getString("uuid"))));
+                    }
+                }
+            }
+        }
+        return players;
+    }
+
+    private static CachedPlayerStats readPlayer(ResultSet rs, UUID playerUuid) throws SQLException {
+        return new CachedPlayerStats(
+            playerUuid,
+            rs.getString("username"),
+            rs.getLong("first_seen"),
+            rs.getLong("last_seen"),
+            rs.getLong("time_played"),
+            rs.getLong("session_start"),
+            rs.getInt("kills"),
+            rs.getInt("deaths"),
+            rs.getInt("chat_messages"),
+            rs.getInt("positive_rep"),
+            rs.getInt("negative_rep")
+        );
+    }
+
+    @Override
+    public Map<UUID, RepRecord> loadRepRecords(UUID giverUuid) throws SQLException {
+        Map<UUID, RepRecord> given = new HashMap<>();
+        try (Session session = openSession()) {
+            PreparedStatement stmt = session.statement(SELECT_REP_RECORDS_BY_GIVER);
+            stmt.setString(1, giverUuid.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    given.put(UUID.fromString(rs.getString("receiver_uuid")),
+                              new RepRecord(rs.getString("rep_type"), rs.getLong("last_rep_time")));
+                }
+            }
+        }
+        return given;
+    }
+
+    @Override
+    public void recordReputation(UUID giverUuid, UUID receiverUuid, String repType, int positiveDelta, int negativeDelta,
+                                 long now) throws SQLException {
+        try (Session session = openSession()) {
+            Connection connection = session.connection();
+            connection.setAutoCommit(false);
+            try {
+                PreparedStatement updateStmt = session.statement(updateRep);
+                updateStmt.setInt(1, positiveDelta);
+                updateStmt.setInt(2, negativeDelta);
+                updateStmt.setString(3, receiverUuid.toString());
+                updateStmt.executeUpdate();
+
+                PreparedStatement recordStmt = session.statement(upsertRepRecord);
+                recordStmt.setString(1, giverUuid.toString());
+                recordStmt.setString(2, receiverUuid.toString());
+                recordStmt.setString(3, repType);
+                recordStmt.setLong(4, now);
+                recordStmt.executeUpdate();
+
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasMilestone(UUID playerUuid, String milestoneType, int milestoneValue) throws SQLException {
+        try (Session session = openSession()) {
+            PreparedStatement stmt = session.statement(SELECT_MILESTONE);
+            stmt.setString(1, playerUuid.toString());
+            stmt.setString(2, milestoneType);
+            stmt.setInt(3, milestoneValue);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    @Override
+    public Map<String, List<Integer>> loadMilestones(UUID playerUuid) throws SQLException {
+        Map<String, List<Integer>> milestones = new HashMap<>();
+        try (Session session = openSession()) {
+            PreparedStatement stmt = session.statement(SELECT_MILESTONES_FOR_PLAYER);
+            stmt.setString(1, playerUuid.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    milestones.computeIfAbsent(rs.getString("milestone_type"), type -> new ArrayList<>())
+                        .add(rs.getInt("milestone_value"));
+                }
+            }
+        }
+        return milestones;
+    }
+
+    @Override
+    public void addMilestone(UUID playerUuid, String milestoneType, int milestoneValue, long now) throws SQLException {
+        try (Session session = openSession()) {
+            PreparedStatement stmt = session.statement(INSERT_MILESTONE);
+            stmt.setString(1, playerUuid.toString());
+            stmt.setString(2, milestoneType);
+            stmt.setInt(3, milestoneValue);
+            stmt.setLong(4, now);
+            stmt.executeUpdate();
+        }
+    }
+
+    @Override
+    public long getLastHistoryRollover() throws SQLException {
+        try (Session session = openSession()) {
+            return history.getLastRollover(session.connection());
+        }
+    }
+
+    @Override
+    public int rollOverHistory(long periodStart, long periodEnd, int days) throws SQLException {
+        try (Session session = openSession()) {
+            return history.rollOver(session.connection(), periodStart, periodEnd, days);
+        }
+    }
+
+    @Override
+    public int downsampleHistory(long cutoff) throws SQLException {
+        try (Session session = openSession()) {
+            return history.downsample(session.connection(), cutoff);
+        }
+    }
+
+    @Override
+    public void replayHistory(long since, boolean includeToday, long now, StatsHistory.ChangeConsumer consumer) throws SQLException {
+        try (Session session = openSession()) {
+            history.replay(session.connection(), since, includeToday, now, consumer);
+        }
+    }
+
+    @Override
+    public List<StatsHistoryEntry> loadHistory(UUID playerUuid, long from, long to) throws SQLException {
+        List<StatsHistoryEntry> entries = new ArrayList<>();
+        try (Session session = openSession()) {
+            PreparedStatement stmt = session.statement(SELECT_HISTORY);
+            stmt.setString(1, playerUuid.toString());
+            stmt.setLong(2, from);
+            stmt.setLong(3, to);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entries.add(HistoryCodec.toEntry(rs.getLong("period_start"), rs.getInt("days"),
+                        "month".equals(rs.getString("resolution")), rs.getBytes("data")));
+                }
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public long getEarliestFirstSeen() throws SQLException {
+        try (Session session = openSession();
+             Statement stmt = session.connection().createStatement();
+             ResultSet rs = stmt.executeQuery(SELECT_EARLIEST_FIRST_SEEN)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    @Override
+    public void importPlayers(List<ImportedPlayer> players) throws SQLException {
+        try (Session session = openSession()) {
+            Connection connection = session.connection();
+            connection.setAutoCommit(false);
+            try (PreparedStatement playerStmt = connection.prepareStatement(upsertImportedPlayer);
+                 PreparedStatement baselineStmt = connection.prepareStatement(upsertImportedBaseline)) {
+                for (ImportedPlayer player : players) {
+                    playerStmt.setString(1, player.uuid().toString());
+                    playerStmt.setString(2, player.username());
+                    playerStmt.setLong(3, player.firstSeen());
+                    playerStmt.setLong(4, player.lastSeen());
+                    playerStmt.setLong(5, player.timePlayed());
+                    playerStmt.setInt(6, player.kills());
+                    playerStmt.setInt(7, player.deaths());
+                    playerStmt.setInt(8, player.chatMessages());
+                    playerStmt.addBatch();
+
+                    baselineStmt.setString(1, player.uuid().toString());
+                    baselineStmt.setInt(2, player.kills());
+                    baselineStmt.setInt(3, player.deaths());
+                    baselineStmt.setInt(4, player.chatMessages());
+                    baselineStmt.setLong(5, player.timePlayed());
+                    baselineStmt.addBatch();
+                }
+                playerStmt.executeBatch();
+                baselineStmt.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    @Override
+    public long getNodeId() throws SQLException {
+        try (Session session = openSession()) {
+            return nodeCounters.getNodeId(session.connection());
+        }
+    }
+
+    @Override
+    public int exportNodeCounters(long nodeId, Path file) throws SQLException {
+        try (Session session = openSession()) {
+            return nodeCounters.export(session.connection(), nodeId, file);
+        }
+    }
+
+    @Override
+    public int mergeNodeCounters(long nodeId, Path file) throws SQLException {
+        try (Session session = openSession()) {
+            return nodeCounters.merge(session.connection(), nodeId, file);
+        }
+    }
+
+    @Override
+    public List<NetworkLeaderboardEntry> loadNetworkLeaderboard(long nodeId, String column, int offset, int limit) throws SQLException {
+        try (Session session = openSession()) {
+            return nodeCounters.loadLeaderboard(session.connection(), nodeId, column, offset, limit);
+        }
+    }
+
+    @Override
+    public int countNetworkLeaderboard(long nodeId, String column) throws SQLException {
+        try (Session session = openSession()) {
+            return nodeCounters.countLeaderboard(session.connection(), nodeId, column);
+        }
+    }
+
+    /**
+     * A connection held for one operation, with the statements prepared on it.
+     */
+    protected interface Session extends AutoCloseable {
+
+        Connection connection();
+
+        /**
+         * Get a prepared statement for the query. It must not be closed by the caller.
+         */
+        PreparedStatement statement(String query) throws SQLException;
+
+        @Override
+        void close() throws SQLException;
+    }
+}
@@ -0,0 +1,11 @@
+package com.jellypudding.offlineStats.database;
+
+import java.util.UUID;
+
+/**
+ * A player's place on a leaderboard combining every server of a network.
+ * @param uuid The player's UUID
+ * @param username The player's name on this server, or as last merged from another one
+ * @param score Their total over all servers: milliseconds for time played, otherwise a count
+ */
+public record NetworkLeaderboardEntry(UUID uuid, String username, long score) {}
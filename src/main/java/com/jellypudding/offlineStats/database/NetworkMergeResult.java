@@ -0,0 +1,9 @@
+package com.jellypudding.offlineStats.database;
+
+/**
+ * The outcome of merging the node files in the network folder.
+ * @param files Node files merged
+ * @param entries Per-node player entries read from them
+ * @param failedFiles Node files that could not be read; they are logged and skipped
+ */
+public record NetworkMergeResult(int files, int entries, int failedFiles) {}
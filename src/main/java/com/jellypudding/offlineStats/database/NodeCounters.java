@@ -0,0 +1,250 @@
+package com.jellypudding.offlineStats.database;
+
+import com.jellypudding.offlineStats.leaderboard.LeaderboardCategory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Per-server counters for combining the stats of several servers, in the style of a grow-only counter (G-counter).
+ * Every database has a random node id. Its own kills, deaths, chat messages and time played are the players table;
+ * node_counters holds the latest entries it has merged for other nodes. Counters only grow, so merging keeps the
+ * larger of each stored and incoming value: applying a node file twice, or an older copy of it, changes nothing,
+ * and files can be merged in any order. A network total is the sum over nodes, so nothing is counted twice.
+ * Node files are standalone SQLite databases holding a node_counters table, whatever the local storage is.
+ * Only used by a {@link StatsStorage} while it holds a connection for the calling thread.
+ */
+class NodeCounters {
+
+    static final String NODE_ID_STATE = "node_id";
+
+    private static final int BATCH_SIZE = 1000;
+    private static final List<String> COUNTER_COLUMNS = List.of("kills", "deaths", "chat_messages", "time_played");
+    private static final String CREATE_EXPORT_TABLE = """
+        CREATE TABLE node_counters (
+            uuid TEXT NOT NULL,
+            node_id INTEGER NOT NULL,
+            username TEXT NOT NULL,
+            kills INTEGER NOT NULL,
+            deaths INTEGER NOT NULL,
+            chat_messages INTEGER NOT NULL,
+            time_played BIGINT NOT NULL,
+            PRIMARY KEY (uuid, node_id)
+        ) WITHOUT ROWID
+    """;
+    private static final String INSERT_EXPORT = """
+        INSERT INTO node_counters (uuid, node_id, username, kills, deaths, chat_messages, time_played)
+        VALUES (?, ?, ?, ?, ?, ?, ?)
+    """;
+    private static final String SELECT_LOCAL = """
+        SELECT uuid, username, COALESCE(kills, 0), COALESCE(deaths, 0), COALESCE(chat_messages, 0), COALESCE(time_played, 0)
+        FROM players
+    """;
+    private static final String SELECT_MERGED = """
+        SELECT uuid, node_id, username, kills, deaths, chat_messages, time_played
+        FROM node_counters WHERE node_id <> ?
+    """;
+    // Sum of this node's players row and every other node's entry. Names from this server win over merged ones.
+    private static final String SELECT_NETWORK_PAGE = """
+        SELECT t.uuid, COALESCE(p.username, t.username), t.total FROM (
+            SELECT uuid, MAX(username) AS username, SUM(value) AS total FROM (
+                SELECT uuid, username, COALESCE(%1$s, 0) AS value FROM players
+                UNION ALL
+                SELECT uuid, username, %1$s FROM node_counters WHERE node_id <> ?
+            ) counters GROUP BY uuid
+        ) t LEFT JOIN players p ON p.uuid = t.uuid
+        WHERE t.total > 0
+        ORDER BY t.total DESC, t.uuid
+        LIMIT ? OFFSET ?
+    """;
+    private static final String COUNT_NETWORK = """
+        SELECT COUNT(*) FROM (
+            SELECT uuid FROM players WHERE %1$s > 0
+            UNION
+            SELECT uuid FROM node_counters WHERE node_id <> ? AND %1$s > 0
+        ) counted
+    """;
+
+    private final String selectNodeId;
+    private final String upsertMerged;
+
+    NodeCounters(SqlDialect dialect) {
+        this.selectNodeId = "SELECT " + dialect.quote("value") + " FROM plugin_state WHERE " + dialect.quote("key") + " = ?";
+        this.upsertMerged = dialect.upsertKeepingGreatest("node_counters",
+            List.of("uuid", "node_id"), List.of("username"), COUNTER_COLUMNS);
+    }
+
+    /**
+     * @return The column a network leaderboard is ranked by, or null for reputation, which is not kept per node
+     */
+    static String column(LeaderboardCategory category) {
+        return switch (category) {
+            case TIMEPLAYED -> "time_played";
+            case KILLS -> "kills";
+            case DEATHS -> "deaths";
+            case CHATTER -> "chat_messages";
+            case LOVED, HATED -> null;
+        };
+    }
+
+    long getNodeId(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(selectNodeId)) {
+            stmt.setString(1, NODE_ID_STATE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("The database has no node id");
+                }
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Write this node's players as its entries, followed by every entry merged from other nodes, to a new node file.
+     * The file is written next to its destination and moved into place, so a server merging the folder at the same
+     * time never reads half of it.
+     * @return Number of entries written
+     */
+    int export(Connection connection, long nodeId, Path file) throws SQLException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        int written = 0;
+        try {
+            Files.createDirectories(file.getParent());
+            Files.deleteIfExists(temporary);
+        } catch (IOException e) {
+            throw new SQLException("Could not prepare " + temporary, e);
+        }
+
+        try (Connection out = DriverManager.getConnection("jdbc:sqlite:" + temporary)) {
+            try (Statement stmt = out.createStatement()) {
+                stmt.executeUpdate(CREATE_EXPORT_TABLE);
+            }
+            out.setAutoCommit(false);
+            try (PreparedStatement insert = out.prepareStatement(INSERT_EXPORT)) {
+                try (Statement stmt = connection.createStatement();
+                     ResultSet rs = stmt.executeQuery(SELECT_LOCAL)) {
+                    while (rs.next()) {
+                        insert.setString(1, rs.getString(1));
+                        insert.setLong(2, nodeId);
+                        insert.setString(3, rs.getString(2));
+                        for (int i = 0; i < COUNTER_COLUMNS.size(); i++) {
+                            insert.setLong(i + 4, rs.getLong(i + 3));
+                        }
+                        insert.addBatch();
+                        if (++written % BATCH_SIZE == 0) {
+                            insert.executeBatch();
+                        }
+                    }
+                }
+                try (PreparedStatement stmt = connection.prepareStatement(SELECT_MERGED)) {
+                    stmt.setLong(1, nodeId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            for (int i = 1; i <= 7; i++) {
+                                insert.setObject(i, rs.getObject(i));
+                            }
+                            insert.addBatch();
+                            if (++written % BATCH_SIZE == 0) {
+                                insert.executeBatch();
+                            }
+                        }
+                    }
+                }
+                insert.executeBatch();
+            }
+            out.commit();
+        }
+
+        try {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new SQLException("Could not move " + temporary + " to " + file, e);
+        }
+        return written;
+    }
+
+    /**
+     * Merge every entry in a node file except this node's own, which are always newest in the players table.
+     * The file is applied in one transaction.
+     * @return Number of entries read from the file
+     */
+    int merge(Connection connection, long nodeId, Path file) throws SQLException {
+        Properties properties = new Properties();
+        // SQLITE_OPEN_READONLY: merging never creates or changes the file.
+        properties.setProperty("open_mode", "1");
+
+        int merged = 0;
+        connection.setAutoCommit(false);
+        try (Connection in = DriverManager.getConnection("jdbc:sqlite:" + file, properties);
+             PreparedStatement select = in.prepareStatement(SELECT_MERGED);
+             PreparedStatement upsert = connection.prepareStatement(upsertMerged)) {
+            select.setLong(1, nodeId);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    upsert.setString(1, rs.getString("uuid"));
+                    upsert.setLong(2, rs.getLong("node_id"));
+                    upsert.setString(3, rs.getString("username"));
+                    for (int i = 0; i < COUNTER_COLUMNS.size(); i++) {
+                        upsert.setLong(i + 4, rs.getLong(COUNTER_COLUMNS.get(i)));
+                    }
+                    upsert.addBatch();
+                    if (++merged % BATCH_SIZE == 0) {
+                        upsert.executeBatch();
+                    }
+                }
+            }
+            upsert.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        return merged;
+    }
+
+    /**
+     * @param column A column returned by {@link #column(LeaderboardCategory)}
+     * @return Players with a network total above zero, highest first
+     */
+    List<NetworkLeaderboardEntry> loadLeaderboard(Connection connection, long nodeId, String column, int offset, int limit) throws SQLException {
+        List<NetworkLeaderboardEntry> entries = new ArrayList<>(limit);
+        try (PreparedStatement stmt = connection.prepareStatement(SELECT_NETWORK_PAGE.formatted(column))) {
+            stmt.setLong(1, nodeId);
+            stmt.setInt(2, limit);
+            stmt.setInt(3, offset);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entries.add(new NetworkLeaderboardEntry(UUID.fromString(rs.getString(1)), rs.getString(2), rs.getLong(3)));
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @param column A column returned by {@link #column(LeaderboardCategory)}
+     * @return Number of players with a network total above zero
+     */
+    int countLeaderboard(Connection connection, long nodeId, String column) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(COUNT_NETWORK.formatted(column))) {
+            stmt.setLong(1, nodeId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+}
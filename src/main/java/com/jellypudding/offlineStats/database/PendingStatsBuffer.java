@@ -0,0 +1,104 @@
+package com.jellypudding.offlineStats.database;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * In-memory write-behind buffer for the high-frequency counters (kills, deaths and chat messages).
+ * Increments are recorded per UUID and written to the database in one batch by
+ * {@link DatabaseManager#flushPendingStats()}.
+ */
+public class PendingStatsBuffer {
+
+    private static final BiFunction<UUID, Delta, Delta> ADD_KILL = (uuid, delta) -> {
+        Delta result = delta != null ? delta : new Delta();
+        result.kills.increment();
+        return result;
+    };
+
+    private static final BiFunction<UUID, Delta, Delta> ADD_DEATH = (uuid, delta) -> {
+        Delta result = delta != null ? delta : new Delta();
+        result.deaths.increment();
+        return result;
+    };
+
+    private static final BiFunction<UUID, Delta, Delta> ADD_CHAT_MESSAGE = (uuid, delta) -> {
+        Delta result = delta != null ? delta : new Delta();
+        result.chatMessages.increment();
+        return result;
+    };
+
+    // Increments go through compute() so that they can never race with drain() removing the entry.
+    private final Map<UUID, Delta> pending = new ConcurrentHashMap<>();
+
+    public void addKill(UUID playerUuid) {
+        pending.compute(playerUuid, ADD_KILL);
+    }
+
+    public void addDeath(UUID playerUuid) {
+        pending.compute(playerUuid, ADD_DEATH);
+    }
+
+    public void addChatMessage(UUID playerUuid) {
+        pending.compute(playerUuid, ADD_CHAT_MESSAGE);
+    }
+
+    /**
+     * Get the deltas not yet written to the database for a player
+     * @return The pending delta or null if there is nothing pending
+     */
+    public Delta get(UUID playerUuid) {
+        return pending.get(playerUuid);
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * Remove and return every pending delta.
+     */
+    public Map<UUID, Delta> drain() {
+        Map<UUID, Delta> drained = new HashMap<>();
+        for (UUID playerUuid : pending.keySet()) {
+            Delta delta = pending.remove(playerUuid);
+            if (delta != null) {
+                drained.put(playerUuid, delta);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Put drained deltas back, e.g. after a failed flush, merging with anything recorded since.
+     */
+    public void restore(Map<UUID, Delta> drained) {
+        for (Map.Entry<UUID, Delta> entry : drained.entrySet()) {
+            Delta delta = entry.getValue();
+            pending.merge(entry.getKey(), delta, (current, restored) -> {
+                current.kills.add(restored.getKills());
+                current.deaths.add(restored.getDeaths());
+                current.chatMessages.add(restored.getChatMessages());
+                return current;
+            });
+        }
+    }
+
+    public static final class Delta {
+        private final LongAdder kills = new LongAdder();
+        private final LongAdder deaths = new LongAdder();
+        private final LongAdder chatMessages = new LongAdder();
+
+        public int getKills() { return kills.intValue(); }
+        public int getDeaths() { return deaths.intValue(); }
+        public int getChatMessages() { return chatMessages.intValue(); }
+    }
+}
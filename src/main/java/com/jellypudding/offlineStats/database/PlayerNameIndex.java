@@ -0,0 +1,270 @@
+package com.jellypudding.offlineStats.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Case-insensitive map from player name to UUID for everyone in the players table.
+ * An open-addressing table with linear probing, so a lookup is one hash and usually one slot.
+ * The same entries are also kept in an array sorted by name, so tab completion is a binary search for the prefix.
+ * Written on the database writer thread; lookups are lock-free optimistic reads from any thread.
+ */
+public class PlayerNameIndex {
+
+    private static final int MIN_CAPACITY = 64;
+
+    private final StampedLock lock = new StampedLock();
+    private Entry[] table = new Entry[MIN_CAPACITY];
+    private int size;
+    // The first size slots hold the entries in key order.
+    private Entry[] sorted = new Entry[MIN_CAPACITY];
+
+    /**
+     * Look up a player by name, ignoring case.
+     * @return The player's UUID and name as last seen, or null if no player has used the name
+     */
+    public Entry get(String playerName) {
+        String key = playerName.toLowerCase(Locale.ROOT);
+        long stamp = lock.tryOptimisticRead();
+        Entry found = find(table, key);
+        if (lock.validate(stamp)) {
+            return found;
+        }
+
+        stamp = lock.readLock();
+        try {
+            return find(table, key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Map a name to a player, replacing whoever used the name before.
+     */
+    public void put(String playerName, UUID playerUuid) {
+        Entry entry = Entry.of(playerName, playerUuid);
+        long stamp = lock.writeLock();
+        try {
+            if ((size + 1) * 2 > table.length) {
+                resize(table.length * 2);
+            }
+            int index = indexOf(table, entry.key());
+            if (index < 0) {
+                table[-index - 1] = entry;
+                insertSorted(entry);
+                size++;
+            } else {
+                table[index] = entry;
+                sorted[sortedIndexOf(sorted, size, entry.key())] = entry;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Forget a name, but only if it still belongs to the given player, e.g. after they change it.
+     */
+    public void remove(String playerName, UUID playerUuid) {
+        long stamp = lock.writeLock();
+        try {
+            int index = indexOf(table, playerName.toLowerCase(Locale.ROOT));
+            if (index < 0 || !table[index].uuid().equals(playerUuid)) {
+                return;
+            }
+            deleteAt(index);
+            int position = sortedIndexOf(sorted, size, playerName.toLowerCase(Locale.ROOT));
+            System.arraycopy(sorted, position + 1, sorted, position, size - position - 1);
+            size--;
+            sorted[size] = null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replace the whole index, sorting once rather than inserting names one at a time.
+     * @param entries Players in the order they were last seen; a name used more than once maps to the last
+     */
+    public void load(List<Entry> entries) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < entries.size() * 2) {
+            capacity <<= 1;
+        }
+        Entry[] loaded = new Entry[capacity];
+        int loadedSize = 0;
+        for (Entry entry : entries) {
+            int index = indexOf(loaded, entry.key());
+            if (index < 0) {
+                loaded[-index - 1] = entry;
+                loadedSize++;
+            } else {
+                loaded[index] = entry;
+            }
+        }
+
+        Entry[] loadedSorted = new Entry[Math.max(MIN_CAPACITY, loadedSize)];
+        int position = 0;
+        for (Entry entry : loaded) {
+            if (entry != null) {
+                loadedSorted[position++] = entry;
+            }
+        }
+        Arrays.sort(loadedSorted, 0, loadedSize, (a, b) -> a.key().compareTo(b.key()));
+
+        long stamp = lock.writeLock();
+        try {
+            table = loaded;
+            sorted = loadedSorted;
+            size = loadedSize;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            table = new Entry[MIN_CAPACITY];
+            sorted = new Entry[MIN_CAPACITY];
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Find known names starting with a prefix, ignoring case, in alphabetical order.
+     * @param limit Maximum number of names to return
+     * @return Names with the players' own capitalisation
+     */
+    public List<String> findByPrefix(String prefix, int limit) {
+        String key = prefix.toLowerCase(Locale.ROOT);
+        long stamp = lock.readLock();
+        try {
+            List<String> names = new ArrayList<>(Math.min(limit, 16));
+            int position = sortedIndexOf(sorted, size, key);
+            if (position < 0) {
+                position = -position - 1;
+            }
+            for (int i = position; i < size && names.size() < limit && sorted[i].key().startsWith(key); i++) {
+                names.add(sorted[i].name());
+            }
+            return names;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static Entry find(Entry[] table, String key) {
+        int mask = table.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            Entry entry = table[i];
+            if (entry == null || entry.key().equals(key)) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * @return The slot holding the key, or -(free slot) - 1 if it is absent
+     */
+    private static int indexOf(Entry[] table, String key) {
+        int mask = table.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            Entry entry = table[i];
+            if (entry == null) {
+                return -i - 1;
+            }
+            if (entry.key().equals(key)) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * Empty a slot and shift later entries of the same probe run back, so no tombstones are needed.
+     */
+    private void deleteAt(int index) {
+        int mask = table.length - 1;
+        int hole = index;
+        for (int i = (index + 1) & mask; table[i] != null; i = (i + 1) & mask) {
+            int home = slot(table[i].key(), mask);
+            // Move the entry into the hole unless its home slot lies cyclically in (hole, i].
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                table[hole] = table[i];
+                hole = i;
+            }
+        }
+        table[hole] = null;
+    }
+
+    private void insertSorted(Entry entry) {
+        if (size == sorted.length) {
+            sorted = Arrays.copyOf(sorted, sorted.length * 2);
+        }
+        int position = -sortedIndexOf(sorted, size, entry.key()) - 1;
+        System.arraycopy(sorted, position, sorted, position + 1, size - position);
+        sorted[position] = entry;
+    }
+
+    /**
+     * @return The position of the key in the sorted entries, or -(insertion point) - 1 if it is absent
+     */
+    private static int sortedIndexOf(Entry[] sorted, int size, String key) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = sorted[mid].key().compareTo(key);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -low - 1;
+    }
+
+    private void resize(int capacity) {
+        Entry[] resized = new Entry[capacity];
+        for (Entry entry : table) {
+            if (entry != null) {
+                resized[-indexOf(resized, entry.key()) - 1] = entry;
+            }
+        }
+        table = resized;
+    }
+
+    private static int slot(String key, int mask) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * @param key Lowercased name
+     * @param name Name with the player's own capitalisation
+     */
+    public record Entry(String key, String name, UUID uuid) {
+
+        public static Entry of(String name, UUID uuid) {
+            return new Entry(name.toLowerCase(Locale.ROOT), name, uuid);
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package com.jellypudding.offlineStats.database;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
+import java.time.Instant;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -10,8 +8,10 @@ public class PlayerStats {
 
     private final UUID uuid;
     private final String username;
-    private final String firstSeen;
-    private final String lastSeen;
+    // epoch milliseconds
+    private final long firstSeen;
+    // epoch milliseconds
+    private final long lastSeen;
     // milliseconds
     private final long timePlayed;
     // milliseconds, 0 if offline
@@ -22,7 +22,7 @@ public class PlayerStats {
     private final int positiveRep;
     private final int negativeRep;
 
-    public PlayerStats(UUID uuid, String username, String firstSeen, String lastSeen, 
+    public PlayerStats(UUID uuid, String username, long firstSeen, long lastSeen,
                       long timePlayed, long sessionStart, int kills, int deaths, int chatMessages,
                       int positiveRep, int negativeRep) {
         this.uuid = uuid;
@@ -40,8 +40,8 @@ public class PlayerStats {
 
     public UUID getUuid() { return uuid; }
     public String getUsername() { return username; }
-    public String getFirstSeen() { return firstSeen; }
-    public String getLastSeen() { return lastSeen; }
+    public long getFirstSeen() { return firstSeen; }
+    public long getLastSeen() { return lastSeen; }
     public long getTimePlayed() { return timePlayed; }
     public long getSessionStart() { return sessionStart; }
     public int getKills() { return kills; }
@@ -80,16 +80,15 @@ public class PlayerStats {
         return TimeUnit.MILLISECONDS.toHours(totalMillis);
     }
 
-    private String formatDateISO8601(String dateStr) {
-        try {
-            LocalDateTime dateTime = LocalDateTime.parse(dateStr, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-            return dateTime.atOffset(ZoneOffset.UTC).format(DateTimeFormatter.ISO_INSTANT);
-        } catch (Exception e) {
-            return dateStr;
-        }
+    private String formatDateISO8601(long epochMillis) {
+        // Whole seconds, e.g. 2024-01-01T12:00:00Z
+        return Instant.ofEpochSecond(Math.floorDiv(epochMillis, 1000)).toString();
     }
 
-    private String formatDuration(long milliseconds) {
+    /**
+     * Format a duration as its two largest units, e.g. "3 hours, 12 minutes".
+     */
+    public static String formatDuration(long milliseconds) {
         long hours = TimeUnit.MILLISECONDS.toHours(milliseconds);
         long minutes = TimeUnit.MILLISECONDS.toMinutes(milliseconds) % 60;
         long seconds = TimeUnit.MILLISECONDS.toSeconds(milliseconds) % 60;
@@ -0,0 +1,120 @@
+package com.jellypudding.offlineStats.database;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache of player rows. Online players are pinned from join until quit;
+ * offline lookups are kept in a small LRU with a time-to-live.
+ */
+public class PlayerStatsCache {
+
+    private final Map<UUID, CachedPlayerStats> online = new ConcurrentHashMap<>();
+    private final Map<UUID, CachedPlayerStats> offline;
+    private final long offlineTtlMillis;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public PlayerStatsCache(int offlineMaxSize, long offlineTtlMillis) {
+        this.offlineTtlMillis = offlineTtlMillis;
+        this.offline = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, CachedPlayerStats> eldest) {
+                return size() > offlineMaxSize;
+            }
+        };
+    }
+
+    /**
+     * Look up a cached player, counting the hit or miss.
+     * @return The cached record or null if not cached
+     */
+    public CachedPlayerStats get(UUID playerUuid) {
+        CachedPlayerStats cached = peek(playerUuid);
+        if (cached != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return cached;
+    }
+
+    /**
+     * Look up a cached player without affecting the hit/miss counters.
+     */
+    public CachedPlayerStats peek(UUID playerUuid) {
+        CachedPlayerStats cached = online.get(playerUuid);
+        if (cached != null) {
+            return cached;
+        }
+
+        synchronized (offline) {
+            cached = offline.get(playerUuid);
+            if (cached != null && System.currentTimeMillis() - cached.getLoadedAt() > offlineTtlMillis) {
+                offline.remove(playerUuid);
+                cached = null;
+            }
+        }
+        return cached;
+    }
+
+    public void putOnline(CachedPlayerStats stats) {
+        synchronized (offline) {
+            offline.remove(stats.getUuid());
+        }
+        online.put(stats.getUuid(), stats);
+    }
+
+    /**
+     * The pinned records of every online player.
+     */
+    public Collection<CachedPlayerStats> getOnline() {
+        return online.values();
+    }
+
+    public void putOffline(CachedPlayerStats stats) {
+        if (offlineTtlMillis <= 0 || online.containsKey(stats.getUuid())) {
+            return;
+        }
+        synchronized (offline) {
+            offline.put(stats.getUuid(), stats);
+        }
+    }
+
+    public void evict(UUID playerUuid) {
+        online.remove(playerUuid);
+        synchronized (offline) {
+            offline.remove(playerUuid);
+        }
+    }
+
+    public void clear() {
+        online.clear();
+        synchronized (offline) {
+            offline.clear();
+        }
+    }
+
+    public int getOnlineSize() {
+        return online.size();
+    }
+
+    public int getOfflineSize() {
+        synchronized (offline) {
+            return offline.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+}
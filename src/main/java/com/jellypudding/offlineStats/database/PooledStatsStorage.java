@@ -0,0 +1,168 @@
+package com.jellypudding.offlineStats.database;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Storage on a MySQL or MariaDB server through a pool of connections, configured in database.mysql.
+ * Operations borrow a connection each, so reads from several threads run in parallel.
+ * Prepared statements are closed with the session and cached by the driver instead; the two drivers name their
+ * caching and batching properties differently, so each gets its own defaults.
+ * Caches and leaderboards stay in {@link DatabaseManager}'s memory, so every server needs its own database.
+ */
+class PooledStatsStorage extends JdbcStatsStorage {
+
+    // MySQL Connector/J: rewriteBatchedStatements turns a batch of INSERTs into one multi-row INSERT and sends a
+    // batch of UPDATEs as one multi-statement round trip.
+    private static final Map<String, String> MYSQL_PROPERTIES = Map.of(
+        "cachePrepStmts", "true",
+        "prepStmtCacheSize", "250",
+        "prepStmtCacheSqlLimit", "2048",
+        "rewriteBatchedStatements", "true"
+    );
+    // MariaDB Connector/J 3.x: server-side statements are cached per connection, and useBulkStmts sends a batch of
+    // INSERTs or UPDATEs as one bulk command to a MariaDB server (a MySQL server gets them pipelined instead).
+    private static final Map<String, String> MARIADB_PROPERTIES = Map.of(
+        "useServerPrepStmts", "true",
+        "cachePrepStmts", "true",
+        "prepStmtCacheSize", "250",
+        "useBulkStmts", "true"
+    );
+
+    private final Logger logger;
+    private final ConfigurationSection config;
+    private final String type;
+    private volatile HikariDataSource dataSource;
+
+    /**
+     * @param type mysql or mariadb, which picks the JDBC driver
+     */
+    PooledStatsStorage(Logger logger, ConfigurationSection config, String type, ZoneId zone) {
+        super(SqlDialect.MYSQL, zone);
+        this.logger = logger;
+        this.config = config;
+        this.type = type;
+    }
+
+    @Override
+    public void open() throws SQLException {
+        ConfigurationSection mysql = config.getConfigurationSection("database.mysql");
+        if (mysql == null) {
+            throw new SQLException("database.type is " + type + " but the database.mysql section is missing");
+        }
+
+        HikariConfig hikari = new HikariConfig();
+        hikari.setPoolName("OfflineStats");
+        String jdbcUrl = mysql.getString("jdbc-url", "");
+        if (jdbcUrl.isEmpty()) {
+            hikari.setJdbcUrl("jdbc:" + type + "://" + mysql.getString("host", "localhost") + ":" +
+                              mysql.getInt("port", 3306) + "/" + mysql.getString("database", "offlinestats"));
+            hikari.setDriverClassName("mariadb".equals(type) ? "org.mariadb.jdbc.Driver" : "com.mysql.cj.jdbc.Driver");
+        } else {
+            hikari.setJdbcUrl(jdbcUrl);
+        }
+        hikari.setUsername(mysql.getString("username", "offlinestats"));
+        hikari.setPassword(mysql.getString("password", ""));
+        int poolSize = Math.max(1, mysql.getInt("pool-size", 4));
+        hikari.setMaximumPoolSize(poolSize);
+        hikari.setMinimumIdle(poolSize);
+
+        ("mariadb".equals(type) ? MARIADB_PROPERTIES : MYSQL_PROPERTIES).forEach(hikari::addDataSourceProperty);
+        ConfigurationSection properties = mysql.getConfigurationSection("properties");
+        if (properties != null) {
+            for (String key : properties.getKeys(false)) {
+                hikari.addDataSourceProperty(key, String.valueOf(properties.get(key)));
+            }
+        }
+
+        try {
+            dataSource = new HikariDataSource(hikari);
+        } catch (RuntimeException e) {
+            throw new SQLException("Could not connect to " + hikari.getJdbcUrl(), e);
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            SchemaMigrator.forDialect(dialect, logger, connection).migrate();
+        } catch (SQLException e) {
+            dataSource.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        HikariDataSource current = dataSource;
+        return current != null && !current.isClosed();
+    }
+
+    @Override
+    public void close() {
+        HikariDataSource current = dataSource;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        HikariDataSource current = dataSource;
+        return type + " (" + (current != null ? current.getJdbcUrl() + ", " + current.getMaximumPoolSize() + " connections" : "closed") + ")";
+    }
+
+    @Override
+    protected Session openSession() throws SQLException {
+        HikariDataSource current = dataSource;
+        if (current == null) {
+            throw new SQLException("The database is closed");
+        }
+        return new PooledSession(current.getConnection());
+    }
+
+    /**
+     * A connection borrowed from the pool and returned on close, along with the statements prepared on it.
+     */
+    private static class PooledSession implements Session {
+
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>(4);
+
+        PooledSession(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Connection connection() {
+            return connection;
+        }
+
+        @Override
+        public PreparedStatement statement(String query) throws SQLException {
+            PreparedStatement stmt = statements.get(query);
+            if (stmt == null) {
+                stmt = connection.prepareStatement(query);
+                statements.put(query, stmt);
+            }
+            return stmt;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                for (PreparedStatement stmt : statements.values()) {
+                    stmt.close();
+                }
+            } finally {
+                connection.close();
+            }
+        }
+    }
+}
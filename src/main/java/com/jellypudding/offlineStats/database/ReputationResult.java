@@ -0,0 +1,61 @@
+package com.jellypudding.offlineStats.database;
+
+/**
+ * Outcome of {@link DatabaseManager#giveReputation}.
+ */
+public class ReputationResult {
+
+    public enum Status {
+        /** The reputation was recorded. */
+        ACCEPTED,
+        /** The giver changed their reputation for this player too recently. */
+        COOLDOWN,
+        /** The giver has already given this type of reputation to this player. */
+        DUPLICATE,
+        /** The receiver has never joined the server. */
+        UNKNOWN_PLAYER,
+        /** The database rejected the change; nothing was recorded. */
+        FAILED
+    }
+
+    private final Status status;
+    private final PlayerStats receiverStats;
+    private final String previousRepType;
+    private final long cooldownRemaining;
+
+    private ReputationResult(Status status, PlayerStats receiverStats, String previousRepType, long cooldownRemaining) {
+        this.status = status;
+        this.receiverStats = receiverStats;
+        this.previousRepType = previousRepType;
+        this.cooldownRemaining = cooldownRemaining;
+    }
+
+    static ReputationResult accepted(PlayerStats receiverStats, String previousRepType) {
+        return new ReputationResult(Status.ACCEPTED, receiverStats, previousRepType, 0);
+    }
+
+    static ReputationResult cooldown(PlayerStats receiverStats, String previousRepType, long cooldownRemaining) {
+        return new ReputationResult(Status.COOLDOWN, receiverStats, previousRepType, cooldownRemaining);
+    }
+
+    static ReputationResult duplicate(PlayerStats receiverStats, String previousRepType) {
+        return new ReputationResult(Status.DUPLICATE, receiverStats, previousRepType, 0);
+    }
+
+    static ReputationResult unknownPlayer() {
+        return new ReputationResult(Status.UNKNOWN_PLAYER, null, null, 0);
+    }
+
+    static ReputationResult failed(PlayerStats receiverStats, String previousRepType) {
+        return new ReputationResult(Status.FAILED, receiverStats, previousRepType, 0);
+    }
+
+    public Status getStatus() { return status; }
+    public boolean isAccepted() { return status == Status.ACCEPTED; }
+    /** Receiver's stats after the change, or null if the receiver was not found. */
+    public PlayerStats getReceiverStats() { return receiverStats; }
+    /** "positive", "negative" or null if the giver had not given this player reputation before. */
+    public String getPreviousRepType() { return previousRepType; }
+    /** Milliseconds until the giver may change their reputation for this player, when on cooldown. */
+    public long getCooldownRemaining() { return cooldownRemaining; }
+}
@@ -0,0 +1,9 @@
+package com.jellypudding.offlineStats.database;
+
+/**
+ * A player's place on a week or month leaderboard.
+ * @param stats The player's lifetime statistics
+ * @param score What they achieved in the window: milliseconds for time played, the net change for reputation,
+ *              otherwise a count
+ */
+public record RollingLeaderboardEntry(PlayerStats stats, long score) {}
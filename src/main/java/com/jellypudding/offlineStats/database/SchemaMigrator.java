@@ -0,0 +1,427 @@
+package com.jellypudding.offlineStats.database;
+
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Brings the database schema up to date by running numbered migrations in order.
+ * The version reached is recorded in the schema_version table, so an up-to-date database costs a single read.
+ * Each migration runs in its own transaction together with its version record. Migrations that rewrite a lot of rows
+ * commit in chunks so the write lock is never held for long; they must be safe to run again if interrupted half-way.
+ * SQLite and MySQL/MariaDB have separate migration lists. MySQL commits implicitly after DDL, so its migrations
+ * only create what does not exist yet.
+ */
+class SchemaMigrator {
+
+    private static final int CHUNK_SIZE = 5000;
+    private static final DateTimeFormatter LEGACY_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final List<Migration> SQLITE_MIGRATIONS = List.of(
+        new Migration(1, "create tables", SchemaMigrator::createTables),
+        new Migration(2, "add reputation columns", SchemaMigrator::addReputationColumns),
+        new Migration(3, "store timestamps as epoch milliseconds", SchemaMigrator::convertTimestamps),
+        new Migration(4, "index players by last seen", SchemaMigrator::indexLastSeen),
+        new Migration(5, "create stats history", SchemaMigrator::createStatsHistory),
+        new Migration(6, "create node counters", SchemaMigrator::createNodeCounters)
+    );
+
+    // MySQL support arrived after all of the above, so its first migration creates the current schema.
+    private static final List<Migration> MYSQL_MIGRATIONS = List.of(
+        new Migration(1, "create tables", SchemaMigrator::createMySqlTables),
+        new Migration(2, "create node counters", SchemaMigrator::createMySqlNodeCounters)
+    );
+
+    private final Logger logger;
+    private final Connection connection;
+    private final List<Migration> migrations;
+
+    private SchemaMigrator(Logger logger, Connection connection, List<Migration> migrations) {
+        this.logger = logger;
+        this.connection = connection;
+        this.migrations = migrations;
+    }
+
+    static SchemaMigrator forDialect(SqlDialect dialect, Logger logger, Connection connection) {
+        return new SchemaMigrator(logger, connection, switch (dialect) {
+            case SQLITE -> SQLITE_MIGRATIONS;
+            case MYSQL -> MYSQL_MIGRATIONS;
+        });
+    }
+
+    int getLatestVersion() {
+        return migrations.get(migrations.size() - 1).version();
+    }
+
+    void migrate() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS schema_version (
+                    version INTEGER PRIMARY KEY,
+                    description TEXT NOT NULL,
+                    applied_at BIGINT NOT NULL
+                )
+            """);
+        }
+
+        int currentVersion = getCurrentVersion();
+        if (currentVersion >= getLatestVersion()) {
+            return;
+        }
+
+        for (Migration migration : migrations) {
+            if (migration.version() <= currentVersion) {
+                continue;
+            }
+
+            long started = System.nanoTime();
+            connection.setAutoCommit(false);
+            try {
+                migration.step().apply(this);
+                recordVersion(migration);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw new SQLException("Schema migration " + migration.version() + " (" + migration.description() + ") failed", e);
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            logger.info("Applied schema migration " + migration.version() + " (" + migration.description() + ") in " +
+                        (System.nanoTime() - started) / 1_000_000 + "ms.");
+        }
+    }
+
+    private int getCurrentVersion() throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private void recordVersion(Migration migration) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)")) {
+            stmt.setInt(1, migration.version());
+            stmt.setString(2, migration.description());
+            stmt.setLong(3, System.currentTimeMillis());
+            stmt.executeUpdate();
+        }
+    }
+
+    private boolean hasColumn(String table, String column) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void createTables() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS players (
+                    uuid TEXT PRIMARY KEY,
+                    username TEXT NOT NULL,
+                    first_seen INTEGER NOT NULL,
+                    last_seen INTEGER NOT NULL,
+                    time_played BIGINT DEFAULT 0,
+                    session_start BIGINT DEFAULT 0,
+                    kills INTEGER DEFAULT 0,
+                    deaths INTEGER DEFAULT 0,
+                    chat_messages INTEGER DEFAULT 0,
+                    positive_rep INTEGER DEFAULT 0,
+                    negative_rep INTEGER DEFAULT 0
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS milestones (
+                    uuid TEXT NOT NULL,
+                    milestone_type TEXT NOT NULL,
+                    milestone_value INTEGER NOT NULL,
+                    achieved_at INTEGER NOT NULL,
+                    PRIMARY KEY (uuid, milestone_type, milestone_value)
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS reputation_cooldowns (
+                    giver_uuid TEXT NOT NULL,
+                    receiver_uuid TEXT NOT NULL,
+                    rep_type TEXT NOT NULL,
+                    last_rep_time BIGINT NOT NULL,
+                    PRIMARY KEY (giver_uuid, receiver_uuid)
+                )
+            """);
+        }
+    }
+
+    /**
+     * Databases created before reputation was added lack its columns.
+     */
+    private void addReputationColumns() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String column : List.of("positive_rep", "negative_rep")) {
+                if (!hasColumn("players", column)) {
+                    stmt.executeUpdate("ALTER TABLE players ADD COLUMN " + column + " INTEGER DEFAULT 0");
+                }
+            }
+        }
+    }
+
+    /**
+     * Convert "yyyy-MM-dd HH:mm:ss" text to epoch milliseconds; unparseable values become 0. The text was written
+     * from LocalDateTime.now(), so it is server-local time, not UTC, and is converted in the default time zone.
+     * SQLite columns are not strictly typed, so values are rewritten in place rather than rebuilding the tables.
+     */
+    private void convertTimestamps() throws SQLException {
+        int players = convertTextTimestamps("players", "first_seen", "last_seen");
+        int milestones = convertTextTimestamps("milestones", "achieved_at");
+        if (players > 0 || milestones > 0) {
+            logger.info("Converted timestamps of " + players + " players and " + milestones + " milestones.");
+        }
+    }
+
+    /**
+     * Rewrite the text values of timestamp columns as epoch milliseconds, committing every {@link #CHUNK_SIZE} rows.
+     * Converted values are integers, so an interrupted run picks up where it stopped.
+     * @return The number of rows converted
+     */
+    private int convertTextTimestamps(String table, String... columns) throws SQLException {
+        String columnList = String.join(", ", columns);
+        String select = "SELECT rowid, " + columnList + " FROM " + table + " WHERE " +
+                        String.join(" OR ", Arrays.stream(columns).map(column -> "typeof(" + column + ") = 'text'").toList()) +
+                        " LIMIT " + CHUNK_SIZE;
+        String update = "UPDATE " + table + " SET " +
+                        String.join(", ", Arrays.stream(columns).map(column -> column + " = ?").toList()) + " WHERE rowid = ?";
+        ZoneId zone = ZoneId.systemDefault();
+
+        int total = 0;
+        try (PreparedStatement selectStmt = connection.prepareStatement(select);
+             PreparedStatement updateStmt = connection.prepareStatement(update)) {
+            int converted;
+            do {
+                converted = 0;
+                try (ResultSet rs = selectStmt.executeQuery()) {
+                    while (rs.next()) {
+                        for (int i = 0; i < columns.length; i++) {
+                            Object value = rs.getObject(i + 2);
+                            updateStmt.setLong(i + 1, value instanceof String text ? parseLocalTimestamp(text, zone) :
+                                                       value instanceof Number number ? number.longValue() : 0);
+                        }
+                        updateStmt.setLong(columns.length + 1, rs.getLong(1));
+                        updateStmt.addBatch();
+                        converted++;
+                    }
+                }
+                updateStmt.executeBatch();
+                total += converted;
+                // The last chunk is left uncommitted so it lands in the same transaction as the version record.
+                if (converted == CHUNK_SIZE) {
+                    connection.commit();
+                }
+            } while (converted == CHUNK_SIZE);
+        }
+        return total;
+    }
+
+    private static long parseLocalTimestamp(String text, ZoneId zone) {
+        try {
+            return LocalDateTime.parse(text.trim(), LEGACY_TIMESTAMP).atZone(zone).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    private void indexLastSeen() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_players_last_seen ON players (last_seen)");
+        }
+    }
+
+    /**
+     * History starts from the stats everyone has now, rather than counting their lifetime totals as today's change.
+     */
+    private void createStatsHistory() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS stats_history (
+                    uuid TEXT NOT NULL,
+                    period_start INTEGER NOT NULL,
+                    days INTEGER NOT NULL,
+                    resolution TEXT NOT NULL,
+                    data BLOB NOT NULL,
+                    PRIMARY KEY (uuid, period_start)
+                ) WITHOUT ROWID
+            """);
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_stats_history_resolution ON stats_history (resolution, period_start)");
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS stats_history_baseline (
+                    uuid TEXT PRIMARY KEY,
+                    kills INTEGER NOT NULL,
+                    deaths INTEGER NOT NULL,
+                    chat_messages INTEGER NOT NULL,
+                    time_played BIGINT NOT NULL,
+                    positive_rep INTEGER NOT NULL,
+                    negative_rep INTEGER NOT NULL
+                )
+            """);
+            stmt.executeUpdate("""
+                INSERT OR IGNORE INTO stats_history_baseline
+                SELECT uuid, COALESCE(kills, 0), COALESCE(deaths, 0), COALESCE(chat_messages, 0),
+                       COALESCE(time_played, 0), COALESCE(positive_rep, 0), COALESCE(negative_rep, 0)
+                FROM players
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS plugin_state (
+                    key TEXT PRIMARY KEY,
+                    value INTEGER NOT NULL
+                )
+            """);
+        }
+        try (PreparedStatement stmt = connection.prepareStatement("INSERT OR IGNORE INTO plugin_state (key, value) VALUES (?, ?)")) {
+            stmt.setString(1, StatsHistory.ROLLOVER_STATE);
+            stmt.setLong(2, LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            stmt.executeUpdate();
+        }
+    }
+
+    private void createMySqlTables() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS players (
+                    uuid CHAR(36) NOT NULL PRIMARY KEY,
+                    username VARCHAR(32) NOT NULL,
+                    first_seen BIGINT NOT NULL,
+                    last_seen BIGINT NOT NULL,
+                    time_played BIGINT NOT NULL DEFAULT 0,
+                    session_start BIGINT NOT NULL DEFAULT 0,
+                    kills INT NOT NULL DEFAULT 0,
+                    deaths INT NOT NULL DEFAULT 0,
+                    chat_messages INT NOT NULL DEFAULT 0,
+                    positive_rep INT NOT NULL DEFAULT 0,
+                    negative_rep INT NOT NULL DEFAULT 0,
+                    INDEX idx_players_last_seen (last_seen)
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS milestones (
+                    uuid CHAR(36) NOT NULL,
+                    milestone_type VARCHAR(32) NOT NULL,
+                    milestone_value INT NOT NULL,
+                    achieved_at BIGINT NOT NULL,
+                    PRIMARY KEY (uuid, milestone_type, milestone_value)
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS reputation_cooldowns (
+                    giver_uuid CHAR(36) NOT NULL,
+                    receiver_uuid CHAR(36) NOT NULL,
+                    rep_type VARCHAR(8) NOT NULL,
+                    last_rep_time BIGINT NOT NULL,
+                    PRIMARY KEY (giver_uuid, receiver_uuid)
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS stats_history (
+                    uuid CHAR(36) NOT NULL,
+                    period_start BIGINT NOT NULL,
+                    days INT NOT NULL,
+                    resolution VARCHAR(8) NOT NULL,
+                    data VARBINARY(64) NOT NULL,
+                    PRIMARY KEY (uuid, period_start),
+                    INDEX idx_stats_history_resolution (resolution, period_start)
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS stats_history_baseline (
+                    uuid CHAR(36) NOT NULL PRIMARY KEY,
+                    kills INT NOT NULL,
+                    deaths INT NOT NULL,
+                    chat_messages INT NOT NULL,
+                    time_played BIGINT NOT NULL,
+                    positive_rep INT NOT NULL,
+                    negative_rep INT NOT NULL
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS plugin_state (
+                    `key` VARCHAR(64) NOT NULL PRIMARY KEY,
+                    `value` BIGINT NOT NULL
+                )
+            """);
+        }
+        try (PreparedStatement stmt = connection.prepareStatement("INSERT IGNORE INTO plugin_state (`key`, `value`) VALUES (?, ?)")) {
+            stmt.setString(1, StatsHistory.ROLLOVER_STATE);
+            stmt.setLong(2, LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Entries merged from other servers, and the random id this database is known by in theirs.
+     */
+    private void createNodeCounters() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS node_counters (
+                    uuid TEXT NOT NULL,
+                    node_id INTEGER NOT NULL,
+                    username TEXT NOT NULL,
+                    kills INTEGER NOT NULL,
+                    deaths INTEGER NOT NULL,
+                    chat_messages INTEGER NOT NULL,
+                    time_played BIGINT NOT NULL,
+                    PRIMARY KEY (uuid, node_id)
+                ) WITHOUT ROWID
+            """);
+        }
+        insertNodeId("INSERT OR IGNORE INTO plugin_state (key, value) VALUES (?, ?)");
+    }
+
+    private void createMySqlNodeCounters() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS node_counters (
+                    uuid CHAR(36) NOT NULL,
+                    node_id BIGINT NOT NULL,
+                    username VARCHAR(32) NOT NULL,
+                    kills INT NOT NULL,
+                    deaths INT NOT NULL,
+                    chat_messages INT NOT NULL,
+                    time_played BIGINT NOT NULL,
+                    PRIMARY KEY (uuid, node_id)
+                )
+            """);
+        }
+        insertNodeId("INSERT IGNORE INTO plugin_state (`key`, `value`) VALUES (?, ?)");
+    }
+
+    private void insertNodeId(String insert) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(insert)) {
+            stmt.setString(1, NodeCounters.NODE_ID_STATE);
+            stmt.setLong(2, new SecureRandom().nextLong());
+            stmt.executeUpdate();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void apply(SchemaMigrator migrator) throws SQLException;
+    }
+
+    private record Migration(int version, String description, Step step) {}
+}
@@ -0,0 +1,117 @@
+package com.jellypudding.offlineStats.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The few pieces of SQL that differ between SQLite and MySQL/MariaDB. Everything else is written once.
+ */
+enum SqlDialect {
+    SQLITE {
+        @Override
+        String greatest() {
+            return "MAX";
+        }
+
+        @Override
+        String least() {
+            return "MIN";
+        }
+
+        @Override
+        String quote(String identifier) {
+            return "\"" + identifier + "\"";
+        }
+
+        @Override
+        String inserted(String column) {
+            return "excluded." + column;
+        }
+
+        @Override
+        String onConflict(List<String> keyColumns) {
+            return " ON CONFLICT(" + String.join(", ", keyColumns) + ") DO UPDATE SET ";
+        }
+    },
+    MYSQL {
+        @Override
+        String greatest() {
+            return "GREATEST";
+        }
+
+        @Override
+        String least() {
+            return "LEAST";
+        }
+
+        @Override
+        String quote(String identifier) {
+            return "`" + identifier + "`";
+        }
+
+        @Override
+        String inserted(String column) {
+            return "VALUES(" + column + ")";
+        }
+
+        @Override
+        String onConflict(List<String> keyColumns) {
+            return " ON DUPLICATE KEY UPDATE ";
+        }
+    };
+
+    /**
+     * @return The two-argument function returning the larger value
+     */
+    abstract String greatest();
+
+    /**
+     * @return The two-argument function returning the smaller value
+     */
+    abstract String least();
+
+    /**
+     * Quote an identifier that is a reserved word in some databases, e.g. key.
+     */
+    abstract String quote(String identifier);
+
+    /**
+     * @return The value the conflicting INSERT tried to write to the column, for use in its update clause
+     */
+    abstract String inserted(String column);
+
+    /**
+     * @return The clause between the VALUES list and the column updates of an upsert
+     */
+    abstract String onConflict(List<String> keyColumns);
+
+    /**
+     * Build an INSERT that updates the value columns of an existing row instead of failing on a duplicate key.
+     * Parameters are the key columns followed by the value columns, in the order given.
+     */
+    String upsert(String table, List<String> keyColumns, List<String> valueColumns) {
+        return upsertKeepingGreatest(table, keyColumns, valueColumns, List.of());
+    }
+
+    /**
+     * Like {@link #upsert}, but the grow-only columns of an existing row only ever increase: each keeps the larger of
+     * its stored and inserted value. Parameters are the key columns, the value columns, then the grow-only columns.
+     */
+    String upsertKeepingGreatest(String table, List<String> keyColumns, List<String> valueColumns, List<String> growOnlyColumns) {
+        List<String> columns = new ArrayList<>(keyColumns);
+        columns.addAll(valueColumns);
+        columns.addAll(growOnlyColumns);
+
+        List<String> updates = new ArrayList<>(valueColumns.size() + growOnlyColumns.size());
+        for (String column : valueColumns) {
+            updates.add(column + " = " + inserted(column));
+        }
+        for (String column : growOnlyColumns) {
+            updates.add(column + " = " + greatest() + "(" + column + ", " + inserted(column) + ")");
+        }
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" +
+               String.join(", ", Collections.nCopies(columns.size(), "?")) + ")" +
+               onConflict(keyColumns) + String.join(", ", updates);
+    }
+}
@@ -0,0 +1,190 @@
+package com.jellypudding.offlineStats.database;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Storage in offlinestats.db in the plugin folder. SQLite allows one writer at a time, so a single connection is
+ * shared and every operation holds it exclusively. Every statement is prepared once when the database is opened.
+ */
+class SqliteStatsStorage extends JdbcStatsStorage {
+
+    private static final Set<String> JOURNAL_MODES = Set.of("DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF");
+    private static final Set<String> SYNCHRONOUS_MODES = Set.of("OFF", "NORMAL", "FULL", "EXTRA");
+    private static final Set<String> TEMP_STORES = Set.of("DEFAULT", "FILE", "MEMORY");
+
+    private final Logger logger;
+    private final File dataFolder;
+    private final ConfigurationSection config;
+    private final String databasePath;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private final Session session = new SharedSession();
+    private Connection connection;
+
+    SqliteStatsStorage(Logger logger, File dataFolder, ConfigurationSection config, ZoneId zone) {
+        super(SqlDialect.SQLITE, zone);
+        this.logger = logger;
+        this.dataFolder = dataFolder;
+        this.config = config;
+        this.databasePath = dataFolder + File.separator + "offlinestats.db";
+    }
+
+    @Override
+    public void open() throws SQLException {
+        lock.lock();
+        try {
+            if (!dataFolder.exists()) {
+                dataFolder.mkdirs();
+            }
+
+            connection = DriverManager.getConnection("jdbc:sqlite:" + databasePath);
+
+            applyPragmas();
+
+            SchemaMigrator.forDialect(dialect, logger, connection).migrate();
+
+            for (String query : getPreparedQueries()) {
+                statements.put(query, connection.prepareStatement(query));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        lock.lock();
+        try {
+            return connection != null && !connection.isClosed();
+        } catch (SQLException e) {
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (connection != null && !connection.isClosed()) {
+                for (PreparedStatement stmt : statements.values()) {
+                    stmt.close();
+                }
+                statements.clear();
+                connection.close();
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error closing database connection!", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "SQLite (" + databasePath + ")";
+    }
+
+    @Override
+    protected Session openSession() throws SQLException {
+        lock.lock();
+        boolean open = false;
+        try {
+            open = connection != null && !connection.isClosed();
+        } finally {
+            if (!open) {
+                lock.unlock();
+            }
+        }
+        if (!open) {
+            throw new SQLException("The database is closed");
+        }
+        return session;
+    }
+
+    /**
+     * Apply the connection tuning from the database.sqlite section of the config and log the effective values.
+     */
+    private void applyPragmas() throws SQLException {
+        ConfigurationSection sqlite = config.getConfigurationSection("database.sqlite");
+
+        String journalMode = pragmaChoice(sqlite, "journal-mode", "WAL", JOURNAL_MODES);
+        String synchronous = pragmaChoice(sqlite, "synchronous", "NORMAL", SYNCHRONOUS_MODES);
+        String tempStore = pragmaChoice(sqlite, "temp-store", "MEMORY", TEMP_STORES);
+        long mmapSize = sqlite != null ? Math.max(0, sqlite.getLong("mmap-size", 268435456L)) : 268435456L;
+        long cacheSize = sqlite != null ? sqlite.getLong("cache-size", -16000L) : -16000L;
+
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA journal_mode = " + journalMode);
+            stmt.execute("PRAGMA synchronous = " + synchronous);
+            stmt.execute("PRAGMA temp_store = " + tempStore);
+            stmt.execute("PRAGMA mmap_size = " + mmapSize);
+            stmt.execute("PRAGMA cache_size = " + cacheSize);
+        }
+
+        logger.info("SQLite settings: journal_mode=" + readPragma("journal_mode") +
+                                ", synchronous=" + readPragma("synchronous") +
+                                ", temp_store=" + readPragma("temp_store") +
+                                ", mmap_size=" + readPragma("mmap_size") +
+                                ", cache_size=" + readPragma("cache_size"));
+    }
+
+    private String pragmaChoice(ConfigurationSection sqlite, String key, String defaultValue, Set<String> allowed) {
+        String value = sqlite != null ? sqlite.getString(key, defaultValue).toUpperCase(Locale.ROOT) : defaultValue;
+        if (!allowed.contains(value)) {
+            logger.warning("Invalid database.sqlite." + key + " '" + value + "', using " + defaultValue);
+            return defaultValue;
+        }
+        return value;
+    }
+
+    private String readPragma(String pragma) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA " + pragma)) {
+            return rs.next() ? rs.getString(1) : "?";
+        }
+    }
+
+    /**
+     * The one connection, held from {@link #openSession()} until closed. Statements stay prepared.
+     */
+    private class SharedSession implements Session {
+
+        @Override
+        public Connection connection() {
+            return connection;
+        }
+
+        @Override
+        public PreparedStatement statement(String query) throws SQLException {
+            PreparedStatement stmt = statements.get(query);
+            if (stmt == null) {
+                stmt = connection.prepareStatement(query);
+                statements.put(query, stmt);
+            }
+            return stmt;
+        }
+
+        @Override
+        public void close() {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.jellypudding.offlineStats.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes the stats_history table. When a day ends, each player's change since the last rollover is worked out
+ * against stats_history_baseline (their totals at that rollover) and appended in one transaction.
+ * Daily rows past the retention period are later combined into one row per calendar month.
+ * Only used by a {@link StatsStorage} while it holds a connection for the calling thread.
+ */
+class StatsHistory {
+
+    static final String ROLLOVER_STATE = "history_rollover";
+
+    private static final String SELECT_CHANGED = """
+        SELECT p.uuid,
+               COALESCE(p.kills, 0), COALESCE(p.deaths, 0), COALESCE(p.chat_messages, 0),
+               COALESCE(p.time_played, 0), COALESCE(p.positive_rep, 0), COALESCE(p.negative_rep, 0),
+               COALESCE(b.kills, 0), COALESCE(b.deaths, 0), COALESCE(b.chat_messages, 0),
+               COALESCE(b.time_played, 0), COALESCE(b.positive_rep, 0), COALESCE(b.negative_rep, 0)
+        FROM players p LEFT JOIN stats_history_baseline b ON b.uuid = p.uuid
+        WHERE b.uuid IS NULL
+           OR p.kills <> b.kills OR p.deaths <> b.deaths OR p.chat_messages <> b.chat_messages
+           OR p.time_played <> b.time_played OR p.positive_rep <> b.positive_rep OR p.negative_rep <> b.negative_rep
+    """;
+
+    private final ZoneId zone;
+    private final String insertHistory;
+    private final String upsertBaseline;
+    private final String selectState;
+    private final String upsertState;
+
+    StatsHistory(ZoneId zone, SqlDialect dialect) {
+        this.zone = zone;
+        this.insertHistory = dialect.upsert("stats_history",
+            List.of("uuid", "period_start"), List.of("days", "resolution", "data"));
+        this.upsertBaseline = dialect.upsert("stats_history_baseline",
+            List.of("uuid"), List.of("kills", "deaths", "chat_messages", "time_played", "positive_rep", "negative_rep"));
+        this.selectState = "SELECT " + dialect.quote("value") + " FROM plugin_state WHERE " + dialect.quote("key") + " = ?";
+        this.upsertState = dialect.upsert("plugin_state", List.of(dialect.quote("key")), List.of(dialect.quote("value")));
+    }
+
+    /**
+     * @return Start of the day history was last rolled over at, in epoch milliseconds
+     */
+    long getLastRollover(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(selectState)) {
+            stmt.setString(1, ROLLOVER_STATE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : startOfDay(LocalDate.now(zone));
+            }
+        }
+    }
+
+    long startOfDay(LocalDate day) {
+        return day.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Append every player's change since the last rollover as one row for the period, and move the baseline on.
+     * @param periodStart Start of the period being closed, i.e. the last rollover
+     * @param periodEnd Start of today, which becomes the new last rollover
+     * @param days Number of days the period covers
+     * @return Number of players whose stats changed
+     */
+    int rollOver(Connection connection, long periodStart, long periodEnd, int days) throws SQLException {
+        List<ChangedPlayer> changed = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(SELECT_CHANGED)) {
+            while (rs.next()) {
+                long[] totals = new long[HistoryCodec.STAT_COUNT];
+                long[] deltas = new long[HistoryCodec.STAT_COUNT];
+                for (int i = 0; i < HistoryCodec.STAT_COUNT; i++) {
+                    totals[i] = rs.getLong(2 + i);
+                    deltas[i] = totals[i] - rs.getLong(2 + HistoryCodec.STAT_COUNT + i);
+                }
+                changed.add(new ChangedPlayer(rs.getString(1), totals, deltas));
+            }
+        }
+
+        int written = 0;
+        connection.setAutoCommit(false);
+        try (PreparedStatement insertHistory = connection.prepareStatement(this.insertHistory);
+             PreparedStatement upsertBaseline = connection.prepareStatement(this.upsertBaseline);
+             PreparedStatement updateState = connection.prepareStatement(upsertState)) {
+            for (ChangedPlayer player : changed) {
+                if (!isZero(player.deltas())) {
+                    insertHistory.setString(1, player.uuid());
+                    insertHistory.setLong(2, periodStart);
+                    insertHistory.setInt(3, days);
+                    insertHistory.setString(4, "day");
+                    insertHistory.setBytes(5, HistoryCodec.encode(player.deltas()));
+                    insertHistory.addBatch();
+                    written++;
+                }
+
+                upsertBaseline.setString(1, player.uuid());
+                for (int i = 0; i < HistoryCodec.STAT_COUNT; i++) {
+                    upsertBaseline.setLong(2 + i, player.totals()[i]);
+                }
+                upsertBaseline.addBatch();
+            }
+            insertHistory.executeBatch();
+            upsertBaseline.executeBatch();
+
+            updateState.setString(1, ROLLOVER_STATE);
+            updateState.setLong(2, periodEnd);
+            updateState.executeUpdate();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        return written;
+    }
+
+    /**
+     * Replay recent history: every daily row starting at or after the given time, attributed to the middle of its period,
+     * then optionally the current day so far (each player's totals against their baseline), attributed to now.
+     */
+    void replay(Connection connection, long since, boolean includeToday, long now, ChangeConsumer consumer) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT uuid, period_start, days, data FROM stats_history WHERE resolution = 'day' AND period_start >= ?")) {
+            stmt.setLong(1, since);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    long middle = rs.getLong(2) + rs.getInt(3) * 12 * 60 * 60 * 1000L;
+                    consumer.accept(UUID.fromString(rs.getString(1)), Math.min(middle, now), HistoryCodec.decode(rs.getBytes(4)));
+                }
+            }
+        }
+        if (!includeToday) {
+            return;
+        }
+
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(SELECT_CHANGED)) {
+            while (rs.next()) {
+                long[] deltas = new long[HistoryCodec.STAT_COUNT];
+                for (int i = 0; i < HistoryCodec.STAT_COUNT; i++) {
+                    deltas[i] = rs.getLong(2 + i) - rs.getLong(2 + HistoryCodec.STAT_COUNT + i);
+                }
+                consumer.accept(UUID.fromString(rs.getString(1)), now, deltas);
+            }
+        }
+    }
+
+    /**
+     * Combine daily rows that started before the cutoff into one row per player and calendar month.
+     * @param cutoff Start of a month; only whole months before it are combined
+     * @return Number of daily rows combined
+     */
+    int downsample(Connection connection, long cutoff) throws SQLException {
+        Map<MonthKey, long[]> months = new LinkedHashMap<>();
+        Map<MonthKey, Integer> monthDays = new LinkedHashMap<>();
+        int rows = 0;
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT uuid, period_start, days, data FROM stats_history WHERE resolution = 'day' AND period_start < ?")) {
+            stmt.setLong(1, cutoff);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    LocalDate day = Instant.ofEpochMilli(rs.getLong(2)).atZone(zone).toLocalDate();
+                    MonthKey key = new MonthKey(rs.getString(1), startOfDay(day.withDayOfMonth(1)));
+                    HistoryCodec.add(months.computeIfAbsent(key, k -> new long[HistoryCodec.STAT_COUNT]), HistoryCodec.decode(rs.getBytes(4)));
+                    monthDays.merge(key, rs.getInt(3), Integer::sum);
+                    rows++;
+                }
+            }
+        }
+        if (rows == 0) {
+            return 0;
+        }
+
+        connection.setAutoCommit(false);
+        try (PreparedStatement selectMonth = connection.prepareStatement(
+                 "SELECT days, data FROM stats_history WHERE uuid = ? AND period_start = ? AND resolution = 'month'");
+             PreparedStatement deleteDays = connection.prepareStatement(
+                 "DELETE FROM stats_history WHERE resolution = 'day' AND period_start < ?");
+             PreparedStatement insertMonth = connection.prepareStatement(insertHistory)) {
+            for (Map.Entry<MonthKey, long[]> month : months.entrySet()) {
+                // The month may already be combined if the server was offline for a long time and this period's row is late.
+                selectMonth.setString(1, month.getKey().uuid());
+                selectMonth.setLong(2, month.getKey().monthStart());
+                try (ResultSet rs = selectMonth.executeQuery()) {
+                    if (rs.next()) {
+                        monthDays.merge(month.getKey(), rs.getInt(1), Integer::sum);
+                        HistoryCodec.add(month.getValue(), HistoryCodec.decode(rs.getBytes(2)));
+                    }
+                }
+            }
+
+            deleteDays.setLong(1, cutoff);
+            deleteDays.executeUpdate();
+
+            for (Map.Entry<MonthKey, long[]> month : months.entrySet()) {
+                insertMonth.setString(1, month.getKey().uuid());
+                insertMonth.setLong(2, month.getKey().monthStart());
+                insertMonth.setInt(3, monthDays.get(month.getKey()));
+                insertMonth.setString(4, "month");
+                insertMonth.setBytes(5, HistoryCodec.encode(month.getValue()));
+                insertMonth.addBatch();
+            }
+            insertMonth.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        return rows;
+    }
+
+    private static boolean isZero(long[] deltas) {
+        for (long delta : deltas) {
+            if (delta != 0) return false;
+        }
+        return true;
+    }
+
+    @FunctionalInterface
+    interface ChangeConsumer {
+        /**
+         * @param deltas Kills, deaths, chat messages, time played, positive rep and negative rep, in that order
+         */
+        void accept(UUID playerUuid, long at, long[] deltas);
+    }
+
+    private record ChangedPlayer(String uuid, long[] totals, long[] deltas) {}
+
+    private record MonthKey(String uuid, long monthStart) {}
+}
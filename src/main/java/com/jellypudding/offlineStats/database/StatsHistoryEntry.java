@@ -0,0 +1,19 @@
+package com.jellypudding.offlineStats.database;
+
+/**
+ * How much a player's stats changed over one period of their history.
+ * Recent periods are single days; older ones are combined into calendar months.
+ * A period can also cover several days if the server was offline when a day ended.
+ * @param periodStart Start of the period in epoch milliseconds (midnight in the server's time zone)
+ * @param days Number of days the period covers
+ * @param monthly Whether this is a whole month combined from daily entries
+ * @param timePlayed Milliseconds played during the period
+ */
+public record StatsHistoryEntry(long periodStart, int days, boolean monthly,
+                                long kills, long deaths, long chatMessages, long timePlayed,
+                                long positiveRep, long negativeRep) {
+
+    public long getNetRep() {
+        return positiveRep - negativeRep;
+    }
+}
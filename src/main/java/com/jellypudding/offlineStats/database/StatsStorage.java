@@ -0,0 +1,185 @@
+package com.jellypudding.offlineStats.database;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Where player rows, reputation, milestones and stats history are kept.
+ * {@link DatabaseManager} owns the caches, leaderboards and buffered increments; a storage only reads and writes rows.
+ * Implementations are safe to call from several threads at once; writes that span several statements are atomic.
+ */
+interface StatsStorage {
+
+    /**
+     * Create the storage selected by database.type in the config. An unknown type falls back to SQLite.
+     * @param dataFolder Folder holding offlinestats.db when SQLite is used
+     * @param zone Time zone days of stats history start in
+     */
+    static StatsStorage create(Logger logger, File dataFolder, ConfigurationSection config, ZoneId zone) {
+        String type = config.getString("database.type", "sqlite").toLowerCase(Locale.ROOT);
+        switch (type) {
+            case "mysql":
+            case "mariadb":
+                return new PooledStatsStorage(logger, config, type, zone);
+            case "sqlite":
+                break;
+            default:
+                logger.warning("Invalid database.type '" + type + "', using sqlite");
+        }
+        return new SqliteStatsStorage(logger, dataFolder, config, zone);
+    }
+
+    /**
+     * Connect and bring the schema up to date.
+     */
+    void open() throws SQLException;
+
+    boolean isOpen();
+
+    void close();
+
+    /**
+     * @return A short description for start-up logging, e.g. the database file or server
+     */
+    String getDescription();
+
+    /**
+     * Read every player, least recently seen first.
+     */
+    void forEachPlayer(Consumer<CachedPlayerStats> consumer) throws SQLException;
+
+    /**
+     * @return The player's stored name, or null if they have never joined
+     */
+    String findUsername(UUID playerUuid) throws SQLException;
+
+    void insertPlayer(UUID playerUuid, String username, long now) throws SQLException;
+
+    /**
+     * Record a returning player's name and start their session.
+     */
+    void updatePlayerJoin(UUID playerUuid, String username, long now) throws SQLException;
+
+    /**
+     * Add the session to the player's time played and end it.
+     */
+    void updatePlayerQuit(UUID playerUuid, long now) throws SQLException;
+
+    /**
+     * Add buffered kills, deaths and chat messages for many players in one transaction.
+     */
+    void addStats(Map<UUID, PendingStatsBuffer.Delta> deltas) throws SQLException;
+
+    /**
+     * Fold the time played so far into time_played for players in a session, restarting their sessions at now.
+     */
+    void checkpointSessions(List<UUID> playerUuids, long now) throws SQLException;
+
+    /**
+     * @return The player's row, or null if they have never joined
+     */
+    CachedPlayerStats loadPlayer(UUID playerUuid) throws SQLException;
+
+    /**
+     * @return The rows of the players that exist, in no particular order
+     */
+    List<CachedPlayerStats> loadPlayers(List<UUID> playerUuids) throws SQLException;
+
+    /**
+     * @return Reputation the player has given, keyed by receiver
+     */
+    Map<UUID, RepRecord> loadRepRecords(UUID giverUuid) throws SQLException;
+
+    /**
+     * Change the receiver's reputation and record the giver's choice in one transaction.
+     * Reputation never drops below zero.
+     */
+    void recordReputation(UUID giverUuid, UUID receiverUuid, String repType, int positiveDelta, int negativeDelta, long now) throws SQLException;
+
+    boolean hasMilestone(UUID playerUuid, String milestoneType, int milestoneValue) throws SQLException;
+
+    /**
+     * @return Achieved milestone values keyed by milestone type
+     */
+    Map<String, List<Integer>> loadMilestones(UUID playerUuid) throws SQLException;
+
+    void addMilestone(UUID playerUuid, String milestoneType, int milestoneValue, long now) throws SQLException;
+
+    /**
+     * @return Start of the day stats history was last rolled over at, in epoch milliseconds
+     */
+    long getLastHistoryRollover() throws SQLException;
+
+    /**
+     * Record every player's change since the last rollover as one row for the period.
+     * @return Number of players whose stats changed
+     */
+    int rollOverHistory(long periodStart, long periodEnd, int days) throws SQLException;
+
+    /**
+     * Combine daily history rows that started before the cutoff into one row per player and month.
+     * @return Number of daily rows combined
+     */
+    int downsampleHistory(long cutoff) throws SQLException;
+
+    /**
+     * Feed daily history since the given time, then optionally the current day so far, to the consumer.
+     */
+    void replayHistory(long since, boolean includeToday, long now, StatsHistory.ChangeConsumer consumer) throws SQLException;
+
+    /**
+     * @return History periods starting in [from, to), oldest first
+     */
+    List<StatsHistoryEntry> loadHistory(UUID playerUuid, long from, long to) throws SQLException;
+
+    /**
+     * @return The earliest first_seen of any player in epoch milliseconds, or 0 if there are no players
+     */
+    long getEarliestFirstSeen() throws SQLException;
+
+    /**
+     * Add imported stats to the players' rows, creating missing ones, in one transaction. The history baselines
+     * move by the same amounts, so the next rollover does not count imported stats as that day's change.
+     */
+    void importPlayers(List<ImportedPlayer> players) throws SQLException;
+
+    /**
+     * @return The random id this database is known by when servers' counters are merged
+     */
+    long getNodeId() throws SQLException;
+
+    /**
+     * Write this node's counters and every entry merged from other nodes to a node file, replacing it.
+     * @return Number of entries written
+     */
+    int exportNodeCounters(long nodeId, Path file) throws SQLException;
+
+    /**
+     * Merge the other nodes' entries in a node file, keeping the larger of each stored and incoming counter.
+     * @return Number of entries read from the file
+     */
+    int mergeNodeCounters(long nodeId, Path file) throws SQLException;
+
+    /**
+     * @param column The counter column to rank by
+     * @return Players by their total over every node, highest first
+     */
+    List<NetworkLeaderboardEntry> loadNetworkLeaderboard(long nodeId, String column, int offset, int limit) throws SQLException;
+
+    /**
+     * @return Number of players with a network total above zero for the counter column
+     */
+    int countNetworkLeaderboard(long nodeId, String column) throws SQLException;
+
+    record RepRecord(String repType, long lastRepTime) {}
+}
@@ -0,0 +1,61 @@
+package com.jellypudding.offlineStats.importer;
+
+import java.util.Arrays;
+
+/**
+ * The events parsed from one log file, in the order they were logged. Years of logs hold millions of chat lines,
+ * so events are kept in parallel arrays rather than one object each; names are interned per file by the parser.
+ * Not thread-safe; each file is parsed by one thread and only read once parsing has finished.
+ */
+final class LogEvents {
+
+    static final byte UUID = 1;
+    static final byte JOIN = 2;
+    static final byte LEAVE = 3;
+    static final byte DEATH = 4;
+    // A death with a killer; name is the victim and other the killer.
+    static final byte KILL = 5;
+    static final byte CHAT = 6;
+
+    private long[] times = new long[1024];
+    private byte[] types = new byte[1024];
+    private String[] names = new String[1024];
+    // The UUID for UUID events and the killer for KILL events, otherwise null.
+    private String[] others = new String[1024];
+    private int size;
+
+    void add(long time, byte type, String name, String other) {
+        if (size == times.length) {
+            int capacity = size * 2;
+            times = Arrays.copyOf(times, capacity);
+            types = Arrays.copyOf(types, capacity);
+            names = Arrays.copyOf(names, capacity);
+            others = Arrays.copyOf(others, capacity);
+        }
+        times[size] = time;
+        types[size] = type;
+        names[size] = name;
+        others[size] = other;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long time(int index) {
+        return times[index];
+    }
+
+    byte type(int index) {
+        return types[index];
+    }
+
+    String name(int index) {
+        return names[index];
+    }
+
+    String other(int index) {
+        return others[index];
+    }
+}
@@ -0,0 +1,229 @@
+package com.jellypudding.offlineStats.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Parses one server log file, plain or gzipped, into {@link LogEvents}. The file is decompressed and decoded as a
+ * stream, so memory does not grow with its size. Lines look like "[12:34:56] [Server thread/INFO]: message"; the
+ * date comes from the file name (e.g. 2024-01-31-1.log.gz), or its modification time for latest.log, and moves
+ * on a day whenever the time of day jumps back past midnight.
+ * Recognises the same events as log_parser.py. Death messages are matched at the start of the message, where
+ * the server logs them, so each line is tested against one combined pattern instead of one pattern per message.
+ */
+final class LogFileParser {
+
+    private static final int BUFFER_SIZE = 65536;
+    // Lines counted locally and added to the shared counter in batches.
+    private static final int LINE_COUNT_BATCH = 4096;
+    private static final long HALF_DAY_SECONDS = 12 * 60 * 60;
+
+    private static final Pattern FILE_DATE = Pattern.compile("(\\d{4}-\\d{2}-\\d{2})");
+    private static final String NAME = "(\\.?\\w+)";
+    private static final Pattern CHAT = Pattern.compile("(?:\\[Not Secure\\] )?<" + NAME + "> ");
+    private static final Pattern UUID_LOOKUP = Pattern.compile("UUID of player " + NAME + " is ([\\w-]+)");
+    // Bedrock players joining through Geyser/Floodgate have names starting with ".".
+    private static final Pattern FLOODGATE_UUID = Pattern.compile(
+        "\\[floodgate\\] Floodgate player logged in as (\\.\\w+) joined \\(UUID: ([\\w-]+)\\)");
+    private static final Pattern JOIN = Pattern.compile(NAME + " joined the game");
+    private static final Pattern LEAVE = Pattern.compile(NAME + " left the game");
+    // Deaths that name a killer. Mobs are named too; they never match a player's UUID, so only the death counts.
+    private static final List<Pattern> KILLS = List.of(
+        Pattern.compile(NAME + " was (?:slain|shot|blown up|fireballed|impaled|destroyed|pummeled|frozen to death|squashed) by (?:a skull from )?" + NAME),
+        Pattern.compile(NAME + " was killed by " + NAME + " using magic")
+    );
+    private static final Pattern DEATH = Pattern.compile(NAME + " (?:" + String.join("|",
+        "was pricked to death", "drowned", "died", "experienced kinetic energy", "blew up", "was blown up by",
+        "was killed", "hit the ground too hard", "fell ", "was doomed to fall", "was impaled", "was squashed by",
+        "was skewered by", "went up in flames", "burned to death", "was burned to a crisp", "went off with a bang",
+        "tried to swim in lava", "was struck by lightning", "discovered the floor was lava",
+        "walked into the danger zone", "froze to death", "was frozen to death", "was slain by", "was stung to death",
+        "was obliterated by", "was shot by", "was pummeled by", "was fireballed by", "starved to death",
+        "suffocated in a wall", "was squished too much", "left the confines of this world", "was poked to death",
+        "was destroyed by", "didn't want to live", "withered away"
+    ) + ")");
+
+    private final Path file;
+    private final ZoneId zone;
+    private final LogEvents events = new LogEvents();
+    private final Map<String, String> interned = new HashMap<>();
+
+    LogFileParser(Path file, ZoneId zone) {
+        this.file = file;
+        this.zone = zone;
+    }
+
+    /**
+     * Read the whole file. If reading fails part-way, the events parsed so far stay in {@link #getEvents()}.
+     * @param lines Incremented with the number of lines read
+     */
+    void parse(LongAdder lines) throws IOException {
+        LocalDate date = fileDate();
+        long dayStart = date.atStartOfDay(zone).toInstant().toEpochMilli();
+        int previousSecond = -1;
+        int counted = 0;
+
+        try (BufferedReader reader = open()) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (++counted == LINE_COUNT_BATCH) {
+                    lines.add(counted);
+                    counted = 0;
+                }
+
+                int second = secondOfDay(line);
+                if (second < 0) {
+                    continue;
+                }
+                int messageStart = line.indexOf("]: ", 10);
+                if (messageStart < 0) {
+                    continue;
+                }
+
+                if (previousSecond - second > HALF_DAY_SECONDS) {
+                    date = date.plusDays(1);
+                    dayStart = date.atStartOfDay(zone).toInstant().toEpochMilli();
+                }
+                previousSecond = second;
+
+                parseMessage(dayStart + second * 1000L, line.substring(messageStart + 3));
+            }
+        } finally {
+            lines.add(counted);
+        }
+    }
+
+    LogEvents getEvents() {
+        return events;
+    }
+
+    private void parseMessage(long time, String message) {
+        Matcher matcher;
+        if (message.startsWith("<") || message.startsWith("[Not Secure] <")) {
+            matcher = CHAT.matcher(message);
+            if (matcher.lookingAt()) {
+                events.add(time, LogEvents.CHAT, intern(matcher.group(1)), null);
+            }
+            return;
+        }
+
+        if (message.contains("UUID of player ")) {
+            matcher = UUID_LOOKUP.matcher(message);
+            if (matcher.find()) {
+                events.add(time, LogEvents.UUID, intern(matcher.group(1)), intern(matcher.group(2)));
+            }
+            return;
+        }
+
+        if (message.startsWith("[floodgate] Floodgate player logged in as")) {
+            matcher = FLOODGATE_UUID.matcher(message);
+            if (matcher.find()) {
+                events.add(time, LogEvents.UUID, intern(matcher.group(1)), intern(matcher.group(2)));
+            }
+            return;
+        }
+
+        if (message.endsWith(" joined the game")) {
+            matcher = JOIN.matcher(message);
+            if (matcher.find()) {
+                events.add(time, LogEvents.JOIN, intern(matcher.group(1)), null);
+            }
+            return;
+        }
+
+        if (message.endsWith(" left the game")) {
+            matcher = LEAVE.matcher(message);
+            if (matcher.find()) {
+                events.add(time, LogEvents.LEAVE, intern(matcher.group(1)), null);
+            }
+            return;
+        }
+
+        for (Pattern kill : KILLS) {
+            matcher = kill.matcher(message);
+            if (matcher.lookingAt()) {
+                events.add(time, LogEvents.KILL, intern(matcher.group(1)), intern(matcher.group(2)));
+                return;
+            }
+        }
+
+        matcher = DEATH.matcher(message);
+        if (matcher.lookingAt()) {
+            events.add(time, LogEvents.DEATH, intern(matcher.group(1)), null);
+        }
+    }
+
+    private BufferedReader open() throws IOException {
+        InputStream in = Files.newInputStream(file);
+        try {
+            if (file.getFileName().toString().endsWith(".gz")) {
+                in = new GZIPInputStream(in, BUFFER_SIZE);
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        // Old logs can contain invalid UTF-8; skip it rather than fail the file.
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.IGNORE)
+            .onUnmappableCharacter(CodingErrorAction.IGNORE);
+        return new BufferedReader(new InputStreamReader(in, decoder), BUFFER_SIZE);
+    }
+
+    private LocalDate fileDate() throws IOException {
+        Matcher matcher = FILE_DATE.matcher(file.getFileName().toString());
+        if (matcher.find()) {
+            return LocalDate.parse(matcher.group(1));
+        }
+        Instant modified = Files.getLastModifiedTime(file).toInstant();
+        return modified.atZone(zone).toLocalDate();
+    }
+
+    /**
+     * Read the "[HH:mm:ss" at the start of a line without a regex, as every line is checked.
+     * @return Seconds since midnight, or -1 if the line does not start with a time
+     */
+    private static int secondOfDay(String line) {
+        if (line.length() < 10 || line.charAt(0) != '[' || line.charAt(3) != ':' || line.charAt(6) != ':') {
+            return -1;
+        }
+        int hours = twoDigits(line, 1);
+        int minutes = twoDigits(line, 4);
+        int seconds = twoDigits(line, 7);
+        if (hours < 0 || minutes < 0 || seconds < 0) {
+            return -1;
+        }
+        return hours * 3600 + minutes * 60 + seconds;
+    }
+
+    private static int twoDigits(String line, int index) {
+        int tens = line.charAt(index) - '0';
+        int ones = line.charAt(index + 1) - '0';
+        if (tens < 0 || tens > 9 || ones < 0 || ones > 9) {
+            return -1;
+        }
+        return tens * 10 + ones;
+    }
+
+    private String intern(String value) {
+        String existing = interned.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+}
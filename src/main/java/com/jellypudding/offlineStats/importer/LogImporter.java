@@ -0,0 +1,315 @@
+package com.jellypudding.offlineStats.importer;
+
+import com.jellypudding.offlineStats.OfflineStats;
+import com.jellypudding.offlineStats.database.DatabaseManager;
+import com.jellypudding.offlineStats.database.ImportedPlayer;
+import org.bukkit.Bukkit;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Backfills player stats from old server logs, replacing the offline log_parser.py. Files are decompressed and parsed
+ * in parallel on a fork-join pool, their events are merged in timestamp order to pair joins with leaves, and the
+ * per-player totals are added to the database in large batches while the server keeps running.
+ * Log events from the earliest first seen time in the database onwards are left out, as the plugin (or an earlier
+ * import) has already counted them, so importing the same logs twice does not count them twice.
+ */
+public class LogImporter {
+
+    private static final long PROGRESS_INTERVAL_MS = 5000;
+
+    private final OfflineStats plugin;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public LogImporter(OfflineStats plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Start importing every .log and .log.gz file in a folder on a background thread.
+     * @param directory The folder holding the logs, e.g. the server's logs folder
+     * @param progress Receives progress and the outcome as chat-ready lines, from the import thread
+     * @return false if an import is already running
+     */
+    public boolean start(Path directory, Consumer<String> progress) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                run(directory, progress);
+            } catch (IOException | RuntimeException e) {
+                plugin.getLogger().log(Level.SEVERE, "Log import from " + directory + " failed", e);
+                progress.accept("Log import failed: " + e.getMessage());
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    private void run(Path directory, Consumer<String> progress) throws IOException {
+        List<Path> files = listLogFiles(directory);
+        if (files.isEmpty()) {
+            progress.accept("No .log or .log.gz files found in " + directory + ".");
+            return;
+        }
+
+        DatabaseManager databaseManager = plugin.getDatabaseManager();
+        long cutoff = databaseManager.getImportCutoff();
+        if (cutoff < 0) {
+            progress.accept("Log import failed: could not read the database. See the console for details.");
+            return;
+        }
+
+        long started = System.nanoTime();
+        LongAdder lines = new LongAdder();
+        List<LogEvents> parsed = parseAll(files, lines, started, progress);
+        long parseNanos = System.nanoTime() - started;
+        progress.accept("Parsed " + files.size() + " files, " + lines.sum() + " lines in " + formatSeconds(parseNanos) +
+                        " (" + linesPerSecond(lines.sum(), parseNanos) + " lines/s). Merging sessions...");
+
+        Map<UUID, PlayerTotals> totals = replay(parsed, cutoff);
+        if (totals.isEmpty()) {
+            progress.accept("Nothing to import" + (cutoff != Long.MAX_VALUE ? " from before " + Instant.ofEpochMilli(cutoff) : "") + ".");
+            return;
+        }
+
+        List<ImportedPlayer> players = new ArrayList<>(totals.size());
+        for (Map.Entry<UUID, PlayerTotals> entry : totals.entrySet()) {
+            players.add(entry.getValue().toImportedPlayer(entry.getKey()));
+        }
+        progress.accept("Writing stats for " + players.size() + " players...");
+
+        int batchSize = Math.max(1, plugin.getConfig().getInt("log-import.batch-size", 5000));
+        int written = databaseManager.importPlayers(players, batchSize);
+        long totalNanos = System.nanoTime() - started;
+
+        String summary = "Imported stats for " + written + " of " + players.size() + " players from " + files.size() +
+                         " files in " + formatSeconds(totalNanos) + " (" + linesPerSecond(lines.sum(), totalNanos) + " lines/s overall)" +
+                         (cutoff != Long.MAX_VALUE ? ", leaving out events from " + Instant.ofEpochMilli(cutoff) + " on" : "") + ".";
+        plugin.getLogger().info(summary);
+        progress.accept(summary);
+    }
+
+    private static List<Path> listLogFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.{log,log.gz}")) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort(null);
+        return files;
+    }
+
+    /**
+     * Parse every file on a fork-join pool, reporting throughput while waiting.
+     * A file that fails part-way keeps the events read before the failure, as log_parser.py did.
+     * @return Each file's events, in the same order as the files
+     */
+    private List<LogEvents> parseAll(List<Path> files, LongAdder lines, long started, Consumer<String> progress) {
+        int threads = plugin.getConfig().getInt("log-import.threads", 0);
+        if (threads <= 0) {
+            // Leave a core for the server thread.
+            threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        }
+
+        ZoneId zone = ZoneId.systemDefault();
+        AtomicInteger filesDone = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<LogEvents>> tasks = new ArrayList<>(files.size());
+            for (Path file : files) {
+                tasks.add(pool.submit(() -> {
+                    LogFileParser parser = new LogFileParser(file, zone);
+                    try {
+                        parser.parse(lines);
+                    } catch (IOException e) {
+                        plugin.getLogger().log(Level.WARNING, "Error reading " + file + "; keeping the events read before it", e);
+                    }
+                    filesDone.incrementAndGet();
+                    return parser.getEvents();
+                }));
+            }
+
+            while (!pool.awaitQuiescence(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                long elapsed = System.nanoTime() - started;
+                progress.accept("Parsed " + filesDone.get() + "/" + files.size() + " files, " + lines.sum() + " lines (" +
+                                linesPerSecond(lines.sum(), elapsed) + " lines/s)...");
+            }
+
+            List<LogEvents> parsed = new ArrayList<>(tasks.size());
+            for (ForkJoinTask<LogEvents> task : tasks) {
+                parsed.add(task.join());
+            }
+            return parsed;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Replay every file's events in timestamp order, as log_parser.py did one file at a time: UUID lookups map
+     * names to players, joins open sessions and leaves close them, and deaths and chat are credited by name.
+     * Files are each in order already, so they are merged with a priority queue over one cursor per file;
+     * ties go to the file that sorts first.
+     * @param cutoff Events at or after this time are left out; sessions still open then are dropped
+     */
+    private static Map<UUID, PlayerTotals> replay(List<LogEvents> parsed, long cutoff) {
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(Math.max(1, parsed.size()));
+        for (int i = 0; i < parsed.size(); i++) {
+            if (parsed.get(i).size() > 0) {
+                queue.add(new Cursor(parsed.get(i), i));
+            }
+        }
+
+        Map<String, UUID> uuidsByName = new HashMap<>();
+        Map<String, Session> sessions = new HashMap<>();
+        Map<UUID, PlayerTotals> totals = new HashMap<>();
+
+        while (!queue.isEmpty()) {
+            Cursor cursor = queue.poll();
+            LogEvents events = cursor.events;
+            int index = cursor.index;
+            long time = events.time(index);
+            if (time >= cutoff) {
+                // Every remaining event is at least this late.
+                break;
+            }
+
+            String name = events.name(index);
+            switch (events.type(index)) {
+                case LogEvents.UUID -> {
+                    UUID playerUuid;
+                    try {
+                        playerUuid = UUID.fromString(events.other(index));
+                    } catch (IllegalArgumentException e) {
+                        break;
+                    }
+                    uuidsByName.put(name, playerUuid);
+                    totals.computeIfAbsent(playerUuid, uuid -> new PlayerTotals(time)).seen(name, time);
+                }
+                case LogEvents.JOIN -> {
+                    UUID playerUuid = uuidsByName.get(name);
+                    if (playerUuid != null) {
+                        sessions.put(name, new Session(playerUuid, time));
+                        totals.get(playerUuid).seen(name, time);
+                    }
+                }
+                case LogEvents.LEAVE -> {
+                    Session session = sessions.remove(name);
+                    if (session != null) {
+                        PlayerTotals player = totals.get(session.playerUuid());
+                        player.timePlayed += Math.max(0, time - session.start());
+                        player.seen(name, time);
+                    }
+                }
+                case LogEvents.KILL -> {
+                    credit(totals, uuidsByName.get(name), player -> player.deaths++);
+                    credit(totals, uuidsByName.get(events.other(index)), player -> player.kills++);
+                }
+                case LogEvents.DEATH -> credit(totals, uuidsByName.get(name), player -> player.deaths++);
+                case LogEvents.CHAT -> credit(totals, uuidsByName.get(name), player -> player.chatMessages++);
+                default -> {
+                }
+            }
+
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+        }
+        return totals;
+    }
+
+    private static void credit(Map<UUID, PlayerTotals> totals, UUID playerUuid, Consumer<PlayerTotals> change) {
+        if (playerUuid != null) {
+            change.accept(totals.get(playerUuid));
+        }
+    }
+
+    private static String formatSeconds(long nanos) {
+        return String.format("%.1fs", nanos / 1_000_000_000.0);
+    }
+
+    private static long linesPerSecond(long lines, long nanos) {
+        return nanos > 0 ? lines * 1_000_000_000L / nanos : 0;
+    }
+
+    /**
+     * Position in one file's events, ordered by the time of its current event.
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+
+        private final LogEvents events;
+        private final int file;
+        private int index;
+
+        Cursor(LogEvents events, int file) {
+            this.events = events;
+            this.file = file;
+        }
+
+        boolean advance() {
+            return ++index < events.size();
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            int byTime = Long.compare(events.time(index), other.events.time(other.index));
+            return byTime != 0 ? byTime : Integer.compare(file, other.file);
+        }
+    }
+
+    private record Session(UUID playerUuid, long start) {}
+
+    private static final class PlayerTotals {
+
+        private String username;
+        private final long firstSeen;
+        private long lastSeen;
+        private long timePlayed;
+        private int kills;
+        private int deaths;
+        private int chatMessages;
+
+        PlayerTotals(long firstSeen) {
+            this.firstSeen = firstSeen;
+            this.lastSeen = firstSeen;
+        }
+
+        void seen(String name, long time) {
+            username = name;
+            lastSeen = Math.max(lastSeen, time);
+        }
+
+        ImportedPlayer toImportedPlayer(UUID playerUuid) {
+            return new ImportedPlayer(playerUuid, username, firstSeen, lastSeen, timePlayed, kills, deaths, chatMessages);
+        }
+    }
+}
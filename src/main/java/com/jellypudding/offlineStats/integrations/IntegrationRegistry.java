@@ -0,0 +1,294 @@
+package com.jellypudding.offlineStats.integrations;
+
+import net.kyori.adventure.text.format.TextColor;
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.server.PluginEnableEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.awt.Color;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Resolves the methods OfflineStats calls on other plugins once, as method handles bound to the plugin instance,
+ * and hands them out through typed adapters. Handles are resolved again whenever one of the plugins is enabled
+ * and dropped when it is disabled, so a plugin reloaded at runtime is picked up without a restart.
+ */
+public class IntegrationRegistry implements Listener {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private final Logger logger;
+
+    private volatile SimpleHome simpleHome;
+    private volatile SimpleLifesteal simpleLifesteal;
+    private volatile SimpleVote simpleVote;
+    private volatile DiscordRelay discordRelay;
+    private volatile ChromaTag chromaTag;
+
+    public IntegrationRegistry(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Resolve every integration whose plugin is installed. Called once on enable.
+     */
+    public void resolveAll() {
+        resolve("SimpleHome", "home slot rewards will be disabled");
+        resolve("SimpleLifesteal", "heart rewards will be disabled");
+        resolve("SimpleVote", "token rewards will be disabled");
+        resolve("DiscordRelay", "Discord announcements will be disabled");
+        resolve("ChromaTag", "player name colours will use defaults");
+    }
+
+    private void resolve(String pluginName, String missingEffect) {
+        Plugin target = Bukkit.getPluginManager().getPlugin(pluginName);
+        if (target == null) {
+            logger.warning(pluginName + " not found - " + missingEffect);
+            return;
+        }
+        if (!target.isEnabled()) {
+            // Resolved from onPluginEnable once it has finished enabling
+            logger.info(pluginName + " found; its integration will be enabled once it has loaded.");
+            return;
+        }
+        if (resolve(target)) {
+            logger.info(pluginName + " integration enabled!");
+        }
+    }
+
+    /**
+     * Resolve the handles for one plugin if it is an integration.
+     * @return true if the plugin is an integration and its handles were resolved
+     */
+    private boolean resolve(Plugin target) {
+        try {
+            switch (target.getName()) {
+                case "SimpleHome" -> simpleHome = new SimpleHome(target);
+                case "SimpleLifesteal" -> simpleLifesteal = new SimpleLifesteal(target);
+                case "SimpleVote" -> simpleVote = new SimpleVote(target);
+                case "DiscordRelay" -> discordRelay = new DiscordRelay(target);
+                case "ChromaTag" -> chromaTag = new ChromaTag(target);
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.log(Level.WARNING, "Failed to resolve " + target.getName() + " integration; it will be disabled", e);
+            clear(target.getName());
+            return false;
+        }
+    }
+
+    private boolean clear(String pluginName) {
+        switch (pluginName) {
+            case "SimpleHome" -> simpleHome = null;
+            case "SimpleLifesteal" -> simpleLifesteal = null;
+            case "SimpleVote" -> simpleVote = null;
+            case "DiscordRelay" -> discordRelay = null;
+            case "ChromaTag" -> chromaTag = null;
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginEnable(PluginEnableEvent event) {
+        if (resolve(event.getPlugin())) {
+            logger.info(event.getPlugin().getName() + " integration enabled!");
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginDisable(PluginDisableEvent event) {
+        if (clear(event.getPlugin().getName())) {
+            logger.info(event.getPlugin().getName() + " integration disabled.");
+        }
+    }
+
+    /**
+     * @return The SimpleHome adapter or null if SimpleHome is not available
+     */
+    public SimpleHome getSimpleHome() {
+        return available(simpleHome);
+    }
+
+    /**
+     * @return The SimpleLifesteal adapter or null if SimpleLifesteal is not available
+     */
+    public SimpleLifesteal getSimpleLifesteal() {
+        return available(simpleLifesteal);
+    }
+
+    /**
+     * @return The SimpleVote adapter or null if SimpleVote is not available
+     */
+    public SimpleVote getSimpleVote() {
+        return available(simpleVote);
+    }
+
+    /**
+     * @return The DiscordRelay adapter or null if DiscordRelay is not available
+     */
+    public DiscordRelay getDiscordRelay() {
+        return available(discordRelay);
+    }
+
+    /**
+     * @return The ChromaTag adapter or null if ChromaTag is not available
+     */
+    public ChromaTag getChromaTag() {
+        return available(chromaTag);
+    }
+
+    private static <T extends Integration> T available(T integration) {
+        return integration != null && integration.plugin.isEnabled() ? integration : null;
+    }
+
+    /**
+     * Rethrow whatever a method handle threw as an unchecked exception, leaving errors untouched.
+     */
+    private static RuntimeException rethrow(Plugin plugin, Throwable t) {
+        if (t instanceof Error error) throw error;
+        if (t instanceof RuntimeException runtime) return runtime;
+        return new IllegalStateException(plugin.getName() + " call failed: " + t.getMessage(), t);
+    }
+
+    private abstract static class Integration {
+        final Plugin plugin;
+
+        Integration(Plugin plugin) {
+            this.plugin = plugin;
+        }
+
+        /**
+         * Find a public method by name and parameter types, bind it to a receiver (null for static methods)
+         * and adapt it to the given type, so a differing return type is converted or dropped.
+         */
+        static MethodHandle find(Class<?> owner, Object receiver, String name, MethodType type) throws ReflectiveOperationException {
+            Method method = owner.getMethod(name, type.parameterArray());
+            MethodHandle handle = LOOKUP.unreflect(method);
+            if (receiver != null) {
+                handle = handle.bindTo(receiver);
+            }
+            return handle.asType(type);
+        }
+
+        MethodHandle bind(String name, MethodType type) throws ReflectiveOperationException {
+            return find(plugin.getClass(), plugin, name, type);
+        }
+    }
+
+    public static final class SimpleHome extends Integration {
+        private final MethodHandle increaseHomeLimit;
+
+        SimpleHome(Plugin plugin) throws ReflectiveOperationException {
+            super(plugin);
+            this.increaseHomeLimit = bind("increaseHomeLimit", MethodType.methodType(void.class, UUID.class));
+        }
+
+        public void increaseHomeLimit(UUID playerUuid) {
+            try {
+                increaseHomeLimit.invokeExact(playerUuid);
+            } catch (Throwable t) {
+                throw rethrow(plugin, t);
+            }
+        }
+    }
+
+    public static final class SimpleLifesteal extends Integration {
+        private final MethodHandle increasePlayerMaxHearts;
+
+        SimpleLifesteal(Plugin plugin) throws ReflectiveOperationException {
+            super(plugin);
+            this.increasePlayerMaxHearts = bind("increasePlayerMaxHearts", MethodType.methodType(void.class, UUID.class, int.class));
+        }
+
+        public void increasePlayerMaxHearts(UUID playerUuid, int hearts) {
+            try {
+                increasePlayerMaxHearts.invokeExact(playerUuid, hearts);
+            } catch (Throwable t) {
+                throw rethrow(plugin, t);
+            }
+        }
+    }
+
+    public static final class SimpleVote extends Integration {
+        private final MethodHandle addTokens;
+
+        SimpleVote(Plugin plugin) throws ReflectiveOperationException {
+            super(plugin);
+            // The token manager lives as long as the plugin, so bind straight to it.
+            Object tokenManager = plugin.getClass().getMethod("getTokenManager").invoke(plugin);
+            this.addTokens = find(tokenManager.getClass(), tokenManager, "addTokens", MethodType.methodType(void.class, UUID.class, int.class));
+        }
+
+        public void addTokens(UUID playerUuid, int tokens) {
+            try {
+                addTokens.invokeExact(playerUuid, tokens);
+            } catch (Throwable t) {
+                throw rethrow(plugin, t);
+            }
+        }
+    }
+
+    public static final class DiscordRelay extends Integration {
+        private final MethodHandle isReady;
+        private final MethodHandle sendFormattedMessage;
+
+        DiscordRelay(Plugin plugin) throws ReflectiveOperationException {
+            super(plugin);
+            Class<?> api = Class.forName("com.jellypudding.discordRelay.DiscordRelayAPI", true, plugin.getClass().getClassLoader());
+            this.isReady = find(api, null, "isReady", MethodType.methodType(boolean.class));
+            this.sendFormattedMessage = find(api, null, "sendFormattedMessage", MethodType.methodType(void.class, String.class, String.class, Color.class));
+        }
+
+        public boolean isReady() {
+            try {
+                return (boolean) isReady.invokeExact();
+            } catch (Throwable t) {
+                throw rethrow(plugin, t);
+            }
+        }
+
+        public void sendFormattedMessage(String title, String message, Color color) {
+            try {
+                sendFormattedMessage.invokeExact(title, message, color);
+            } catch (Throwable t) {
+                throw rethrow(plugin, t);
+            }
+        }
+    }
+
+    public static final class ChromaTag extends Integration {
+        private final MethodHandle getPlayerColor;
+
+        ChromaTag(Plugin plugin) throws ReflectiveOperationException {
+            super(plugin);
+            this.getPlayerColor = bind("getPlayerColor", MethodType.methodType(TextColor.class, UUID.class));
+        }
+
+        /**
+         * @return The player's chosen name colour or null if they have none
+         */
+        public TextColor getPlayerColor(UUID playerUuid) {
+            try {
+                return (TextColor) getPlayerColor.invokeExact(playerUuid);
+            } catch (Throwable t) {
+                throw rethrow(plugin, t);
+            }
+        }
+    }
+}
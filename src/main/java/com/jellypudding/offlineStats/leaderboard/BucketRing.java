@@ -0,0 +1,58 @@
+package com.jellypudding.offlineStats.leaderboard;
+
+import java.util.Arrays;
+
+/**
+ * Fixed number of consecutive time buckets for one counter. The bucket for time t lives in slot t % length
+ * and is reset when the ring moves past it, so adding is O(1) and a window sum reads at most length slots.
+ * Not thread-safe; {@link RollingLeaderboards} locks the owning player.
+ */
+class BucketRing {
+
+    private final long[] buckets;
+    // Newest bucket written, or Long.MIN_VALUE before the first write.
+    private long newest = Long.MIN_VALUE;
+
+    BucketRing(int length) {
+        this.buckets = new long[length];
+    }
+
+    void add(long bucket, long amount) {
+        int length = buckets.length;
+        if (newest == Long.MIN_VALUE || bucket - newest >= length) {
+            Arrays.fill(buckets, 0);
+            newest = bucket;
+        } else if (bucket > newest) {
+            for (long cleared = newest + 1; cleared <= bucket; cleared++) {
+                buckets[(int) Math.floorMod(cleared, length)] = 0;
+            }
+            newest = bucket;
+        } else if (newest - bucket >= length) {
+            // Older than anything the ring still holds
+            return;
+        }
+        buckets[(int) Math.floorMod(bucket, length)] += amount;
+    }
+
+    /**
+     * Sum the buckets from current - length + 1 up to and including current.
+     */
+    long sum(long current) {
+        if (newest == Long.MIN_VALUE) {
+            return 0;
+        }
+        long from = Math.max(current - buckets.length + 1, newest - buckets.length + 1);
+        long total = 0;
+        for (long bucket = from; bucket <= newest && bucket <= current; bucket++) {
+            total += buckets[(int) Math.floorMod(bucket, buckets.length)];
+        }
+        return total;
+    }
+
+    /**
+     * Whether every bucket still held is older than the given bucket's window.
+     */
+    boolean isIdle(long current) {
+        return newest == Long.MIN_VALUE || current - newest >= buckets.length;
+    }
+}
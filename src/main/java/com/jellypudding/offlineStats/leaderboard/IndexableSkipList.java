@@ -0,0 +1,172 @@
+package com.jellypudding.offlineStats.leaderboard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sorted skip list where every link also records how many elements it skips over.
+ * That makes "how many elements come before x" and "element at position i" O(log n) as well as insert and remove.
+ * Not thread-safe; {@link RankedIndex} guards access.
+ */
+final class IndexableSkipList<E> {
+
+    private static final int MAX_LEVEL = 32;
+
+    private final Comparator<? super E> comparator;
+    private final Node<E> head = new Node<>(null, MAX_LEVEL);
+    private int level = 1;
+    private int size;
+
+    IndexableSkipList(Comparator<? super E> comparator) {
+        this.comparator = comparator;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            head.next[i] = null;
+            head.span[i] = 0;
+        }
+        level = 1;
+        size = 0;
+    }
+
+    void add(E value) {
+        @SuppressWarnings("unchecked")
+        Node<E>[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+
+        Node<E> node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (node.next[i] != null && comparator.compare(node.next[i].value, value) < 0) {
+                rank[i] += node.span[i];
+                node = node.next[i];
+            }
+            update[i] = node;
+        }
+
+        int newLevel = randomLevel();
+        if (newLevel > level) {
+            for (int i = level; i < newLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = size;
+            }
+            level = newLevel;
+        }
+
+        Node<E> inserted = new Node<>(value, newLevel);
+        for (int i = 0; i < newLevel; i++) {
+            inserted.next[i] = update[i].next[i];
+            update[i].next[i] = inserted;
+            inserted.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+        for (int i = newLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        size++;
+    }
+
+    boolean remove(E value) {
+        @SuppressWarnings("unchecked")
+        Node<E>[] update = new Node[MAX_LEVEL];
+
+        Node<E> node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && comparator.compare(node.next[i].value, value) < 0) {
+                node = node.next[i];
+            }
+            update[i] = node;
+        }
+
+        Node<E> target = node.next[0];
+        if (target == null || comparator.compare(target.value, value) != 0) {
+            return false;
+        }
+
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == target) {
+                update[i].span[i] += target.span[i] - 1;
+                update[i].next[i] = target.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Count the elements that sort strictly before the given value.
+     * For an element in the list this is its 0-based position.
+     */
+    int countBefore(E value) {
+        int rank = 0;
+        Node<E> node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && comparator.compare(node.next[i].value, value) < 0) {
+                rank += node.span[i];
+                node = node.next[i];
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Get up to count elements in order starting at the 0-based position from.
+     */
+    List<E> range(int from, int count) {
+        if (from < 0 || from >= size || count <= 0) {
+            return new ArrayList<>(0);
+        }
+
+        int target = from + 1;
+        int traversed = 0;
+        Node<E> node = head;
+        for (int i = level - 1; i >= 0 && traversed != target; i--) {
+            while (node.next[i] != null && traversed + node.span[i] <= target) {
+                traversed += node.span[i];
+                node = node.next[i];
+            }
+        }
+
+        List<E> result = new ArrayList<>(Math.min(count, size - from));
+        while (node != null && result.size() < count) {
+            result.add(node.value);
+            node = node.next[0];
+        }
+        return result;
+    }
+
+    private static int randomLevel() {
+        int newLevel = 1;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (newLevel < MAX_LEVEL && random.nextInt(4) == 0) {
+            newLevel++;
+        }
+        return newLevel;
+    }
+
+    private static final class Node<E> {
+        final E value;
+        final Node<E>[] next;
+        final int[] span;
+
+        @SuppressWarnings("unchecked")
+        Node(E value, int level) {
+            this.value = value;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+}
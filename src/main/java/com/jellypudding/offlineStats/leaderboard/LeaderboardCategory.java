@@ -0,0 +1,49 @@
+package com.jellypudding.offlineStats.leaderboard;
+
+import java.util.Arrays;
+import java.util.List;
+
+public enum LeaderboardCategory {
+    TIMEPLAYED("timeplayed", "Time Played"),
+    KILLS("kills", "Kills"),
+    DEATHS("deaths", "Deaths"),
+    CHATTER("chatter", "Chat Messages"),
+    LOVED("loved", "Highest Reputation"),
+    HATED("hated", "Lowest Reputation");
+
+    private static final List<String> IDS = Arrays.stream(values()).map(LeaderboardCategory::getId).toList();
+
+    private final String id;
+    private final String displayName;
+
+    LeaderboardCategory(String id, String displayName) {
+        this.id = id;
+        this.displayName = displayName;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Look up a category by its command name
+     * @param id The category name, e.g. "kills"
+     * @return The category or null if there is no such category
+     */
+    public static LeaderboardCategory fromId(String id) {
+        for (LeaderboardCategory category : values()) {
+            if (category.id.equalsIgnoreCase(id)) {
+                return category;
+            }
+        }
+        return null;
+    }
+
+    public static List<String> ids() {
+        return IDS;
+    }
+}
@@ -0,0 +1,251 @@
+package com.jellypudding.offlineStats.leaderboard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory rankings for every leaderboard category. Seeded once from the players table and then kept
+ * current by the same code paths that change the underlying counters, so no query ever has to sort the table.
+ * Time played is stored as the committed total; live session time for online players is folded in at query time.
+ */
+public class LeaderboardIndex {
+
+    private final RankedIndex timePlayed = new RankedIndex();
+    private final RankedIndex kills = new RankedIndex();
+    private final RankedIndex deaths = new RankedIndex();
+    private final RankedIndex chatMessages = new RankedIndex();
+    private final RankedIndex netRep = new RankedIndex();
+
+    // Session start (milliseconds) of every player whose time played is still accruing.
+    private final Map<UUID, Long> sessionStarts = new ConcurrentHashMap<>();
+
+    public void seed(UUID playerUuid, long timePlayedMillis, long sessionStart, int kills, int deaths,
+                     int chatMessages, int positiveRep, int negativeRep) {
+        this.timePlayed.set(playerUuid, timePlayedMillis);
+        this.kills.set(playerUuid, kills);
+        this.deaths.set(playerUuid, deaths);
+        this.chatMessages.set(playerUuid, chatMessages);
+        this.netRep.set(playerUuid, positiveRep - negativeRep);
+        if (sessionStart > 0) {
+            sessionStarts.put(playerUuid, sessionStart);
+        } else {
+            sessionStarts.remove(playerUuid);
+        }
+    }
+
+    public void clear() {
+        timePlayed.clear();
+        kills.clear();
+        deaths.clear();
+        chatMessages.clear();
+        netRep.clear();
+        sessionStarts.clear();
+    }
+
+    public void addKill(UUID playerUuid) {
+        kills.add(playerUuid, 1);
+    }
+
+    public void addDeath(UUID playerUuid) {
+        deaths.add(playerUuid, 1);
+    }
+
+    public void addChatMessage(UUID playerUuid) {
+        chatMessages.add(playerUuid, 1);
+    }
+
+    public void addNetRep(UUID playerUuid, int delta) {
+        netRep.add(playerUuid, delta);
+    }
+
+    /**
+     * Add counters imported from outside the plugin, e.g. old server logs. Players not ranked yet are added.
+     */
+    public void addImported(UUID playerUuid, long timePlayedMillis, int kills, int deaths, int chatMessages) {
+        this.timePlayed.add(playerUuid, timePlayedMillis);
+        this.kills.add(playerUuid, kills);
+        this.deaths.add(playerUuid, deaths);
+        this.chatMessages.add(playerUuid, chatMessages);
+        this.netRep.add(playerUuid, 0);
+    }
+
+    public boolean contains(UUID playerUuid) {
+        return kills.contains(playerUuid);
+    }
+
+    public void startSession(UUID playerUuid, long sessionStart) {
+        sessionStarts.put(playerUuid, sessionStart);
+    }
+
+    /**
+     * Fold a finished session into the committed time played.
+     */
+    public void endSession(UUID playerUuid, long sessionEnd) {
+        Long sessionStart = sessionStarts.remove(playerUuid);
+        if (sessionStart != null) {
+            timePlayed.add(playerUuid, sessionEnd - sessionStart);
+        }
+    }
+
+    public int size() {
+        return kills.size();
+    }
+
+    /**
+     * Get the number of ranked players in a category.
+     */
+    public int size(LeaderboardCategory category) {
+        return indexFor(category).size();
+    }
+
+    /**
+     * Get the top players for a category
+     * @param category The leaderboard category
+     * @param limit Maximum number of players to return
+     * @return Player UUIDs in rank order
+     */
+    public List<UUID> getTop(LeaderboardCategory category, int limit) {
+        return getPage(category, 0, limit);
+    }
+
+    /**
+     * Get a slice of a category's ranking
+     * @param category The leaderboard category
+     * @param offset Number of players to skip
+     * @param limit Maximum number of players to return
+     * @return Player UUIDs in rank order
+     */
+    public List<UUID> getPage(LeaderboardCategory category, int offset, int limit) {
+        if (offset < 0 || limit <= 0) {
+            return new ArrayList<>(0);
+        }
+        if (category == LeaderboardCategory.TIMEPLAYED) {
+            return getTimePlayedPage(offset, limit);
+        }
+
+        List<UUID> result = new ArrayList<>(limit);
+        for (RankedIndex.Entry entry : indexFor(category).page(offset, limit, category == LeaderboardCategory.HATED)) {
+            result.add(entry.uuid());
+        }
+        return result;
+    }
+
+    /**
+     * Get a player's position in a category
+     * @param category The leaderboard category
+     * @param playerUuid The player to look up
+     * @return The 1-based rank or -1 if the player has never been seen
+     */
+    public int getRank(LeaderboardCategory category, UUID playerUuid) {
+        if (category == LeaderboardCategory.TIMEPLAYED) {
+            if (!timePlayed.contains(playerUuid)) {
+                return -1;
+            }
+            long now = System.currentTimeMillis();
+            return getLivePosition(playerUuid, getLiveTimePlayed(playerUuid, now), liveSessions(now)) + 1;
+        }
+
+        RankedIndex index = indexFor(category);
+        int rank = index.rank(playerUuid);
+        if (rank < 0 || category != LeaderboardCategory.HATED) {
+            return rank;
+        }
+        return index.size() - rank + 1;
+    }
+
+    /*
+     * Only players with an open session have a live total that differs from the committed one, and a live total
+     * can only be higher. So an offline player's live position is within one session count of their committed
+     * position, and a page only needs to look at that widened committed window plus the players in session.
+     */
+    private List<UUID> getTimePlayedPage(int offset, int limit) {
+        long now = System.currentTimeMillis();
+        Map<UUID, Long> live = liveSessions(now);
+
+        Set<UUID> candidates = new HashSet<>(live.keySet());
+        int windowStart = Math.max(0, offset - live.size());
+        for (RankedIndex.Entry entry : timePlayed.page(windowStart, offset - windowStart + limit + live.size(), false)) {
+            candidates.add(entry.uuid());
+        }
+
+        List<LivePosition> positioned = new ArrayList<>(candidates.size());
+        for (UUID playerUuid : candidates) {
+            long score = live.containsKey(playerUuid) ? live.get(playerUuid) : timePlayed.getScore(playerUuid);
+            int position = getLivePosition(playerUuid, score, live);
+            if (position >= offset && position < offset + limit) {
+                positioned.add(new LivePosition(position, playerUuid));
+            }
+        }
+        positioned.sort(Comparator.comparingInt(LivePosition::position));
+
+        List<UUID> result = new ArrayList<>(positioned.size());
+        for (LivePosition entry : positioned) {
+            result.add(entry.uuid());
+        }
+        return result;
+    }
+
+    /**
+     * Count the players ranked ahead of a live time played total, correcting the committed ranking
+     * for every player whose session is still open.
+     */
+    private int getLivePosition(UUID playerUuid, long score, Map<UUID, Long> live) {
+        int before = timePlayed.countBefore(score, playerUuid);
+        for (Map.Entry<UUID, Long> session : live.entrySet()) {
+            UUID other = session.getKey();
+            if (other.equals(playerUuid)) {
+                continue;
+            }
+            if (isBefore(timePlayed.getScore(other), other, score, playerUuid)) {
+                before--;
+            }
+            if (isBefore(session.getValue(), other, score, playerUuid)) {
+                before++;
+            }
+        }
+        return before;
+    }
+
+    private static boolean isBefore(long score, UUID playerUuid, long otherScore, UUID otherUuid) {
+        return score > otherScore || (score == otherScore && playerUuid.compareTo(otherUuid) < 0);
+    }
+
+    private Map<UUID, Long> liveSessions(long now) {
+        Map<UUID, Long> live = new HashMap<>();
+        for (Map.Entry<UUID, Long> session : sessionStarts.entrySet()) {
+            live.put(session.getKey(), getLiveTimePlayed(session.getKey(), now));
+        }
+        return live;
+    }
+
+    private long getLiveTimePlayed(UUID playerUuid, long now) {
+        long total = timePlayed.getScore(playerUuid);
+        Long sessionStart = sessionStarts.get(playerUuid);
+        if (sessionStart != null) {
+            total += now - sessionStart;
+        }
+        return total;
+    }
+
+    private RankedIndex indexFor(LeaderboardCategory category) {
+        return switch (category) {
+            case TIMEPLAYED -> timePlayed;
+            case KILLS -> kills;
+            case DEATHS -> deaths;
+            case CHATTER -> chatMessages;
+            case LOVED, HATED -> netRep;
+        };
+    }
+
+    /**
+     * A player's zero-based place in the time played ranking, counting open sessions.
+     */
+    private record LivePosition(int position, UUID uuid) {}
+}
@@ -0,0 +1,48 @@
+package com.jellypudding.offlineStats.leaderboard;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A rolling time window a leaderboard can be limited to.
+ */
+public enum LeaderboardWindow {
+    WEEK("week", "This Week"),
+    MONTH("month", "This Month");
+
+    private static final List<String> IDS = Arrays.stream(values()).map(LeaderboardWindow::getId).toList();
+
+    private final String id;
+    private final String displayName;
+
+    LeaderboardWindow(String id, String displayName) {
+        this.id = id;
+        this.displayName = displayName;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Look up a window by its command name
+     * @param id The window name, e.g. "week"
+     * @return The window or null if there is no such window
+     */
+    public static LeaderboardWindow fromId(String id) {
+        for (LeaderboardWindow window : values()) {
+            if (window.id.equalsIgnoreCase(id)) {
+                return window;
+            }
+        }
+        return null;
+    }
+
+    public static List<String> ids() {
+        return IDS;
+    }
+}
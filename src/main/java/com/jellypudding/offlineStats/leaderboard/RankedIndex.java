@@ -0,0 +1,114 @@
+package com.jellypudding.offlineStats.leaderboard;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Players ordered by a single score, highest first. Ties are broken by UUID so the order is stable.
+ * Updates, rank lookups and page reads are all O(log n).
+ */
+public class RankedIndex {
+
+    private static final Comparator<Entry> ORDER = Comparator
+        .comparingLong(Entry::score).reversed()
+        .thenComparing(Entry::uuid);
+
+    private static final UUID LOWEST_UUID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+
+    private final Map<UUID, Long> scores = new HashMap<>();
+    private final IndexableSkipList<Entry> ordered = new IndexableSkipList<>(ORDER);
+
+    public synchronized void set(UUID playerUuid, long score) {
+        Long previous = scores.put(playerUuid, score);
+        if (previous != null) {
+            if (previous == score) {
+                return;
+            }
+            ordered.remove(new Entry(previous, playerUuid));
+        }
+        ordered.add(new Entry(score, playerUuid));
+    }
+
+    public synchronized void add(UUID playerUuid, long delta) {
+        Long previous = scores.get(playerUuid);
+        set(playerUuid, (previous != null ? previous : 0) + delta);
+    }
+
+    public synchronized long getScore(UUID playerUuid) {
+        Long score = scores.get(playerUuid);
+        return score != null ? score : 0;
+    }
+
+    public synchronized boolean contains(UUID playerUuid) {
+        return scores.containsKey(playerUuid);
+    }
+
+    /**
+     * Get a player's 1-based position
+     * @return The rank or -1 if the player is not indexed
+     */
+    public synchronized int rank(UUID playerUuid) {
+        Long score = scores.get(playerUuid);
+        if (score == null) {
+            return -1;
+        }
+        return ordered.countBefore(new Entry(score, playerUuid)) + 1;
+    }
+
+    /**
+     * Count the players with a strictly higher score.
+     */
+    public synchronized int countAbove(long score) {
+        return ordered.countBefore(new Entry(score, LOWEST_UUID));
+    }
+
+    /**
+     * Count the players that would be ranked ahead of the given score and UUID.
+     */
+    public synchronized int countBefore(long score, UUID playerUuid) {
+        return ordered.countBefore(new Entry(score, playerUuid));
+    }
+
+    public synchronized int size() {
+        return scores.size();
+    }
+
+    public synchronized void clear() {
+        scores.clear();
+        ordered.clear();
+    }
+
+    /**
+     * Get the first players in rank order
+     * @param limit Maximum number of players to return
+     * @param ascending true to start from the lowest score instead of the highest
+     */
+    public List<Entry> top(int limit, boolean ascending) {
+        return page(0, limit, ascending);
+    }
+
+    /**
+     * Get a slice of the ranking
+     * @param offset Number of players to skip
+     * @param limit Maximum number of players to return
+     * @param ascending true to start from the lowest score instead of the highest
+     */
+    public synchronized List<Entry> page(int offset, int limit, boolean ascending) {
+        if (!ascending) {
+            return ordered.range(offset, limit);
+        }
+
+        // Read the mirrored slice from the top and reverse it.
+        int end = ordered.size() - offset;
+        int start = Math.max(0, end - limit);
+        List<Entry> result = ordered.range(start, end - start);
+        Collections.reverse(result);
+        return result;
+    }
+
+    public record Entry(long score, UUID uuid) {}
+}
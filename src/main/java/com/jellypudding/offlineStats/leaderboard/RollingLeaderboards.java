@@ -0,0 +1,204 @@
+package com.jellypudding.offlineStats.leaderboard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Leaderboards over the last week or month. Each player active in the last month has, per stat, a ring of
+ * hourly buckets covering a week and a ring of daily buckets covering 30 days, updated as events arrive.
+ * A player's score for a window is a sum over at most 168 buckets; rankings are rebuilt from those sums
+ * at most every {@link #RANKING_TTL_MILLIS} and served from memory in between.
+ * Time played is credited to the current hour once a minute by {@link #tick} and when a player quits.
+ */
+public class RollingLeaderboards {
+
+    private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+    private static final int WEEK_HOURS = 7 * 24;
+    private static final int MONTH_DAYS = 30;
+    private static final long RANKING_TTL_MILLIS = 30_000L;
+
+    // Stats with their own counters; loved and hated share the net reputation counter.
+    private static final int TIME_PLAYED = 0;
+    private static final int KILLS = 1;
+    private static final int DEATHS = 2;
+    private static final int CHAT_MESSAGES = 3;
+    private static final int NET_REP = 4;
+    private static final int STAT_COUNT = 5;
+
+    private final Map<UUID, PlayerCounters> players = new ConcurrentHashMap<>();
+    // When each online player's time played was last credited.
+    private final Map<UUID, Long> sessions = new ConcurrentHashMap<>();
+    private final Map<RankingKey, Ranking> rankings = new ConcurrentHashMap<>();
+
+    /**
+     * Count an event for a player.
+     * @param category The leaderboard the amount counts towards; loved and hated both take a net reputation change
+     * @param at When it happened in epoch milliseconds; anything older than a month is ignored
+     */
+    public void add(LeaderboardCategory category, UUID playerUuid, long amount, long at) {
+        if (amount == 0) return;
+        int stat = statFor(category);
+        long hour = Math.floorDiv(at, HOUR_MILLIS);
+        // Added inside compute, so tick can never drop the counters between looking them up and adding to them.
+        players.compute(playerUuid, (id, counters) -> {
+            PlayerCounters current = counters != null ? counters : new PlayerCounters();
+            current.add(stat, amount, hour);
+            return current;
+        });
+    }
+
+    public void startSession(UUID playerUuid, long now) {
+        sessions.put(playerUuid, now);
+    }
+
+    public void endSession(UUID playerUuid, long now) {
+        Long lastCredited = sessions.remove(playerUuid);
+        if (lastCredited != null && now > lastCredited) {
+            add(LeaderboardCategory.TIMEPLAYED, playerUuid, now - lastCredited, now);
+        }
+    }
+
+    /**
+     * Credit online players' time since the last tick and forget players with no activity in the last month.
+     */
+    public void tick(long now) {
+        for (UUID playerUuid : sessions.keySet()) {
+            sessions.computeIfPresent(playerUuid, (id, lastCredited) -> {
+                if (now > lastCredited) {
+                    add(LeaderboardCategory.TIMEPLAYED, id, now - lastCredited, now);
+                }
+                return now;
+            });
+        }
+
+        long hour = Math.floorDiv(now, HOUR_MILLIS);
+        for (UUID playerUuid : players.keySet()) {
+            players.computeIfPresent(playerUuid, (id, counters) ->
+                !sessions.containsKey(id) && counters.isIdle(hour) ? null : counters);
+        }
+    }
+
+    public void clear() {
+        players.clear();
+        sessions.clear();
+        rankings.clear();
+    }
+
+    /**
+     * Get a slice of a category's ranking over a window
+     * @param offset Number of players to skip
+     * @param limit Maximum number of players to return
+     * @return Players and their score for the window, in rank order
+     */
+    public List<Score> getPage(LeaderboardCategory category, LeaderboardWindow window, int offset, int limit, long now) {
+        List<Score> ranked = getRanking(category, window, now);
+        if (offset < 0 || limit <= 0 || offset >= ranked.size()) {
+            return new ArrayList<>(0);
+        }
+        return new ArrayList<>(ranked.subList(offset, Math.min(ranked.size(), offset + limit)));
+    }
+
+    /**
+     * Get the number of players with a score in a category over a window.
+     */
+    public int size(LeaderboardCategory category, LeaderboardWindow window, long now) {
+        return getRanking(category, window, now).size();
+    }
+
+    /**
+     * Get one player's score in a category over a window.
+     */
+    public long getScore(LeaderboardCategory category, LeaderboardWindow window, UUID playerUuid, long now) {
+        PlayerCounters counters = players.get(playerUuid);
+        return counters != null ? counters.sum(statFor(category), window, Math.floorDiv(now, HOUR_MILLIS)) : 0;
+    }
+
+    private List<Score> getRanking(LeaderboardCategory category, LeaderboardWindow window, long now) {
+        RankingKey key = new RankingKey(category, window);
+        Ranking ranking = rankings.get(key);
+        if (ranking == null || now - ranking.computedAt() > RANKING_TTL_MILLIS || now < ranking.computedAt()) {
+            ranking = new Ranking(now, rank(category, window, now));
+            rankings.put(key, ranking);
+        }
+        return ranking.scores();
+    }
+
+    private List<Score> rank(LeaderboardCategory category, LeaderboardWindow window, long now) {
+        int stat = statFor(category);
+        long hour = Math.floorDiv(now, HOUR_MILLIS);
+        boolean ascending = category == LeaderboardCategory.HATED;
+
+        List<Score> scores = new ArrayList<>();
+        for (Map.Entry<UUID, PlayerCounters> entry : players.entrySet()) {
+            long score = entry.getValue().sum(stat, window, hour);
+            if (ascending ? score < 0 : score > 0) {
+                scores.add(new Score(entry.getKey(), score));
+            }
+        }
+
+        Comparator<Score> byScore = Comparator.comparingLong(Score::score);
+        scores.sort((ascending ? byScore : byScore.reversed()).thenComparing(Score::uuid));
+        return scores;
+    }
+
+    private static int statFor(LeaderboardCategory category) {
+        return switch (category) {
+            case TIMEPLAYED -> TIME_PLAYED;
+            case KILLS -> KILLS;
+            case DEATHS -> DEATHS;
+            case CHATTER -> CHAT_MESSAGES;
+            case LOVED, HATED -> NET_REP;
+        };
+    }
+
+    /**
+     * @param score Milliseconds for time played, the net change for reputation, otherwise a count
+     */
+    public record Score(UUID uuid, long score) {}
+
+    private record RankingKey(LeaderboardCategory category, LeaderboardWindow window) {}
+
+    private record Ranking(long computedAt, List<Score> scores) {}
+
+    /**
+     * One player's bucket rings, created the first time each stat changes.
+     */
+    private static class PlayerCounters {
+
+        private final BucketRing[] hourly = new BucketRing[STAT_COUNT];
+        private final BucketRing[] daily = new BucketRing[STAT_COUNT];
+
+        synchronized void add(int stat, long amount, long hour) {
+            if (hourly[stat] == null) {
+                hourly[stat] = new BucketRing(WEEK_HOURS);
+                daily[stat] = new BucketRing(MONTH_DAYS);
+            }
+            hourly[stat].add(hour, amount);
+            daily[stat].add(Math.floorDiv(hour, 24), amount);
+        }
+
+        synchronized long sum(int stat, LeaderboardWindow window, long hour) {
+            if (hourly[stat] == null) {
+                return 0;
+            }
+            return switch (window) {
+                case WEEK -> hourly[stat].sum(hour);
+                case MONTH -> daily[stat].sum(Math.floorDiv(hour, 24));
+            };
+        }
+
+        synchronized boolean isIdle(long hour) {
+            long day = Math.floorDiv(hour, 24);
+            for (BucketRing ring : daily) {
+                if (ring != null && !ring.isIdle(day)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
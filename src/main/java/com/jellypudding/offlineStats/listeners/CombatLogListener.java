@@ -13,15 +13,18 @@ import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.persistence.PersistentDataType;
 
 import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
 
 public class CombatLogListener implements Listener {
 
     private final OfflineStats plugin;
     private final NamespacedKey battleLockKey;
+    private final LongAdder npcKillEvents;
 
     public CombatLogListener(OfflineStats plugin) {
         this.plugin = plugin;
         this.battleLockKey = new NamespacedKey("battlelock", "combat_log_player_id");
+        this.npcKillEvents = plugin.getMetrics().counter("event.combatLogNpcKill");
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -36,6 +39,8 @@ public class CombatLogListener implements Listener {
             return;
         }
 
+        npcKillEvents.increment();
+
         // Extract the original player's UUID from the persistent data
         String playerUuidString = npc.getPersistentDataContainer().get(battleLockKey, PersistentDataType.STRING);
         UUID originalPlayerUuid = null;
@@ -11,33 +11,51 @@ import io.papermc.paper.event.player.AsyncChatEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
+import java.util.concurrent.atomic.LongAdder;
+
 public class PlayerStatsListener implements Listener {
 
     private final OfflineStats plugin;
+    private final LongAdder joinEvents;
+    private final LongAdder quitEvents;
+    private final LongAdder deathEvents;
+    private final LongAdder killEvents;
+    private final LongAdder chatEvents;
 
     public PlayerStatsListener(OfflineStats plugin) {
         this.plugin = plugin;
+        this.joinEvents = plugin.getMetrics().counter("event.join");
+        this.quitEvents = plugin.getMetrics().counter("event.quit");
+        this.deathEvents = plugin.getMetrics().counter("event.death");
+        this.killEvents = plugin.getMetrics().counter("event.kill");
+        this.chatEvents = plugin.getMetrics().counter("event.chat");
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
+        joinEvents.increment();
 
-        plugin.getDatabaseManager().createOrUpdatePlayer(player);
+        plugin.getStatsStore().createOrUpdatePlayer(player);
+        plugin.getMilestoneManager().loadPlayer(player.getUniqueId());
 
+        // Queued behind the player update on the writer thread, so it sees the new session.
         plugin.getMilestoneManager().checkTimePlayedMilestones(player);
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
+        quitEvents.increment();
 
-        plugin.getDatabaseManager().updatePlayerOnQuit(player);
+        plugin.getStatsStore().updatePlayerOnQuit(player);
+        plugin.getMilestoneManager().unloadPlayer(player.getUniqueId());
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onPlayerDeath(PlayerDeathEvent event) {
         Player player = event.getEntity();
+        deathEvents.increment();
 
         if (plugin.getAntiFarmingManager().shouldCountDeath(player.getUniqueId())) {
             plugin.getDatabaseManager().incrementDeaths(player.getUniqueId());
@@ -48,6 +66,7 @@ public class PlayerStatsListener implements Listener {
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onEntityDeath(EntityDeathEvent event) {
         if (event.getEntity() instanceof Player victim && event.getEntity().getKiller() instanceof Player killer) {
+            killEvents.increment();
             if (plugin.getAntiFarmingManager().shouldCountKill(killer.getUniqueId(), victim.getUniqueId())) {
                 plugin.getDatabaseManager().incrementKills(killer.getUniqueId());
                 plugin.getMilestoneManager().checkKillMilestones(killer);
@@ -58,6 +77,7 @@ public class PlayerStatsListener implements Listener {
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onPlayerChat(AsyncChatEvent event) {
         Player player = event.getPlayer();
+        chatEvents.increment();
 
         plugin.getDatabaseManager().incrementChatMessages(player.getUniqueId());
     }
@@ -0,0 +1,56 @@
+package com.jellypudding.offlineStats.metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Appends the current totals to a CSV file, one row per timer and counter, so runs can be compared afterwards.
+ * Durations are in microseconds and totals are cumulative since the last reset.
+ */
+public class MetricsCsvWriter {
+
+    private static final String HEADER = "time,type,name,count,main_thread_count,mean_us,p50_us,p99_us,max_us,total_ms";
+
+    private final Path file;
+
+    public MetricsCsvWriter(Path file) {
+        this.file = file;
+    }
+
+    public void append(StatsMetrics metrics) throws IOException {
+        boolean newFile = !Files.exists(file);
+        String time = Instant.now().toString();
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (newFile) {
+                writer.write(HEADER);
+                writer.newLine();
+            }
+
+            for (OperationTimer timer : metrics.getTimers().values()) {
+                LatencyHistogram histogram = timer.getHistogram();
+                writer.write(time + ",timer," + timer.getName() + "," + histogram.getCount() + "," + timer.getMainThreadCalls() + "," +
+                             histogram.getMeanNanos() / 1000 + "," + histogram.getPercentileNanos(50) / 1000 + "," +
+                             histogram.getPercentileNanos(99) / 1000 + "," + histogram.getMaxNanos() / 1000 + "," +
+                             histogram.getTotalNanos() / 1_000_000);
+                writer.newLine();
+            }
+
+            for (Map.Entry<String, LongAdder> counter : metrics.getCounters().entrySet()) {
+                writer.write(time + ",counter," + counter.getKey() + "," + counter.getValue().sum() + ",,,,,,");
+                writer.newLine();
+            }
+
+            writer.write(time + ",main_thread_blocking,total,,,,,,," + metrics.getMainThreadBlockingNanos() / 1_000_000);
+            writer.newLine();
+        }
+    }
+}
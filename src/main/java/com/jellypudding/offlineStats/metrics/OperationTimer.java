@@ -0,0 +1,56 @@
+package com.jellypudding.offlineStats.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times one named operation. Usage:
+ * <pre>
+ * long start = timer.start();
+ * try { ... } finally { timer.stop(start); }
+ * </pre>
+ */
+public class OperationTimer {
+
+    private final String name;
+    private final StatsMetrics metrics;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder mainThreadCalls = new LongAdder();
+
+    OperationTimer(String name, StatsMetrics metrics) {
+        this.name = name;
+        this.metrics = metrics;
+    }
+
+    public long start() {
+        return System.nanoTime();
+    }
+
+    public void stop(long start) {
+        long elapsed = System.nanoTime() - start;
+        histogram.record(elapsed);
+        if (metrics.isMainThread()) {
+            mainThreadCalls.increment();
+            metrics.addMainThreadBlocking(elapsed);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Get how many of the recorded calls ran on the server thread
+     */
+    public long getMainThreadCalls() {
+        return mainThreadCalls.sum();
+    }
+
+    void reset() {
+        histogram.reset();
+        mainThreadCalls.reset();
+    }
+}
@@ -0,0 +1,82 @@
+package com.jellypudding.offlineStats.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Registry of operation timers and event counters for the plugin.
+ * Timers and counters are looked up once and kept in fields, so the hot paths only touch their own atomics.
+ */
+public class StatsMetrics {
+
+    private final BooleanSupplier mainThread;
+    // Sorted by name so /offlinestats metrics and the CSV list them in a stable order.
+    private final Map<String, OperationTimer> timers = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final LongAdder mainThreadBlockingNanos = new LongAdder();
+    private volatile long since = System.currentTimeMillis();
+
+    /**
+     * @param mainThread Tells whether the calling thread is the server thread, e.g. Bukkit::isPrimaryThread
+     */
+    public StatsMetrics(BooleanSupplier mainThread) {
+        this.mainThread = mainThread;
+    }
+
+    /**
+     * Get or create the timer for an operation
+     */
+    public OperationTimer timer(String name) {
+        return timers.computeIfAbsent(name, key -> new OperationTimer(key, this));
+    }
+
+    /**
+     * Get or create a counter, e.g. for a listener event
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    boolean isMainThread() {
+        return mainThread.getAsBoolean();
+    }
+
+    void addMainThreadBlocking(long nanos) {
+        mainThreadBlockingNanos.add(nanos);
+    }
+
+    public Map<String, OperationTimer> getTimers() {
+        return timers;
+    }
+
+    public Map<String, LongAdder> getCounters() {
+        return counters;
+    }
+
+    /**
+     * Get the total time timed operations spent running on the server thread
+     */
+    public long getMainThreadBlockingNanos() {
+        return mainThreadBlockingNanos.sum();
+    }
+
+    /**
+     * Get when recording started or was last reset, in milliseconds since the epoch
+     */
+    public long getSince() {
+        return since;
+    }
+
+    public void reset() {
+        for (OperationTimer timer : timers.values()) {
+            timer.reset();
+        }
+        for (LongAdder counter : counters.values()) {
+            counter.reset();
+        }
+        mainThreadBlockingNanos.reset();
+        since = System.currentTimeMillis();
+    }
+}
@@ -2,151 +2,121 @@ package com.jellypudding.offlineStats.milestones;
 
 import com.jellypudding.offlineStats.OfflineStats;
 import com.jellypudding.offlineStats.database.PlayerStats;
+import com.jellypudding.offlineStats.integrations.IntegrationRegistry;
+import com.jellypudding.offlineStats.metrics.OperationTimer;
+import com.jellypudding.offlineStats.milestones.MilestoneTracker.CrossedMilestones;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
-import org.bukkit.configuration.ConfigurationSection;
 
 import java.awt.Color;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 import java.util.logging.Level;
 import java.util.UUID;
 
 public class MilestoneManager {
 
     private final OfflineStats plugin;
+    private final MilestoneTracker tracker;
+    private final OperationTimer checkTimer;
 
     public MilestoneManager(OfflineStats plugin) {
         this.plugin = plugin;
+        this.tracker = new MilestoneTracker(plugin.getLogger());
+        this.checkTimer = plugin.getMetrics().timer("milestones.check");
+        reload();
     }
 
-    public void checkTimePlayedMilestones(Player player) {
-        if (!plugin.getConfig().getBoolean("milestones.timeplayed.enabled", true)) {
-            return;
-        }
-
-        PlayerStats stats = plugin.getDatabaseManager().getPlayerStats(player.getUniqueId());
-        if (stats == null) return;
-
-        long hoursPlayed = stats.getTimePlayedHours();
-        ConfigurationSection rewards = plugin.getConfig().getConfigurationSection("milestones.timeplayed.rewards");
+    /**
+     * Recompile the milestone threshold tables from the config.
+     */
+    public void reload() {
+        tracker.reload(plugin.getConfig());
+    }
 
-        if (rewards == null) return;
+    /**
+     * Load a player's achieved milestones so later checks need no queries. Call when the player joins.
+     */
+    public void loadPlayer(UUID playerUuid) {
+        plugin.getStatsStore().execute(db -> tracker.loadPlayer(db, playerUuid));
+    }
 
-        boolean announcedThisCheck = false;
+    /**
+     * Forget a player's achieved milestones once any queued checks for them have run.
+     */
+    public void unloadPlayer(UUID playerUuid) {
+        plugin.getStatsStore().execute(db -> tracker.unloadPlayer(playerUuid));
+    }
 
-        // Check for milestone rewards first.
-        for (String key : rewards.getKeys(false)) {
-            try {
-                int milestone = Integer.parseInt(key);
+    public void checkTimePlayedMilestones(Player player) {
+        int[] thresholds = tracker.getThresholds("timeplayed");
+        if (thresholds == null) return;
 
-                if (hoursPlayed >= milestone && !plugin.getDatabaseManager().hasMilestone(player.getUniqueId(), "timeplayed", milestone)) {
-                    awardTimePlayedMilestone(player, milestone);
-                    announcedThisCheck = true;
-                }
-            } catch (NumberFormatException e) {
-                plugin.getLogger().warning("Invalid milestone key in timeplayed rewards: " + key);
+        findAndRecordMilestones(player.getUniqueId(), "timeplayed", "timeplayed_1000h", thresholds, PlayerStats::getTimePlayedHours, crossed -> {
+            for (int milestone : crossed.milestones()) {
+                awardTimePlayedMilestone(player, milestone);
             }
-        }
-
-        // Check for 1000-hour announcements (every 1000 hours starting from 1000)
-        if (hoursPlayed >= 1000) {
-            long thousandHourMilestones = hoursPlayed / 1000;
-            int currentThousandMilestone = (int) (thousandHourMilestones * 1000);
 
-            if (!plugin.getDatabaseManager().hasMilestone(player.getUniqueId(), "timeplayed_1000h", currentThousandMilestone)) {
-                plugin.getDatabaseManager().addMilestone(player.getUniqueId(), "timeplayed_1000h", currentThousandMilestone);
-
-                if (!announcedThisCheck) {
-                    sendTimePlayedAnnouncement(player, currentThousandMilestone, 0);
-                }
+            // 1000-hour announcements (every 1000 hours starting from 1000) unless a reward was announced.
+            if (crossed.thousandMilestone() > 0 && crossed.milestones().isEmpty()) {
+                sendTimePlayedAnnouncement(player, crossed.thousandMilestone(), 0);
             }
-        }
+        });
     }
 
     public void checkKillMilestones(Player player) {
-        if (!plugin.getConfig().getBoolean("milestones.kills.enabled", true)) {
-            return;
-        }
-
-        PlayerStats stats = plugin.getDatabaseManager().getPlayerStats(player.getUniqueId());
-        if (stats == null) return;
-
-        int kills = stats.getKills();
-        ConfigurationSection rewards = plugin.getConfig().getConfigurationSection("milestones.kills.rewards");
-
-        if (rewards == null) return;
-
-        boolean announcedThisCheck = false;
+        int[] thresholds = tracker.getThresholds("kills");
+        if (thresholds == null) return;
 
-        // Check for milestone rewards first
-        for (String key : rewards.getKeys(false)) {
-            try {
-                int milestone = Integer.parseInt(key);
-
-                if (kills >= milestone && !plugin.getDatabaseManager().hasMilestone(player.getUniqueId(), "kills", milestone)) {
-                    awardKillMilestone(player, milestone);
-                    announcedThisCheck = true; // We announced for the milestone reward
-                }
-            } catch (NumberFormatException e) {
-                plugin.getLogger().warning("Invalid milestone key in kills rewards: " + key);
+        findAndRecordMilestones(player.getUniqueId(), "kills", "kills_1000", thresholds, PlayerStats::getKills, crossed -> {
+            for (int milestone : crossed.milestones()) {
+                awardKillMilestone(player, milestone);
             }
-        }
 
-        if (kills >= 1000) {
-            long thousandKillMilestones = kills / 1000;
-            int currentThousandMilestone = (int) (thousandKillMilestones * 1000);
-
-            if (!plugin.getDatabaseManager().hasMilestone(player.getUniqueId(), "kills_1000", currentThousandMilestone)) {
-                plugin.getDatabaseManager().addMilestone(player.getUniqueId(), "kills_1000", currentThousandMilestone);
-
-                if (!announcedThisCheck) {
-                    sendKillAnnouncement(player, currentThousandMilestone, 0);
-                }
+            if (crossed.thousandMilestone() > 0 && crossed.milestones().isEmpty()) {
+                sendKillAnnouncement(player, crossed.thousandMilestone(), 0);
             }
-        }
+        });
     }
 
     public void checkDeathMilestones(Player player) {
-        if (!plugin.getConfig().getBoolean("milestones.deaths.enabled", true)) {
-            return;
-        }
-
-        PlayerStats stats = plugin.getDatabaseManager().getPlayerStats(player.getUniqueId());
-        if (stats == null) return;
-
-        int deaths = stats.getDeaths();
-        ConfigurationSection rewards = plugin.getConfig().getConfigurationSection("milestones.deaths.rewards");
+        int[] thresholds = tracker.getThresholds("deaths");
+        if (thresholds == null) return;
 
-        if (rewards == null) return;
+        findAndRecordMilestones(player.getUniqueId(), "deaths", "deaths_1000", thresholds, PlayerStats::getDeaths, crossed -> {
+            for (int milestone : crossed.milestones()) {
+                awardDeathMilestone(player, milestone);
+            }
 
-        boolean announcedThisCheck = false;
+            if (crossed.thousandMilestone() > 0 && crossed.milestones().isEmpty()) {
+                sendDeathAnnouncement(player, crossed.thousandMilestone(), 0);
+            }
+        });
+    }
 
-        for (String key : rewards.getKeys(false)) {
+    /**
+     * Find and record newly crossed milestones on the database writer thread
+     * so that two checks in quick succession can never award the same milestone twice.
+     * @param award Run on the server thread with the crossed milestones, if there are any
+     */
+    private void findAndRecordMilestones(UUID playerUuid, String milestoneType, String thousandType, int[] thresholds,
+                                         ToLongFunction<PlayerStats> valueFunction, Consumer<CrossedMilestones> award) {
+        CompletableFuture<CrossedMilestones> check = plugin.getStatsStore().write(db -> {
+            long start = checkTimer.start();
             try {
-                int milestone = Integer.parseInt(key);
-
-                if (deaths >= milestone && !plugin.getDatabaseManager().hasMilestone(player.getUniqueId(), "deaths", milestone)) {
-                    awardDeathMilestone(player, milestone);
-                    announcedThisCheck = true;
-                }
-            } catch (NumberFormatException e) {
-                plugin.getLogger().warning("Invalid milestone key in deaths rewards: " + key);
+                return tracker.findAndRecord(db, playerUuid, milestoneType, thousandType, thresholds, valueFunction);
+            } finally {
+                checkTimer.stop(start);
             }
-        }
-
-        if (deaths >= 1000) {
-            long thousandDeathMilestones = deaths / 1000;
-            int currentThousandMilestone = (int) (thousandDeathMilestones * 1000);
-
-            if (!plugin.getDatabaseManager().hasMilestone(player.getUniqueId(), "deaths_1000", currentThousandMilestone)) {
-                plugin.getDatabaseManager().addMilestone(player.getUniqueId(), "deaths_1000", currentThousandMilestone);
-
-                if (!announcedThisCheck) {
-                    sendDeathAnnouncement(player, currentThousandMilestone, 0);
-                }
+        });
+        plugin.getStatsStore().acceptOnMainThread(check, crossed -> {
+            if (crossed != null) {
+                award.accept(crossed);
             }
-        }
+        });
     }
 
     private void awardTimePlayedMilestone(Player player, int hoursPlayed) {
@@ -154,25 +124,16 @@ public class MilestoneManager {
             // Get reward amount from config
             int homeSlots = plugin.getConfig().getInt("milestones.timeplayed.rewards." + hoursPlayed + ".home_slots", 1);
             
-            if (plugin.isSimpleHomeEnabled()) {
+            IntegrationRegistry.SimpleHome simpleHome = plugin.getIntegrations().getSimpleHome();
+            if (simpleHome != null) {
                 try {
-                    org.bukkit.plugin.Plugin simpleHomePlugin = Bukkit.getPluginManager().getPlugin("SimpleHome");
-                    if (simpleHomePlugin != null && simpleHomePlugin.isEnabled()) {
-                        java.lang.reflect.Method increaseHomeLimit = simpleHomePlugin.getClass().getMethod("increaseHomeLimit", UUID.class);
-                        increaseHomeLimit.invoke(simpleHomePlugin, player.getUniqueId());
-                        plugin.getLogger().info("Awarded " + homeSlots + " home slot" + (homeSlots == 1 ? "" : "s") + " to " + player.getName() + " for " + hoursPlayed + " hours played");
-                    }
+                    simpleHome.increaseHomeLimit(player.getUniqueId());
+                    plugin.getLogger().info("Awarded " + homeSlots + " home slot" + (homeSlots == 1 ? "" : "s") + " to " + player.getName() + " for " + hoursPlayed + " hours played");
                 } catch (Exception e) {
                     plugin.getLogger().warning("Failed to award home slots: " + e.getMessage());
                 }
             }
 
-            plugin.getDatabaseManager().addMilestone(player.getUniqueId(), "timeplayed", hoursPlayed);
-
-            if (hoursPlayed >= 1000 && hoursPlayed % 1000 == 0) {
-                plugin.getDatabaseManager().addMilestone(player.getUniqueId(), "timeplayed_1000h", hoursPlayed);
-            }
-
             sendTimePlayedAnnouncement(player, hoursPlayed, homeSlots);
 
         } catch (Exception e) {
@@ -185,25 +146,16 @@ public class MilestoneManager {
             // Get reward amount from config
             int maxHearts = plugin.getConfig().getInt("milestones.kills.rewards." + kills + ".max_hearts", 1);
             
-            if (plugin.isSimpleLifestealEnabled()) {
+            IntegrationRegistry.SimpleLifesteal simpleLifesteal = plugin.getIntegrations().getSimpleLifesteal();
+            if (simpleLifesteal != null) {
                 try {
-                    org.bukkit.plugin.Plugin simpleLifestealPlugin = Bukkit.getPluginManager().getPlugin("SimpleLifesteal");
-                    if (simpleLifestealPlugin != null && simpleLifestealPlugin.isEnabled()) {
-                        java.lang.reflect.Method increasePlayerMaxHearts = simpleLifestealPlugin.getClass().getMethod("increasePlayerMaxHearts", UUID.class, int.class);
-                        increasePlayerMaxHearts.invoke(simpleLifestealPlugin, player.getUniqueId(), maxHearts);
-                        plugin.getLogger().info("Awarded " + maxHearts + " max heart" + (maxHearts == 1 ? "" : "s") + " to " + player.getName() + " for " + kills + " kills");
-                    }
+                    simpleLifesteal.increasePlayerMaxHearts(player.getUniqueId(), maxHearts);
+                    plugin.getLogger().info("Awarded " + maxHearts + " max heart" + (maxHearts == 1 ? "" : "s") + " to " + player.getName() + " for " + kills + " kills");
                 } catch (Exception e) {
                     plugin.getLogger().warning("Failed to award max hearts: " + e.getMessage());
                 }
             }
 
-            plugin.getDatabaseManager().addMilestone(player.getUniqueId(), "kills", kills);
-
-            if (kills >= 1000 && kills % 1000 == 0) {
-                plugin.getDatabaseManager().addMilestone(player.getUniqueId(), "kills_1000", kills);
-            }
-
             sendKillAnnouncement(player, kills, maxHearts);
 
         } catch (Exception e) {
@@ -213,29 +165,18 @@ public class MilestoneManager {
 
     private void awardDeathMilestone(Player player, int deaths) {
         try {
-            if (plugin.isSimpleVoteEnabled()) {
+            IntegrationRegistry.SimpleVote simpleVote = plugin.getIntegrations().getSimpleVote();
+            if (simpleVote != null) {
                 int tokens = plugin.getConfig().getInt("milestones.deaths.rewards." + deaths + ".tokens", 5);
 
                 try {
-                    org.bukkit.plugin.Plugin simpleVotePlugin = Bukkit.getPluginManager().getPlugin("SimpleVote");
-                    if (simpleVotePlugin != null && simpleVotePlugin.isEnabled()) {
-                        java.lang.reflect.Method getTokenManager = simpleVotePlugin.getClass().getMethod("getTokenManager");
-                        Object tokenManager = getTokenManager.invoke(simpleVotePlugin);
-                        java.lang.reflect.Method addTokens = tokenManager.getClass().getMethod("addTokens", UUID.class, int.class);
-                        addTokens.invoke(tokenManager, player.getUniqueId(), tokens);
-                        plugin.getLogger().info("Awarded " + tokens + " tokens to " + player.getName() + " for " + deaths + " deaths");
-                    }
+                    simpleVote.addTokens(player.getUniqueId(), tokens);
+                    plugin.getLogger().info("Awarded " + tokens + " tokens to " + player.getName() + " for " + deaths + " deaths");
                 } catch (Exception e) {
                     plugin.getLogger().warning("Failed to award tokens: " + e.getMessage());
                 }
             }
 
-            plugin.getDatabaseManager().addMilestone(player.getUniqueId(), "deaths", deaths);
-
-            if (deaths >= 1000 && deaths % 1000 == 0) {
-                plugin.getDatabaseManager().addMilestone(player.getUniqueId(), "deaths_1000", deaths);
-            }
-
             sendDeathAnnouncement(player, deaths, plugin.getConfig().getInt("milestones.deaths.rewards." + deaths + ".tokens", 5));
 
         } catch (Exception e) {
@@ -244,8 +185,7 @@ public class MilestoneManager {
     }
 
     private void sendTimePlayedAnnouncement(Player player, int hours, int homeSlots) {
-        // Delay the announcement to ensure the player is fully connected so they can see the message.
-        Bukkit.getScheduler().runTaskLater(plugin, () -> {
+        Runnable announce = () -> {
             Component playerName = player.displayName();
             Component message;
             if (homeSlots > 0) {
@@ -277,7 +217,15 @@ public class MilestoneManager {
                 discordMessage = player.getName() + " has reached " + hours + " " + hourText + " of playtime.";
             }
             plugin.getDiscordUtil().sendMessage("Playtime Milestone", discordMessage, Color.GREEN);
-        }, 30L); // 30 ticks = 1.5 seconds delay
+        };
+
+        if (!plugin.isEnabled()) {
+            // Rewards handed out while shutting down can't be scheduled, so announce them straight away.
+            announce.run();
+            return;
+        }
+        // Delay the announcement to ensure the player is fully connected so they can see the message.
+        Bukkit.getScheduler().runTaskLater(plugin, announce, 30L); // 30 ticks = 1.5 seconds delay
     }
 
     private void sendKillAnnouncement(Player player, int kills, int hearts) {
@@ -319,50 +267,29 @@ public class MilestoneManager {
     }
 
     public void checkReputationMilestones(UUID playerUuid) {
-        if (!plugin.getConfig().getBoolean("milestones.reputation.enabled", true)) {
-            return;
-        }
-
-        PlayerStats stats = plugin.getDatabaseManager().getPlayerStats(playerUuid);
-        if (stats == null) return;
-
-        int absNetRep = Math.abs(stats.getNetRep());
-        ConfigurationSection rewards = plugin.getConfig().getConfigurationSection("milestones.reputation.rewards");
-
-        if (rewards == null) return;
+        int[] thresholds = tracker.getThresholds("reputation");
+        if (thresholds == null) return;
 
-        for (String key : rewards.getKeys(false)) {
-            try {
-                int milestone = Integer.parseInt(key);
-                if (absNetRep >= milestone && !plugin.getDatabaseManager().hasMilestone(playerUuid, "reputation", milestone)) {
-                    awardReputationMilestone(playerUuid, stats.getUsername(), milestone, stats.getNetRep());
-                }
-            } catch (NumberFormatException e) {
-                plugin.getLogger().warning("Invalid milestone key in reputation rewards: " + key);
+        findAndRecordMilestones(playerUuid, "reputation", null, thresholds, stats -> Math.abs(stats.getNetRep()), crossed -> {
+            for (int milestone : crossed.milestones()) {
+                awardReputationMilestone(playerUuid, crossed.stats().getUsername(), milestone, crossed.stats().getNetRep());
             }
-        }
+        });
     }
 
     private void awardReputationMilestone(UUID playerUuid, String playerName, int milestone, int netRep) {
         try {
-            if (plugin.isSimpleVoteEnabled()) {
+            IntegrationRegistry.SimpleVote simpleVote = plugin.getIntegrations().getSimpleVote();
+            if (simpleVote != null) {
                 int tokens = plugin.getConfig().getInt("milestones.reputation.rewards." + milestone + ".tokens", 10);
                 try {
-                    org.bukkit.plugin.Plugin simpleVotePlugin = Bukkit.getPluginManager().getPlugin("SimpleVote");
-                    if (simpleVotePlugin != null && simpleVotePlugin.isEnabled()) {
-                        java.lang.reflect.Method getTokenManager = simpleVotePlugin.getClass().getMethod("getTokenManager");
-                        Object tokenManager = getTokenManager.invoke(simpleVotePlugin);
-                        java.lang.reflect.Method addTokens = tokenManager.getClass().getMethod("addTokens", UUID.class, int.class);
-                        addTokens.invoke(tokenManager, playerUuid, tokens);
-                        plugin.getLogger().info("Awarded " + tokens + " tokens to " + playerName + " for reaching " + milestone + " reputation milestone");
-                    }
+                    simpleVote.addTokens(playerUuid, tokens);
+                    plugin.getLogger().info("Awarded " + tokens + " tokens to " + playerName + " for reaching " + milestone + " reputation milestone");
                 } catch (Exception e) {
                     plugin.getLogger().warning("Failed to award tokens: " + e.getMessage());
                 }
             }
 
-            plugin.getDatabaseManager().addMilestone(playerUuid, "reputation", milestone);
-
             sendReputationAnnouncement(playerUuid, playerName, netRep, plugin.getConfig().getInt("milestones.reputation.rewards." + milestone + ".tokens", 10));
 
         } catch (Exception e) {
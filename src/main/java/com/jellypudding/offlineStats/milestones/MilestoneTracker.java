@@ -0,0 +1,169 @@
+package com.jellypudding.offlineStats.milestones;
+
+import com.jellypudding.offlineStats.database.DatabaseManager;
+import com.jellypudding.offlineStats.database.PlayerStats;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+import java.util.logging.Logger;
+
+/**
+ * Decides which milestones a player has newly crossed, without touching Bukkit.
+ * Reward thresholds are compiled into sorted arrays and each player's achieved milestones are kept as bitsets,
+ * so a check only reaches the database when a milestone is actually crossed.
+ * Everything except {@link #reload} and {@link #getThresholds} runs on the database writer thread.
+ */
+public class MilestoneTracker {
+
+    private static final List<String> MILESTONE_TYPES = List.of("timeplayed", "kills", "deaths", "reputation");
+
+    private final Logger logger;
+    // Sorted reward thresholds per enabled milestone type, rebuilt on reload.
+    private volatile Map<String, int[]> thresholds = Map.of();
+    private final Map<UUID, PlayerMilestones> playerMilestones = new ConcurrentHashMap<>();
+
+    public MilestoneTracker(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Recompile the threshold tables from the milestones section of the config.
+     * Players' achieved bitsets are rebuilt lazily against the new tables.
+     */
+    public void reload(ConfigurationSection config) {
+        Map<String, int[]> compiled = new HashMap<>();
+        for (String milestoneType : MILESTONE_TYPES) {
+            if (!config.getBoolean("milestones." + milestoneType + ".enabled", true)) {
+                continue;
+            }
+            int[] typeThresholds = compileThresholds(config, milestoneType);
+            if (typeThresholds != null) {
+                compiled.put(milestoneType, typeThresholds);
+            }
+        }
+        thresholds = compiled;
+    }
+
+    /**
+     * Get the compiled reward thresholds for a milestone type
+     * @return Sorted thresholds or null if the type is disabled or has no rewards
+     */
+    public int[] getThresholds(String milestoneType) {
+        return thresholds.get(milestoneType);
+    }
+
+    public void loadPlayer(DatabaseManager db, UUID playerUuid) {
+        playerMilestones.put(playerUuid, loadPlayerMilestones(db, playerUuid));
+    }
+
+    public void unloadPlayer(UUID playerUuid) {
+        playerMilestones.remove(playerUuid);
+    }
+
+    /**
+     * Online players are cached from join until quit. Anyone else, e.g. an offline reputation receiver, is loaded
+     * for this one check and not cached, as nothing would ever remove them again.
+     */
+    private PlayerMilestones getPlayerMilestones(DatabaseManager db, UUID playerUuid) {
+        PlayerMilestones achieved = playerMilestones.get(playerUuid);
+        return achieved != null ? achieved : loadPlayerMilestones(db, playerUuid);
+    }
+
+    private PlayerMilestones loadPlayerMilestones(DatabaseManager db, UUID playerUuid) {
+        PlayerMilestones achieved = new PlayerMilestones();
+        for (Map.Entry<String, List<Integer>> entry : db.getMilestones(playerUuid).entrySet()) {
+            for (int milestoneValue : entry.getValue()) {
+                achieved.load(entry.getKey(), milestoneValue);
+            }
+        }
+        return achieved;
+    }
+
+    /**
+     * Parse the configured reward thresholds for a milestone type into a sorted array.
+     * @return The thresholds or null if no rewards are configured
+     */
+    private int[] compileThresholds(ConfigurationSection config, String milestoneType) {
+        ConfigurationSection rewards = config.getConfigurationSection("milestones." + milestoneType + ".rewards");
+        if (rewards == null) return null;
+
+        List<Integer> parsed = new ArrayList<>();
+        for (String key : rewards.getKeys(false)) {
+            try {
+                parsed.add(Integer.parseInt(key));
+            } catch (NumberFormatException e) {
+                logger.warning("Invalid milestone key in " + milestoneType + " rewards: " + key);
+            }
+        }
+        return parsed.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+    }
+
+    /**
+     * Count the thresholds at or below a value, i.e. the index of the next threshold still to reach.
+     */
+    private static int countReached(int[] thresholds, long value) {
+        int low = 0;
+        int high = thresholds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (thresholds[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Find the milestones a player has newly crossed and record them.
+     * Already achieved milestones are answered from memory, so the database is only touched when one is crossed.
+     * @param thousandType Milestone type for the recurring every-1000 announcement, or null for none
+     * @return The crossed milestones or null if there are none
+     */
+    public CrossedMilestones findAndRecord(DatabaseManager db, UUID playerUuid, String milestoneType, String thousandType,
+                                           int[] thresholds, ToLongFunction<PlayerStats> valueFunction) {
+        PlayerStats stats = db.getPlayerStats(playerUuid);
+        if (stats == null) return null;
+
+        long value = valueFunction.applyAsLong(stats);
+        PlayerMilestones achieved = getPlayerMilestones(db, playerUuid);
+        BitSet achievedBits = achieved.rewardBits(milestoneType, thresholds);
+        int reached = countReached(thresholds, value);
+
+        List<Integer> crossed = new ArrayList<>();
+        for (int i = achievedBits.nextClearBit(0); i < reached; i = achievedBits.nextClearBit(i + 1)) {
+            int milestone = thresholds[i];
+            db.addMilestone(playerUuid, milestoneType, milestone);
+            achieved.addReward(milestoneType, thresholds, i);
+            if (thousandType != null && milestone >= 1000 && milestone % 1000 == 0
+                    && !achieved.hasThousand(thousandType, milestone)) {
+                db.addMilestone(playerUuid, thousandType, milestone);
+                achieved.addThousand(thousandType, milestone);
+            }
+            crossed.add(milestone);
+        }
+
+        int thousandMilestone = 0;
+        if (thousandType != null && value >= 1000) {
+            int currentThousandMilestone = (int) ((value / 1000) * 1000);
+            if (!achieved.hasThousand(thousandType, currentThousandMilestone)) {
+                db.addMilestone(playerUuid, thousandType, currentThousandMilestone);
+                achieved.addThousand(thousandType, currentThousandMilestone);
+                thousandMilestone = currentThousandMilestone;
+            }
+        }
+
+        if (crossed.isEmpty() && thousandMilestone == 0) return null;
+        return new CrossedMilestones(stats, crossed, thousandMilestone);
+    }
+
+    public record CrossedMilestones(PlayerStats stats, List<Integer> milestones, int thousandMilestone) {}
+}
@@ -0,0 +1,91 @@
+package com.jellypudding.offlineStats.milestones;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The milestones one player has already achieved, loaded once from the milestones table.
+ * Reward milestones are tested as bits against a compiled threshold table (bit i = thresholds[i]);
+ * the recurring every-1000 milestones use bit value / 1000.
+ * Only touched on the database writer thread.
+ */
+class PlayerMilestones {
+
+    // Achieved values per milestone type, sorted. Kept so bitsets can be rebuilt after a config reload.
+    private final Map<String, int[]> achieved = new HashMap<>();
+    private final Map<String, CompiledBits> rewardBits = new HashMap<>();
+    private final Map<String, BitSet> thousandBits = new HashMap<>();
+
+    void load(String milestoneType, int milestoneValue) {
+        int[] values = achieved.get(milestoneType);
+        if (values == null) {
+            achieved.put(milestoneType, new int[] { milestoneValue });
+            return;
+        }
+        int index = Arrays.binarySearch(values, milestoneValue);
+        if (index >= 0) {
+            return;
+        }
+        int insertAt = -index - 1;
+        int[] grown = new int[values.length + 1];
+        System.arraycopy(values, 0, grown, 0, insertAt);
+        grown[insertAt] = milestoneValue;
+        System.arraycopy(values, insertAt, grown, insertAt + 1, values.length - insertAt);
+        achieved.put(milestoneType, grown);
+    }
+
+    /**
+     * Get the achieved bits for a reward milestone type, compiled against the given thresholds.
+     */
+    BitSet rewardBits(String milestoneType, int[] thresholds) {
+        CompiledBits compiled = rewardBits.get(milestoneType);
+        if (compiled != null && compiled.thresholds() == thresholds) {
+            return compiled.bits();
+        }
+
+        BitSet bits = new BitSet(thresholds.length);
+        int[] values = achieved.get(milestoneType);
+        if (values != null) {
+            for (int i = 0; i < thresholds.length; i++) {
+                if (Arrays.binarySearch(values, thresholds[i]) >= 0) {
+                    bits.set(i);
+                }
+            }
+        }
+        rewardBits.put(milestoneType, new CompiledBits(thresholds, bits));
+        return bits;
+    }
+
+    boolean hasThousand(String milestoneType, int milestoneValue) {
+        return thousandBits(milestoneType).get(milestoneValue / 1000);
+    }
+
+    void addThousand(String milestoneType, int milestoneValue) {
+        load(milestoneType, milestoneValue);
+        thousandBits(milestoneType).set(milestoneValue / 1000);
+    }
+
+    void addReward(String milestoneType, int[] thresholds, int index) {
+        load(milestoneType, thresholds[index]);
+        rewardBits(milestoneType, thresholds).set(index);
+    }
+
+    private BitSet thousandBits(String milestoneType) {
+        BitSet bits = thousandBits.get(milestoneType);
+        if (bits == null) {
+            bits = new BitSet();
+            int[] values = achieved.get(milestoneType);
+            if (values != null) {
+                for (int value : values) {
+                    bits.set(value / 1000);
+                }
+            }
+            thousandBits.put(milestoneType, bits);
+        }
+        return bits;
+    }
+
+    private record CompiledBits(int[] thresholds, BitSet bits) {}
+}
@@ -0,0 +1,205 @@
+package com.jellypudding.offlineStats.utils;
+
+import com.jellypudding.offlineStats.metrics.StatsMetrics;
+
+import java.awt.Color;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Bounded queue of Discord announcements, sent from a background thread so a slow relay never holds up the server.
+ * Every interval, whatever has queued up is combined into a single message. Messages are rate limited with a token
+ * bucket; anything over the limit waits for a later interval, and once the queue is full the oldest announcement is dropped.
+ */
+public class AnnouncementQueue {
+
+    // Discord rejects embed descriptions over 4096 characters; leave room for the title prefixes.
+    private static final int MAX_MESSAGE_LENGTH = 4000;
+    private static final String MIXED_TITLE = "Server Announcements";
+
+    private final Logger logger;
+    private final DiscordSink sink;
+    private final int capacity;
+    private final double messagesPerMinute;
+    private final ArrayDeque<Announcement> queue = new ArrayDeque<>();
+    private final ScheduledExecutorService worker;
+
+    private final LongAdder queued;
+    private final LongAdder sent;
+    private final LongAdder messages;
+    private final LongAdder dropped;
+    private final LongAdder failed;
+
+    // Token bucket state, only touched on the worker thread.
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param intervalMillis How often queued announcements are combined and sent, or 0 to only send when {@link #drain()} is called
+     * @param messagesPerMinute Maximum number of Discord messages sent per minute
+     * @param capacity Maximum number of announcements waiting to be sent
+     */
+    public AnnouncementQueue(Logger logger, DiscordSink sink, StatsMetrics metrics,
+                             long intervalMillis, int messagesPerMinute, int capacity) {
+        this.logger = logger;
+        this.sink = sink;
+        this.capacity = Math.max(1, capacity);
+        this.messagesPerMinute = Math.max(1, messagesPerMinute);
+        this.tokens = this.messagesPerMinute;
+        this.lastRefill = System.nanoTime();
+
+        this.queued = metrics.counter("discord.queued");
+        this.sent = metrics.counter("discord.sent");
+        this.messages = metrics.counter("discord.messages");
+        this.dropped = metrics.counter("discord.dropped");
+        this.failed = metrics.counter("discord.failed");
+
+        if (intervalMillis > 0) {
+            this.worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "OfflineStats-Discord");
+                thread.setDaemon(true);
+                return thread;
+            });
+            worker.scheduleWithFixedDelay(this::drain, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.worker = null;
+        }
+    }
+
+    /**
+     * Queue an announcement. Never blocks; if the queue is full the oldest announcement is dropped.
+     */
+    public void offer(String title, String message, Color color) {
+        synchronized (queue) {
+            if (queue.size() >= capacity) {
+                queue.pollFirst();
+                dropped.increment();
+            }
+            queue.addLast(new Announcement(title, message, color));
+        }
+        queued.increment();
+    }
+
+    /**
+     * Send what has queued up as one combined message, if the relay is ready and the rate limit allows.
+     * Runs on the worker thread every interval.
+     */
+    public void drain() {
+        try {
+            if (isEmpty() || !sink.isReady() || !takeToken()) {
+                return;
+            }
+
+            List<Announcement> batch = takeBatch();
+            if (batch.isEmpty()) return;
+
+            try {
+                send(batch);
+                sent.add(batch.size());
+                messages.increment();
+            } catch (RuntimeException e) {
+                failed.add(batch.size());
+                logger.warning("Failed to send Discord announcement: " + e.getMessage());
+            }
+        } catch (RuntimeException e) {
+            // Keep the scheduled task alive whatever the relay does
+            logger.warning("Failed to check Discord relay: " + e.getMessage());
+        }
+    }
+
+    private boolean isEmpty() {
+        synchronized (queue) {
+            return queue.isEmpty();
+        }
+    }
+
+    private boolean takeToken() {
+        long now = System.nanoTime();
+        tokens = Math.min(messagesPerMinute, tokens + (now - lastRefill) * messagesPerMinute / TimeUnit.MINUTES.toNanos(1));
+        lastRefill = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * Take announcements oldest first until the combined message would be too long.
+     */
+    private List<Announcement> takeBatch() {
+        List<Announcement> batch = new ArrayList<>();
+        int length = 0;
+        synchronized (queue) {
+            while (!queue.isEmpty()) {
+                Announcement next = queue.peekFirst();
+                int nextLength = next.title().length() + next.message().length() + 8;
+                if (!batch.isEmpty() && length + nextLength > MAX_MESSAGE_LENGTH) break;
+                batch.add(queue.pollFirst());
+                length += nextLength;
+            }
+        }
+        return batch;
+    }
+
+    private void send(List<Announcement> batch) {
+        Announcement first = batch.get(0);
+        if (batch.size() == 1) {
+            sink.send(first.title(), first.message(), first.color());
+            return;
+        }
+
+        boolean sameTitle = batch.stream().allMatch(announcement -> announcement.title().equals(first.title()));
+        boolean sameColor = batch.stream().allMatch(announcement -> announcement.color().equals(first.color()));
+        StringBuilder combined = new StringBuilder();
+        for (Announcement announcement : batch) {
+            if (!combined.isEmpty()) combined.append('\n');
+            if (!sameTitle) combined.append("**").append(announcement.title()).append("** - ");
+            combined.append(announcement.message());
+        }
+        sink.send(sameTitle ? first.title() : MIXED_TITLE, combined.toString(), sameColor ? first.color() : Color.ORANGE);
+    }
+
+    /**
+     * Stop the worker and make one last attempt to send anything still queued.
+     */
+    public void shutdown() {
+        if (worker != null) {
+            worker.shutdown();
+            try {
+                if (!worker.awaitTermination(5, TimeUnit.SECONDS)) {
+                    worker.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                worker.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        drain();
+    }
+
+    public int getQueueSize() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /** Announcements accepted into the queue. */
+    public long getQueued() { return queued.sum(); }
+    /** Announcements delivered to the relay. */
+    public long getSent() { return sent.sum(); }
+    /** Discord messages sent; several announcements may share one. */
+    public long getMessages() { return messages.sum(); }
+    /** Announcements dropped because the queue was full. */
+    public long getDropped() { return dropped.sum(); }
+    /** Announcements lost because the relay threw an error. */
+    public long getFailed() { return failed.sum(); }
+
+    private record Announcement(String title, String message, Color color) {}
+}
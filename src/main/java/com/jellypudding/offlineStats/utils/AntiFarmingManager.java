@@ -1,101 +1,377 @@
 package com.jellypudding.offlineStats.utils;
 
 import com.jellypudding.offlineStats.OfflineStats;
+import org.bukkit.configuration.ConfigurationSection;
 
-import java.util.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class AntiFarmingManager {
 
-    private final OfflineStats plugin;
+    // One-second ticks; 1024 slots covers a 17 minute window in a single turn.
+    private static final long EXPIRY_TICK_MILLIS = 1000;
+    private static final int EXPIRY_SLOTS = 1024;
 
-    private final Map<UUID, List<Long>> playerDeaths = new ConcurrentHashMap<>();
+    private final Logger logger;
+    private final Supplier<? extends ConfigurationSection> config;
+    private final Path snapshotFile;
 
-    // Track player kills with victim information and timestamps
-    private final Map<UUID, Map<UUID, List<Long>>> playerKills = new ConcurrentHashMap<>();
+    // Death and kill windows per player. Each entry is its own lock, so checks for different players never contend.
+    private final Map<UUID, PlayerWindows> playerWindows = new ConcurrentHashMap<>();
+    // Every window is scheduled to be dropped once nothing in it is recent enough to count.
+    private final ExpiryWheel expiryWheel = new ExpiryWheel(EXPIRY_TICK_MILLIS, EXPIRY_SLOTS, System.currentTimeMillis());
+
+    // Windows saved on the last shutdown or reload, restored per player when they are next seen.
+    private volatile AntiFarmingSnapshot snapshot;
+
+    private final AtomicInteger trackedWindows = new AtomicInteger();
+    private final LongAdder expiredWindows = new LongAdder();
+    // Running expiry total at each of the last 60 cleanup runs, for the per-minute rate.
+    private final AtomicLongArray expiredHistory = new AtomicLongArray(60);
+    private long cleanupRuns;
 
     // Configuration values (in milliseconds and count)
-    private long TIME_WINDOW;
-    private int MAX_DEATHS_IN_WINDOW;
-    private int MAX_KILLS_SAME_VICTIM_IN_WINDOW;
+    private volatile long TIME_WINDOW;
+    private volatile int MAX_DEATHS_IN_WINDOW;
+    private volatile int MAX_KILLS_SAME_VICTIM_IN_WINDOW;
 
     public AntiFarmingManager(OfflineStats plugin) {
-        this.plugin = plugin;
+        this(plugin.getLogger(), plugin::getConfig, new File(plugin.getDataFolder(), "antifarming.dat").toPath());
+    }
+
+    /**
+     * Create an anti-farming manager outside of a running server, e.g. for benchmarks.
+     * @param config Supplies the current root configuration; read again on reload
+     * @param snapshotFile Where windows are saved across restarts, or null to keep them in memory only
+     */
+    public AntiFarmingManager(Logger logger, Supplier<? extends ConfigurationSection> config, Path snapshotFile) {
+        this.logger = logger;
+        this.config = config;
+        this.snapshotFile = snapshotFile;
         loadConfig();
+        loadSnapshot();
     }
 
     private void loadConfig() {
-        TIME_WINDOW = plugin.getConfig().getLong("anti-farming.time-window-minutes", 10) * 60 * 1000;
-        MAX_DEATHS_IN_WINDOW = plugin.getConfig().getInt("anti-farming.max-deaths-in-window", 20);
-        MAX_KILLS_SAME_VICTIM_IN_WINDOW = plugin.getConfig().getInt("anti-farming.max-kills-same-victim-in-window", 20);
+        TIME_WINDOW = config.get().getLong("anti-farming.time-window-minutes", 10) * 60 * 1000;
+        MAX_DEATHS_IN_WINDOW = config.get().getInt("anti-farming.max-deaths-in-window", 20);
+        MAX_KILLS_SAME_VICTIM_IN_WINDOW = config.get().getInt("anti-farming.max-kills-same-victim-in-window", 20);
 
-        plugin.getLogger().info("AntiFarmingManager initialised with " + (TIME_WINDOW / 60000) + " minute window, " +
+        logger.info("AntiFarmingManager initialised with " + (TIME_WINDOW / 60000) + " minute window, " +
                                MAX_DEATHS_IN_WINDOW + " max deaths, " + MAX_KILLS_SAME_VICTIM_IN_WINDOW + " max kills per victim");
     }
 
-    public void reload() {
+    /**
+     * Synchronized with {@link #cleanupOldData()}, so an expiry run never finishes against the cleared windows.
+     */
+    public synchronized void reload() {
+        // Windows are sized by the limits, so rebuild them from a snapshot rather than resizing them in place.
+        long currentTime = System.currentTimeMillis();
+        Map<UUID, AntiFarmingSnapshot.PlayerRecord> records = collectRecords(currentTime);
         loadConfig();
-        playerDeaths.clear();
-        playerKills.clear();
+        playerWindows.clear();
+        expiryWheel.clear();
+        trackedWindows.set(0);
+        snapshot = AntiFarmingSnapshot.of(currentTime, records);
     }
 
-    public boolean shouldCountDeath(UUID playerUuid) {
-        long currentTime = System.currentTimeMillis();
+    private void loadSnapshot() {
+        if (snapshotFile == null) return;
 
-        List<Long> deaths = playerDeaths.computeIfAbsent(playerUuid, k -> new ArrayList<>());
+        long start = System.nanoTime();
+        try {
+            snapshot = AntiFarmingSnapshot.read(snapshotFile);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error reading anti-farming snapshot " + snapshotFile, e);
+            return;
+        }
+        if (snapshot != null) {
+            logger.info("Opened anti-farming snapshot of " + snapshot.getPlayerCount() + " players (" +
+                        snapshot.getSizeBytes() + " bytes) in " + (System.nanoTime() - start) / 1_000_000 + "ms.");
+        }
+    }
 
-        deaths.removeIf(timestamp -> currentTime - timestamp > TIME_WINDOW);
+    /**
+     * Save every open window so a restart does not reset them. Called when the plugin is disabled.
+     */
+    public void saveSnapshot() {
+        if (snapshotFile == null) return;
 
-        if (deaths.size() >= MAX_DEATHS_IN_WINDOW) {
-            plugin.getLogger().info("Death farming detected for player " + playerUuid + 
-                                    " - " + deaths.size() + " deaths in the last " + (TIME_WINDOW / 60000) + " minutes");
-            return false;
+        long start = System.nanoTime();
+        long currentTime = System.currentTimeMillis();
+        Map<UUID, AntiFarmingSnapshot.PlayerRecord> records = collectRecords(currentTime);
+        try {
+            long bytes = AntiFarmingSnapshot.of(currentTime, records).write(snapshotFile);
+            logger.info("Saved anti-farming snapshot of " + records.size() + " players (" + bytes + " bytes) in " +
+                        (System.nanoTime() - start) / 1_000_000 + "ms.");
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error saving anti-farming snapshot " + snapshotFile, e);
         }
+    }
 
-        deaths.add(currentTime);
+    /**
+     * Gather the timestamps still inside the window, including players from the previous snapshot not seen since.
+     */
+    private Map<UUID, AntiFarmingSnapshot.PlayerRecord> collectRecords(long currentTime) {
+        long cutoffTime = currentTime - TIME_WINDOW;
+        Map<UUID, AntiFarmingSnapshot.PlayerRecord> records = new HashMap<>();
+        for (PlayerWindows windows : playerWindows.values()) {
+            AntiFarmingSnapshot.PlayerRecord record = windows.toRecord(cutoffTime);
+            if (record != null) {
+                records.put(windows.playerUuid, record);
+            }
+        }
 
-        return true;
+        AntiFarmingSnapshot previous = snapshot;
+        if (previous != null) {
+            for (UUID playerUuid : previous.getPlayers()) {
+                if (records.containsKey(playerUuid) || playerWindows.containsKey(playerUuid)) continue;
+                AntiFarmingSnapshot.PlayerRecord record = previous.find(playerUuid, cutoffTime);
+                if (record != null) {
+                    records.put(playerUuid, record);
+                }
+            }
+        }
+        return records;
+    }
+
+    public boolean shouldCountDeath(UUID playerUuid) {
+        long currentTime = System.currentTimeMillis();
+
+        while (true) {
+            PlayerWindows windows = getPlayerWindows(playerUuid, currentTime);
+            int result = windows.recordDeath(currentTime);
+            if (result == PlayerWindows.RETIRED) continue;
+
+            if (result == PlayerWindows.LIMITED) {
+                logger.info("Death farming detected for player " + playerUuid +
+                                        " - " + MAX_DEATHS_IN_WINDOW + " deaths in the last " + (TIME_WINDOW / 60000) + " minutes");
+                return false;
+            }
+            return true;
+        }
     }
 
     public boolean shouldCountKill(UUID killerUuid, UUID victimUuid) {
         long currentTime = System.currentTimeMillis();
 
-        Map<UUID, List<Long>> killerMap = playerKills.computeIfAbsent(killerUuid, k -> new ConcurrentHashMap<>());
+        while (true) {
+            PlayerWindows windows = getPlayerWindows(killerUuid, currentTime);
+            int result = windows.recordKill(victimUuid, currentTime);
+            if (result == PlayerWindows.RETIRED) continue;
+
+            if (result == PlayerWindows.LIMITED) {
+                logger.info("Kill farming detected for killer " + killerUuid +
+                                        " against victim " + victimUuid +
+                                        " - " + MAX_KILLS_SAME_VICTIM_IN_WINDOW + " kills in the last " + (TIME_WINDOW / 60000) + " minutes");
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private PlayerWindows getPlayerWindows(UUID playerUuid, long currentTime) {
+        // get() first so the common case does not allocate a capturing lambda.
+        PlayerWindows windows = playerWindows.get(playerUuid);
+        if (windows == null) {
+            PlayerWindows created = new PlayerWindows(playerUuid);
+            restoreFromSnapshot(created, currentTime);
+            windows = playerWindows.putIfAbsent(playerUuid, created);
+            if (windows == null) {
+                windows = created;
+            }
+        }
+        return windows;
+    }
+
+    private void restoreFromSnapshot(PlayerWindows windows, long currentTime) {
+        AntiFarmingSnapshot current = snapshot;
+        if (current == null) return;
+
+        if (currentTime - current.getSavedAt() > TIME_WINDOW) {
+            // Everything in it has aged out
+            snapshot = null;
+            return;
+        }
+        AntiFarmingSnapshot.PlayerRecord record = current.find(windows.playerUuid, currentTime - TIME_WINDOW);
+        if (record != null) {
+            windows.restore(record, currentTime);
+        }
+    }
+
+    /**
+     * Drop the windows whose events have all aged out. Only the windows due to expire since the last call are looked at.
+     * Runs every second from an async task.
+     */
+    public synchronized void cleanupOldData() {
+        int expired = expiryWheel.advance(System.currentTimeMillis());
+        if (expired > 0) {
+            expiredWindows.add(expired);
+        }
+        expiredHistory.set((int) (cleanupRuns++ % expiredHistory.length()), expiredWindows.sum());
+    }
+
+    /**
+     * Get the number of players with at least one open death or kill window
+     */
+    public int getTrackedPlayers() {
+        return playerWindows.size();
+    }
+
+    /**
+     * Get the number of open death and kill windows
+     */
+    public int getTrackedWindows() {
+        return trackedWindows.get();
+    }
+
+    /**
+     * Get the total number of windows dropped after all their events aged out
+     */
+    public long getExpiredWindows() {
+        return expiredWindows.sum();
+    }
+
+    /**
+     * Get the number of windows dropped over the last 60 cleanup runs, i.e. roughly the last minute
+     */
+    public synchronized long getExpiredWindowsLastMinute() {
+        if (cleanupRuns == 0) return 0;
+        // The oldest sample still in the history, or zero before the history has filled up.
+        long oldest = cleanupRuns > expiredHistory.length() ? expiredHistory.get((int) (cleanupRuns % expiredHistory.length())) : 0;
+        return expiredWindows.sum() - oldest;
+    }
+
+    /**
+     * A player's own deaths and their kills per victim.
+     * Retired once its last window expires; a check that raced with that retries on a fresh entry.
+     */
+    private final class PlayerWindows {
 
-        List<Long> killsOnVictim = killerMap.computeIfAbsent(victimUuid, k -> new ArrayList<>());
+        static final int RECORDED = 0;
+        static final int LIMITED = 1;
+        static final int RETIRED = 2;
 
-        killsOnVictim.removeIf(timestamp -> currentTime - timestamp > TIME_WINDOW);
+        private final UUID playerUuid;
+        private Window deaths;
+        private final Map<UUID, Window> killsByVictim = new HashMap<>(4);
+        private boolean retired;
 
-        if (killsOnVictim.size() >= MAX_KILLS_SAME_VICTIM_IN_WINDOW) {
-            plugin.getLogger().info("Kill farming detected for killer " + killerUuid + 
-                                    " against victim " + victimUuid + 
-                                    " - " + killsOnVictim.size() + " kills in the last " + (TIME_WINDOW / 60000) + " minutes");
-            return false;
+        PlayerWindows(UUID playerUuid) {
+            this.playerUuid = playerUuid;
         }
 
-        killsOnVictim.add(currentTime);
+        synchronized int recordDeath(long now) {
+            if (retired) return RETIRED;
+            if (MAX_DEATHS_IN_WINDOW <= 0) return LIMITED;
+            if (deaths == null) {
+                deaths = open(null, MAX_DEATHS_IN_WINDOW, now);
+            }
+            return deaths.counter.tryRecord(now, TIME_WINDOW) ? RECORDED : LIMITED;
+        }
 
-        return true;
+        synchronized int recordKill(UUID victimUuid, long now) {
+            if (retired) return RETIRED;
+            if (MAX_KILLS_SAME_VICTIM_IN_WINDOW <= 0) return LIMITED;
+            Window kills = killsByVictim.get(victimUuid);
+            if (kills == null) {
+                kills = open(victimUuid, MAX_KILLS_SAME_VICTIM_IN_WINDOW, now);
+                killsByVictim.put(victimUuid, kills);
+            }
+            return kills.counter.tryRecord(now, TIME_WINDOW) ? RECORDED : LIMITED;
+        }
+
+        synchronized void restore(AntiFarmingSnapshot.PlayerRecord record, long now) {
+            if (record.deaths().length > 0 && MAX_DEATHS_IN_WINDOW > 0) {
+                deaths = open(null, MAX_DEATHS_IN_WINDOW, now);
+                for (long timestamp : record.deaths()) {
+                    deaths.counter.restore(timestamp);
+                }
+            }
+            if (MAX_KILLS_SAME_VICTIM_IN_WINDOW <= 0) return;
+            for (Map.Entry<UUID, long[]> entry : record.killsByVictim().entrySet()) {
+                Window kills = open(entry.getKey(), MAX_KILLS_SAME_VICTIM_IN_WINDOW, now);
+                for (long timestamp : entry.getValue()) {
+                    kills.counter.restore(timestamp);
+                }
+                killsByVictim.put(entry.getKey(), kills);
+            }
+        }
+
+        synchronized AntiFarmingSnapshot.PlayerRecord toRecord(long cutoffTime) {
+            long[] deathTimes = deaths != null ? deaths.counter.timestampsSince(cutoffTime) : new long[0];
+            Map<UUID, long[]> killTimes = new HashMap<>();
+            for (Map.Entry<UUID, Window> entry : killsByVictim.entrySet()) {
+                long[] timestamps = entry.getValue().counter.timestampsSince(cutoffTime);
+                if (timestamps.length > 0) {
+                    killTimes.put(entry.getKey(), timestamps);
+                }
+            }
+            if (deathTimes.length == 0 && killTimes.isEmpty()) return null;
+            return new AntiFarmingSnapshot.PlayerRecord(deathTimes, killTimes);
+        }
+
+        private Window open(UUID victimUuid, int limit, long now) {
+            Window window = new Window(this, victimUuid, limit);
+            trackedWindows.incrementAndGet();
+            expiryWheel.schedule(window, now + TIME_WINDOW + 1);
+            return window;
+        }
+
+        /**
+         * Drop a window if it has aged out, retiring this entry when it was the last one.
+         * @return A later deadline if the window still holds recent events, otherwise 0
+         */
+        synchronized long expire(Window window, long now) {
+            long newest = window.counter.newest();
+            if (!window.counter.isIdle(now - TIME_WINDOW)) {
+                return newest + TIME_WINDOW + 1;
+            }
+
+            if (window.victimUuid == null) {
+                if (deaths == window) deaths = null;
+            } else {
+                killsByVictim.remove(window.victimUuid, window);
+            }
+            trackedWindows.decrementAndGet();
+
+            if (!retired && deaths == null && killsByVictim.isEmpty()) {
+                retired = true;
+                playerWindows.remove(playerUuid, this);
+            }
+            return 0;
+        }
     }
 
-    public void cleanupOldData() {
-        long currentTime = System.currentTimeMillis();
-        long cutoffTime = currentTime - TIME_WINDOW;
+    /**
+     * One death or kill window, scheduled on the expiry wheel from when it is opened until it ages out.
+     */
+    private static final class Window extends ExpiryWheel.Entry {
+        private final PlayerWindows owner;
+        // Null for the owner's own deaths
+        private final UUID victimUuid;
+        private final SlidingWindowCounter counter;
 
-        playerDeaths.entrySet().removeIf(entry -> {
-            List<Long> deaths = entry.getValue();
-            deaths.removeIf(timestamp -> timestamp < cutoffTime);
-            return deaths.isEmpty();
-        });
-
-        playerKills.entrySet().removeIf(killerEntry -> {
-            Map<UUID, List<Long>> victimMap = killerEntry.getValue();
-            victimMap.entrySet().removeIf(victimEntry -> {
-                List<Long> kills = victimEntry.getValue();
-                kills.removeIf(timestamp -> timestamp < cutoffTime);
-                return kills.isEmpty();
-            });
-            return victimMap.isEmpty();
-        });
+        Window(PlayerWindows owner, UUID victimUuid, int limit) {
+            this.owner = owner;
+            this.victimUuid = victimUuid;
+            this.counter = new SlidingWindowCounter(limit);
+        }
+
+        @Override
+        long expire(long now) {
+            return owner.expire(this, now);
+        }
     }
 }
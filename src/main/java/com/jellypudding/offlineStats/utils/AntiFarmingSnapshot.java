@@ -0,0 +1,261 @@
+package com.jellypudding.offlineStats.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Binary snapshot of the anti-farming windows, kept across restarts and reloads.
+ * The file starts with a table of player UUIDs sorted for binary search, each pointing at that player's record,
+ * so opening a snapshot only reads the bytes and a player's timestamps are decoded when they are first needed.
+ *
+ * Layout (big-endian):
+ * header:  int magic, int version, long savedAt, int playerCount
+ * index:   playerCount x (long uuidMost, long uuidLeast, int recordOffset)
+ * record:  int deathCount, deathCount x long timestamp,
+ *          int victimCount, victimCount x (long uuidMost, long uuidLeast, int killCount, killCount x long timestamp)
+ */
+class AntiFarmingSnapshot {
+
+    private static final int MAGIC = 0x4F534146; // "OSAF"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4;
+    private static final int INDEX_ENTRY_BYTES = 8 + 8 + 4;
+
+    /**
+     * One player's timestamps, oldest first.
+     * @param deaths The player's own deaths
+     * @param killsByVictim The player's kills per victim
+     */
+    record PlayerRecord(long[] deaths, Map<UUID, long[]> killsByVictim) {}
+
+    private final ByteBuffer buffer;
+    private final long savedAt;
+    private final int playerCount;
+
+    private AntiFarmingSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an anti-farming snapshot");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported anti-farming snapshot version " + buffer.getInt(4));
+        }
+        this.savedAt = buffer.getLong(8);
+        this.playerCount = buffer.getInt(16);
+        if (buffer.limit() < HEADER_BYTES + (long) playerCount * INDEX_ENTRY_BYTES) {
+            throw new IOException("Anti-farming snapshot is truncated");
+        }
+    }
+
+    /**
+     * Read a snapshot file without decoding any players.
+     * @return The snapshot or null if the file does not exist
+     */
+    static AntiFarmingSnapshot read(Path file) throws IOException {
+        if (!Files.exists(file)) return null;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Anti-farming snapshot is too large: " + size + " bytes");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) break;
+            }
+            buffer.flip();
+            return new AntiFarmingSnapshot(buffer);
+        }
+    }
+
+    /**
+     * Build a snapshot in memory, e.g. to carry windows across a config reload.
+     */
+    static AntiFarmingSnapshot of(long savedAt, Map<UUID, PlayerRecord> players) {
+        try {
+            return new AntiFarmingSnapshot(encode(savedAt, players));
+        } catch (IOException e) {
+            // encode() always writes a valid header
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Write the snapshot to a file, replacing any previous one once it is complete.
+     * @return Number of bytes written
+     */
+    long write(Path file) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        ByteBuffer bytes = buffer.duplicate();
+        bytes.rewind();
+        long written = bytes.remaining();
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    private static ByteBuffer encode(long savedAt, Map<UUID, PlayerRecord> players) {
+        List<UUID> uuids = new ArrayList<>(players.keySet());
+        uuids.sort(AntiFarmingSnapshot::compare);
+
+        long size = HEADER_BYTES + (long) uuids.size() * INDEX_ENTRY_BYTES;
+        for (PlayerRecord record : players.values()) {
+            size += recordBytes(record);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Anti-farming snapshot would be " + size + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(savedAt).putInt(uuids.size());
+
+        int recordOffset = HEADER_BYTES + uuids.size() * INDEX_ENTRY_BYTES;
+        for (UUID uuid : uuids) {
+            buffer.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).putInt(recordOffset);
+            recordOffset += recordBytes(players.get(uuid));
+        }
+
+        for (UUID uuid : uuids) {
+            PlayerRecord record = players.get(uuid);
+            putTimestamps(buffer, record.deaths());
+            buffer.putInt(record.killsByVictim().size());
+            for (Map.Entry<UUID, long[]> kills : record.killsByVictim().entrySet()) {
+                buffer.putLong(kills.getKey().getMostSignificantBits()).putLong(kills.getKey().getLeastSignificantBits());
+                putTimestamps(buffer, kills.getValue());
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int recordBytes(PlayerRecord record) {
+        int bytes = 4 + record.deaths().length * 8 + 4;
+        for (long[] kills : record.killsByVictim().values()) {
+            bytes += 16 + 4 + kills.length * 8;
+        }
+        return bytes;
+    }
+
+    private static void putTimestamps(ByteBuffer buffer, long[] timestamps) {
+        buffer.putInt(timestamps.length);
+        for (long timestamp : timestamps) {
+            buffer.putLong(timestamp);
+        }
+    }
+
+    private static int compare(UUID a, UUID b) {
+        int result = Long.compare(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return result != 0 ? result : Long.compare(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+
+    long getSavedAt() {
+        return savedAt;
+    }
+
+    int getPlayerCount() {
+        return playerCount;
+    }
+
+    int getSizeBytes() {
+        return buffer.limit();
+    }
+
+    /**
+     * Get every player in the snapshot, in index order.
+     */
+    List<UUID> getPlayers() {
+        List<UUID> players = new ArrayList<>(playerCount);
+        for (int i = 0; i < playerCount; i++) {
+            int entry = HEADER_BYTES + i * INDEX_ENTRY_BYTES;
+            players.add(new UUID(buffer.getLong(entry), buffer.getLong(entry + 8)));
+        }
+        return players;
+    }
+
+    /**
+     * Decode one player's timestamps, keeping only those at or after the cutoff.
+     * Only absolute reads are used, so this is safe to call from several threads.
+     * @return The player's record or null if they are not in the snapshot or nothing is recent enough
+     */
+    PlayerRecord find(UUID playerUuid, long cutoffTime) {
+        int entry = indexOf(playerUuid);
+        if (entry < 0) return null;
+
+        int offset = buffer.getInt(entry + 16);
+        long[] deaths = readTimestamps(offset, cutoffTime);
+        offset += 4 + buffer.getInt(offset) * 8;
+
+        int victimCount = buffer.getInt(offset);
+        offset += 4;
+        Map<UUID, long[]> killsByVictim = new HashMap<>();
+        for (int i = 0; i < victimCount; i++) {
+            UUID victimUuid = new UUID(buffer.getLong(offset), buffer.getLong(offset + 8));
+            offset += 16;
+            long[] kills = readTimestamps(offset, cutoffTime);
+            offset += 4 + buffer.getInt(offset) * 8;
+            if (kills.length > 0) {
+                killsByVictim.put(victimUuid, kills);
+            }
+        }
+
+        if (deaths.length == 0 && killsByVictim.isEmpty()) return null;
+        return new PlayerRecord(deaths, killsByVictim);
+    }
+
+    private long[] readTimestamps(int offset, long cutoffTime) {
+        int count = buffer.getInt(offset);
+        // Timestamps are stored oldest first, so skip the ones that have aged out.
+        int first = 0;
+        while (first < count && buffer.getLong(offset + 4 + first * 8) < cutoffTime) {
+            first++;
+        }
+        long[] timestamps = new long[count - first];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = buffer.getLong(offset + 4 + (first + i) * 8);
+        }
+        return timestamps;
+    }
+
+    /**
+     * Binary search the index for a player.
+     * @return Byte offset of the player's index entry or -1 if absent
+     */
+    private int indexOf(UUID playerUuid) {
+        long most = playerUuid.getMostSignificantBits();
+        long least = playerUuid.getLeastSignificantBits();
+        int low = 0;
+        int high = playerCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = HEADER_BYTES + mid * INDEX_ENTRY_BYTES;
+            int result = Long.compare(buffer.getLong(entry), most);
+            if (result == 0) {
+                result = Long.compare(buffer.getLong(entry + 8), least);
+            }
+            if (result < 0) {
+                low = mid + 1;
+            } else if (result > 0) {
+                high = mid - 1;
+            } else {
+                return entry;
+            }
+        }
+        return -1;
+    }
+}
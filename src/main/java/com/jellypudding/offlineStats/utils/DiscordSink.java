@@ -0,0 +1,16 @@
+package com.jellypudding.offlineStats.utils;
+
+import java.awt.Color;
+
+/**
+ * Where announcements end up. In the plugin this is DiscordRelay; tests can supply a local stub.
+ */
+public interface DiscordSink {
+
+    /**
+     * @return true if messages can be sent right now
+     */
+    boolean isReady();
+
+    void send(String title, String message, Color color);
+}
@@ -1,32 +1,63 @@
 package com.jellypudding.offlineStats.utils;
 
 import com.jellypudding.offlineStats.OfflineStats;
+import com.jellypudding.offlineStats.integrations.IntegrationRegistry;
 
 import java.awt.Color;
 
 public class DiscordUtil {
 
     private final OfflineStats plugin;
+    private final AnnouncementQueue announcements;
 
     public DiscordUtil(OfflineStats plugin) {
         this.plugin = plugin;
+        this.announcements = new AnnouncementQueue(
+            plugin.getLogger(),
+            new RelaySink(plugin.getIntegrations()),
+            plugin.getMetrics(),
+            Math.max(1, plugin.getConfig().getInt("discord.batch-interval-seconds", 5)) * 1000L,
+            plugin.getConfig().getInt("discord.max-messages-per-minute", 20),
+            plugin.getConfig().getInt("discord.queue-size", 100)
+        );
     }
 
+    /**
+     * Queue an announcement for Discord. Returns immediately; the message is sent from a background thread.
+     */
     public void sendMessage(String title, String message, Color color) {
         if (!plugin.isDiscordRelayEnabled()) {
             return;
         }
 
-        try {
-            Class<?> discordRelayAPI = Class.forName("com.jellypudding.discordRelay.DiscordRelayAPI");
-            java.lang.reflect.Method isReady = discordRelayAPI.getMethod("isReady");
-            java.lang.reflect.Method sendFormattedMessage = discordRelayAPI.getMethod("sendFormattedMessage", String.class, String.class, Color.class);
+        announcements.offer(title, message, color);
+    }
+
+    public AnnouncementQueue getAnnouncements() {
+        return announcements;
+    }
+
+    public void shutdown() {
+        announcements.shutdown();
+    }
+
+    /**
+     * Sends through DiscordRelay, looked up on every call so the relay can be reloaded at runtime.
+     */
+    private record RelaySink(IntegrationRegistry integrations) implements DiscordSink {
+
+        @Override
+        public boolean isReady() {
+            IntegrationRegistry.DiscordRelay discordRelay = integrations.getDiscordRelay();
+            return discordRelay != null && discordRelay.isReady();
+        }
 
-            if ((Boolean) isReady.invoke(null)) {
-                sendFormattedMessage.invoke(null, title, message, color);
+        @Override
+        public void send(String title, String message, Color color) {
+            IntegrationRegistry.DiscordRelay discordRelay = integrations.getDiscordRelay();
+            if (discordRelay != null) {
+                discordRelay.sendFormattedMessage(title, message, color);
             }
-        } catch (Exception e) {
-            plugin.getLogger().warning("Failed to send Discord announcement: " + e.getMessage());
         }
     }
 }
@@ -0,0 +1,126 @@
+package com.jellypudding.offlineStats.utils;
+
+/**
+ * Hashed timing wheel that hands entries back once their deadline has passed.
+ * Each slot covers one tick; deadlines further out than one turn of the wheel wait out the extra turns in place.
+ * Advancing only touches the slots for the ticks that have elapsed, so its cost follows what actually expires
+ * rather than everything being tracked.
+ * Entries are linked through their own fields, so scheduling does not allocate.
+ */
+class ExpiryWheel {
+
+    /**
+     * Something that can be scheduled on the wheel. An entry may only be scheduled once at a time.
+     */
+    abstract static class Entry {
+        private Entry next;
+        private long remainingRounds;
+
+        /**
+         * Called once the deadline has passed, without the wheel's lock held.
+         * @param now Current time in milliseconds
+         * @return A later deadline to be scheduled again, or 0 if the entry is done
+         */
+        abstract long expire(long now);
+    }
+
+    private final long startTime;
+    private final long tickMillis;
+    private final Entry[] slots;
+    private final int mask;
+
+    // The next tick to be processed; every earlier tick has been handed out.
+    private long tick;
+    private int size;
+
+    /**
+     * @param slotCount Number of slots, rounded up to a power of two
+     */
+    ExpiryWheel(long tickMillis, int slotCount, long startTime) {
+        int length = Integer.highestOneBit(Math.max(1, slotCount - 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.slots = new Entry[length];
+        this.mask = length - 1;
+        this.startTime = startTime;
+    }
+
+    synchronized void schedule(Entry entry, long deadline) {
+        long deadlineTick = Math.max(tick, Math.floorDiv(deadline - startTime + tickMillis - 1, tickMillis));
+        entry.remainingRounds = (deadlineTick - tick) / slots.length;
+        int index = (int) (deadlineTick & mask);
+        entry.next = slots[index];
+        slots[index] = entry;
+        size++;
+    }
+
+    /**
+     * Expire every entry due up to now and reschedule those that ask for a later deadline.
+     * @return Number of entries that expired for good
+     */
+    int advance(long now) {
+        long currentTick = Math.floorDiv(now - startTime, tickMillis);
+        int expired = 0;
+        while (true) {
+            Entry due;
+            synchronized (this) {
+                if (tick > currentTick) break;
+                due = takeDue((int) (tick & mask));
+                tick++;
+            }
+            // Entries take their own locks in expire(), so run them outside the wheel's lock.
+            while (due != null) {
+                Entry entry = due;
+                due = entry.next;
+                entry.next = null;
+                long nextDeadline = entry.expire(now);
+                if (nextDeadline > 0) {
+                    schedule(entry, nextDeadline);
+                } else {
+                    expired++;
+                }
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Unlink the entries in a slot that are due this turn and count down the rest.
+     */
+    private Entry takeDue(int index) {
+        Entry due = null;
+        Entry kept = null;
+        Entry entry = slots[index];
+        while (entry != null) {
+            Entry next = entry.next;
+            if (entry.remainingRounds <= 0) {
+                entry.next = due;
+                due = entry;
+                size--;
+            } else {
+                entry.remainingRounds--;
+                entry.next = kept;
+                kept = entry;
+            }
+            entry = next;
+        }
+        slots[index] = kept;
+        return due;
+    }
+
+    synchronized void clear() {
+        for (int i = 0; i < slots.length; i++) {
+            Entry entry = slots[i];
+            while (entry != null) {
+                Entry next = entry.next;
+                entry.next = null;
+                entry = next;
+            }
+            slots[i] = null;
+        }
+        size = 0;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+}
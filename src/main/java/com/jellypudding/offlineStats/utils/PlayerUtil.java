@@ -1,46 +1,56 @@
 package com.jellypudding.offlineStats.utils;
 
+import com.jellypudding.offlineStats.OfflineStats;
+import com.jellypudding.offlineStats.database.PlayerNameIndex;
+import com.jellypudding.offlineStats.integrations.IntegrationRegistry;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import net.kyori.adventure.text.format.TextColor;
 import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
-import org.bukkit.plugin.Plugin;
 
+import java.util.List;
 import java.util.UUID;
 
 public class PlayerUtil {
 
-    public static UUID getPlayerUUID(String playerName) {
-        Player onlinePlayer = Bukkit.getPlayerExact(playerName);
-        if (onlinePlayer != null) {
-            return onlinePlayer.getUniqueId();
+    private static final int MAX_COMPLETIONS = 100;
+
+    /**
+     * Look up a player who has joined the server by name, ignoring case.
+     * Answered from the plugin's own name index, so it does not depend on the server's user cache.
+     * @return The player's UUID and name with its proper capitalisation, or null if no such player has joined
+     */
+    public static PlayerNameIndex.Entry findPlayer(String playerName) {
+        PlayerNameIndex.Entry known = OfflineStats.getPlugin(OfflineStats.class).getDatabaseManager().getNameIndex().get(playerName);
+        if (known != null) {
+            return known;
         }
 
-        OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayerIfCached(playerName);
-        if (offlinePlayer != null && offlinePlayer.hasPlayedBefore()) {
-            return offlinePlayer.getUniqueId();
+        // Someone who has only just joined for the first time may not be written yet.
+        Player onlinePlayer = Bukkit.getPlayerExact(playerName);
+        if (onlinePlayer != null) {
+            return PlayerNameIndex.Entry.of(onlinePlayer.getName(), onlinePlayer.getUniqueId());
         }
 
         return null;
     }
 
-    public static String getExactPlayerName(String playerName) {
-        Player onlinePlayer = Bukkit.getPlayerExact(playerName);
-        if (onlinePlayer != null) {
-            return onlinePlayer.getName();
-        }
+    /**
+     * Complete a partly typed player name from every player who has joined the server.
+     */
+    public static List<String> completePlayerName(String prefix) {
+        return OfflineStats.getPlugin(OfflineStats.class).getDatabaseManager().getNameIndex().findByPrefix(prefix, MAX_COMPLETIONS);
+    }
 
-        OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayerIfCached(playerName);
-        if (offlinePlayer != null && offlinePlayer.hasPlayedBefore()) {
-            String cachedName = offlinePlayer.getName();
-            if (cachedName != null) {
-                return cachedName;
-            }
-        }
+    public static UUID getPlayerUUID(String playerName) {
+        PlayerNameIndex.Entry known = findPlayer(playerName);
+        return known != null ? known.uuid() : null;
+    }
 
-        return playerName;
+    public static String getExactPlayerName(String playerName) {
+        PlayerNameIndex.Entry known = findPlayer(playerName);
+        return known != null ? known.name() : playerName;
     }
 
     public static Component getPlayerDisplayName(String playerName, UUID playerUuid) {
@@ -49,12 +59,10 @@ public class PlayerUtil {
             return onlinePlayer.displayName();
         }
 
-        Plugin chromaTagPlugin = Bukkit.getPluginManager().getPlugin("ChromaTag");
-        if (chromaTagPlugin != null && chromaTagPlugin.isEnabled()) {
+        IntegrationRegistry.ChromaTag chromaTag = OfflineStats.getPlugin(OfflineStats.class).getIntegrations().getChromaTag();
+        if (chromaTag != null) {
             try {
-                Class<?> chromaTagClass = chromaTagPlugin.getClass();
-                java.lang.reflect.Method getPlayerColourMethod = chromaTagClass.getMethod("getPlayerColor", UUID.class);
-                TextColor colour = (TextColor) getPlayerColourMethod.invoke(chromaTagPlugin, playerUuid);
+                TextColor colour = chromaTag.getPlayerColor(playerUuid);
 
                 if (colour != null) {
                     return Component.text(playerName, colour);
@@ -0,0 +1,82 @@
+package com.jellypudding.offlineStats.utils;
+
+/**
+ * Counts events in a sliding time window using a fixed-size ring of timestamps.
+ * The ring holds exactly as many timestamps as the limit, so memory is constant and each check is O(1):
+ * once the ring is full, the oldest slot tells whether the window still holds the limit.
+ * Not thread-safe; callers synchronise on the owning object.
+ */
+class SlidingWindowCounter {
+
+    private final long[] timestamps;
+    // Index of the oldest timestamp, which is also the next slot to overwrite once full.
+    private int head;
+    private int size;
+
+    SlidingWindowCounter(int limit) {
+        this.timestamps = new long[Math.max(1, limit)];
+    }
+
+    /**
+     * Record an event unless the window already holds the limit.
+     * @param window Length of the window in milliseconds; events older than this no longer count
+     * @return true if the event was recorded
+     */
+    boolean tryRecord(long now, long window) {
+        if (size == timestamps.length) {
+            if (now - timestamps[head] <= window) {
+                return false;
+            }
+            timestamps[head] = now;
+            head = (head + 1) % timestamps.length;
+            return true;
+        }
+        timestamps[(head + size) % timestamps.length] = now;
+        size++;
+        return true;
+    }
+
+    /**
+     * Put back a previously recorded event, e.g. from a snapshot. Timestamps must be restored oldest first;
+     * if there are more than the limit, only the newest are kept.
+     */
+    void restore(long timestamp) {
+        if (size == timestamps.length) {
+            timestamps[head] = timestamp;
+            head = (head + 1) % timestamps.length;
+            return;
+        }
+        timestamps[(head + size) % timestamps.length] = timestamp;
+        size++;
+    }
+
+    /**
+     * Copy the recorded events at or after the cutoff, oldest first.
+     */
+    long[] timestampsSince(long cutoffTime) {
+        int first = 0;
+        while (first < size && timestamps[(head + first) % timestamps.length] < cutoffTime) {
+            first++;
+        }
+        long[] copy = new long[size - first];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = timestamps[(head + first + i) % timestamps.length];
+        }
+        return copy;
+    }
+
+    /**
+     * Check whether every recorded event happened before the cutoff, i.e. the counter can be dropped.
+     */
+    boolean isIdle(long cutoffTime) {
+        return size == 0 || newest() < cutoffTime;
+    }
+
+    /**
+     * Get the time of the most recent event, or 0 if none have been recorded.
+     */
+    long newest() {
+        if (size == 0) return 0;
+        return timestamps[(head + size - 1) % timestamps.length];
+    }
+}